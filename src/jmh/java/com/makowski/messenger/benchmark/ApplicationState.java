@@ -0,0 +1,86 @@
+package com.makowski.messenger.benchmark;
+
+import com.makowski.messenger.MessengerApplication;
+import com.makowski.messenger.dataset.DatasetGenerator;
+import com.makowski.messenger.dataset.DatasetSettings;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Starts the application on a random port with its own embedded H2 database and seeds it with a generated dataset.
+ * Service calls run in a transaction, like a request with open-session-in-view.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    static final String LOGGED_USER = "user0";
+
+    @Param("200")
+    int users;
+
+    @Param("20")
+    int chatsPerUser;
+
+    @Param("20000")
+    long messages;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate transactionTemplate;
+    List<Long> userIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(MessengerApplication.class)
+            .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN")
+            .run();
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        seed();
+        logIn(LOGGED_USER);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    Message createMessage(Long receiverId) {
+        Message message = new Message();
+        message.setReceiverId(Set.of(receiverId));
+        message.setContent("benchmark message");
+        return message;
+    }
+
+    private void seed() {
+        context.getBean(DatasetGenerator.class).generate(new DatasetSettings(42, "user", users, 10, users * chatsPerUser / 2,
+                10, messages, 30, 0.1, 1000));
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        for (int i = 0; i < users; i++) {
+            userIds.add(userRepository.findByUsername("user" + i).orElseThrow().getId());
+        }
+    }
+
+    private void logIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
@@ -0,0 +1,50 @@
+package com.makowski.messenger.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.dto.ChatDto;
+import com.makowski.messenger.dto.UserDto;
+import com.makowski.messenger.entity.Message;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Message message;
+    private ChatDto chatDto;
+
+    @Setup
+    public void createPayloads() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        message = new Message();
+        message.setId(1L);
+        message.setSenderId(1L);
+        message.setReceiverId(Set.of(2L, 3L));
+        message.setContent("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt");
+        Set<UserDto> members = new HashSet<>();
+        for (long id = 1; id <= 5; id++) {
+            members.add(new UserDto(id, "username" + id, "firstName" + id, "surname" + id));
+        }
+        chatDto = new ChatDto(1L, members);
+    }
+
+    @Benchmark
+    public byte[] serializeMessage() throws Exception {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serializeChatDto() throws Exception {
+        return objectMapper.writeValueAsBytes(chatDto);
+    }
+}
@@ -0,0 +1,32 @@
+package com.makowski.messenger.benchmark;
+
+import com.makowski.messenger.security.JwtTokens;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private String token;
+
+    @Setup
+    public void signToken() {
+        token = JwtTokens.sign("benchmark");
+    }
+
+    @Benchmark
+    public String sign() {
+        return JwtTokens.sign("benchmark");
+    }
+
+    @Benchmark
+    public String verify() {
+        return JwtTokens.verify(token);
+    }
+}
@@ -0,0 +1,48 @@
+package com.makowski.messenger.benchmark;
+
+import com.makowski.messenger.dto.ChatDto;
+import com.makowski.messenger.dto.UserDto;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.service.MessageService;
+import com.makowski.messenger.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private UserService userService;
+    private MessageService messageService;
+    private Long receiverId;
+
+    @Setup
+    public void getServices(ApplicationState application) {
+        userService = application.getBean(UserService.class);
+        messageService = application.getBean(MessageService.class);
+        receiverId = application.userIds.get(1);
+    }
+
+    // the logged user already has a chat with the receiver after the first call, so this measures chat resolution
+    @Benchmark
+    public Message saveMessage(ApplicationState application) {
+        return application.inTransaction(() -> messageService.saveMessage(application.createMessage(receiverId)));
+    }
+
+    @Benchmark
+    public Set<UserDto> findUser(ApplicationState application) {
+        return application.inTransaction(() -> userService.findUser("surname1"));
+    }
+
+    @Benchmark
+    public List<ChatDto> getUsersChats(ApplicationState application) {
+        return application.inTransaction(() -> userService.getUsersChats());
+    }
+}
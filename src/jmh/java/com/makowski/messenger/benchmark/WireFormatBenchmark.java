@@ -0,0 +1,124 @@
+package com.makowski.messenger.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.config.ProtobufDtoHttpMessageConverter;
+import com.makowski.messenger.dto.ChatDto;
+import com.makowski.messenger.dto.ChatMessagesDto;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.dto.MessageJson;
+import com.makowski.messenger.dto.UserDto;
+import com.makowski.messenger.entity.Message;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding cost of the REST payloads per wire format, through the same message converters the
+ * controllers use. The payload sizes are printed once per fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final Type CHAT_LIST = new ParameterizedTypeReference<List<ChatDto>>() {}.getType();
+
+    @Param({"json", "cbor", "protobuf"})
+    public String format;
+
+    private GenericHttpMessageConverter<Object> converter;
+    private MediaType mediaType;
+    private MessageDto message;
+    private List<ChatDto> chats;
+    private ChatMessagesDto chatHistory;
+    private byte[] encodedMessage;
+    private byte[] encodedUser;
+
+    @Setup
+    public void createPayloads() throws Exception {
+        switch (format) {
+            case "json" -> {
+                converter = new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build());
+                mediaType = MediaType.APPLICATION_JSON;
+            }
+            case "cbor" -> {
+                converter = new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor().build());
+                mediaType = MediaType.APPLICATION_CBOR;
+            }
+            case "protobuf" -> {
+                converter = new ProtobufDtoHttpMessageConverter();
+                mediaType = ProtobufDtoHttpMessageConverter.PROTOBUF;
+            }
+            default -> throw new IllegalArgumentException(format);
+        }
+        message = new MessageDto(123456L, 1234L, 42L, Set.of(7L, 8L), false, LocalDateTime.of(2024, 5, 1, 12, 30),
+                "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt");
+        chats = new ArrayList<>();
+        for (long chatId = 1; chatId <= 20; chatId++) {
+            Set<UserDto> members = new HashSet<>();
+            for (long id = chatId; id < chatId + 5; id++) {
+                members.add(new UserDto(id, "username" + id, "firstName" + id, "surname" + id));
+            }
+            chats.add(new ChatDto(chatId, members));
+        }
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        List<MessageJson> messages = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            messages.add(new MessageJson(json.writeValueAsString(new MessageDto(id, id, id % 2 + 1, Set.of(id % 2 + 2), false,
+                    LocalDateTime.of(2024, 5, 1, 12, 30).plusMinutes(id), "message number " + id))));
+        }
+        chatHistory = new ChatMessagesDto(1L, messages);
+        encodedMessage = encode(message, MessageDto.class);
+        encodedUser = encode(new UserDto(1L, "username", "firstName", "surname"), UserDto.class);
+        System.out.printf("%n%s payload sizes: message %d B, chat list %d B, chat history %d B%n", format,
+                encodedMessage.length, encodeChatList().length, encodeChatHistory().length);
+    }
+
+    @Benchmark
+    public byte[] encodeMessage() throws Exception {
+        return encode(message, MessageDto.class);
+    }
+
+    @Benchmark
+    public byte[] encodeChatList() throws Exception {
+        return encode(chats, CHAT_LIST);
+    }
+
+    @Benchmark
+    public byte[] encodeChatHistory() throws Exception {
+        return encode(chatHistory, ChatMessagesDto.class);
+    }
+
+    @Benchmark
+    public Object decodeMessage() throws Exception {
+        return converter.read(Message.class, null, new MockHttpInputMessage(encodedMessage));
+    }
+
+    @Benchmark
+    public Object decodeUser() throws Exception {
+        return converter.read(UserDto.class, null, new MockHttpInputMessage(encodedUser));
+    }
+
+    private byte[] encode(Object payload, Type type) throws Exception {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(payload, type, mediaType, output);
+        return output.getBodyAsBytes();
+    }
+}
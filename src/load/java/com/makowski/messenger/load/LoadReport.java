@@ -0,0 +1,60 @@
+package com.makowski.messenger.load;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histograms and error counts per endpoint. Latencies are recorded in microseconds.
+ */
+class LoadReport {
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long nanos, boolean error) {
+        histograms.computeIfAbsent(endpoint, key -> new ConcurrentHistogram(3))
+                .recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (error) errors.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+    }
+
+    void print(PrintStream out, int users, double seconds) {
+        out.printf("%d virtual users, %.1f s measured%n", users, seconds);
+        out.printf("%-24s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        new TreeMap<>(histograms).forEach((endpoint, histogram) -> out.printf("%-24s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint, histogram.getTotalCount(), errors(endpoint), histogram.getTotalCount() / seconds,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue())));
+    }
+
+    // endpoints whose 99th percentile is above the limit
+    Map<String, Double> slowerThan(long p99Millis) {
+        Map<String, Double> slow = new TreeMap<>();
+        histograms.forEach((endpoint, histogram) -> {
+            double p99 = millis(histogram.getValueAtPercentile(99));
+            if (p99 > p99Millis) slow.put(endpoint, p99);
+        });
+        return slow;
+    }
+
+    boolean hasErrors() {
+        return errors.values().stream().anyMatch(count -> count.sum() > 0);
+    }
+
+    private long errors(String endpoint) {
+        LongAdder count = errors.get(endpoint);
+        return count == null ? 0 : count.sum();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.makowski.messenger.load;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Configuration of a load test run, read from system properties:
+ * <ul>
+ *     <li>{@code load.users} - concurrent virtual users</li>
+ *     <li>{@code load.warmup} and {@code load.duration} - seconds of unmeasured and measured load</li>
+ *     <li>{@code load.weights} - relative frequency of operations, e.g. {@code send=30,edit=10,flag=10,chats=30,chat=20}</li>
+ *     <li>{@code load.seed} - seed of the dataset and of the users' choices</li>
+ *     <li>{@code load.max-p99-ms} - fail the run when an endpoint's 99th percentile is higher, 0 disables the check</li>
+ *     <li>{@code load.modes} - thread modes to run one after another, {@code platform} and/or {@code virtual}</li>
+ *     <li>{@code load.report} - file the report is written to</li>
+ * </ul>
+ */
+record LoadSettings(int users, int warmupSeconds, int durationSeconds, Map<Operation, Integer> weights, long seed,
+                    long maxP99Millis, List<String> modes, String report) {
+
+    static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                Integer.getInteger("load.users", 20),
+                Integer.getInteger("load.warmup", 10),
+                Integer.getInteger("load.duration", 60),
+                parseWeights(System.getProperty("load.weights", "send=30,edit=10,flag=10,chats=30,chat=20")),
+                Long.getLong("load.seed", 42),
+                Long.getLong("load.max-p99-ms", 0),
+                parseModes(System.getProperty("load.modes", "platform")),
+                System.getProperty("load.report", "target/load-report.txt"));
+    }
+
+    static Map<Operation, Integer> parseWeights(String weights) {
+        Map<Operation, Integer> result = new EnumMap<>(Operation.class);
+        for (String weight : weights.split(",")) {
+            String[] keyAndValue = weight.trim().split("=");
+            result.put(Operation.byKey(keyAndValue[0].trim()), Integer.parseInt(keyAndValue[1].trim()));
+        }
+        if (result.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("At least one operation needs a positive weight: " + weights);
+        }
+        return result;
+    }
+
+    static List<String> parseModes(String modes) {
+        List<String> result = Arrays.stream(modes.split(",")).map(String::trim).toList();
+        for (String mode : result) {
+            if (!mode.equals("platform") && !mode.equals("virtual")) {
+                throw new IllegalArgumentException("Unknown thread mode '" + mode + "', use platform or virtual");
+            }
+        }
+        return result;
+    }
+
+    Operation nextOperation(Random random) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = random.nextInt(total);
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) return weight.getKey();
+        }
+        throw new IllegalStateException();
+    }
+}
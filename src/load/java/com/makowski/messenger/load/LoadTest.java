@@ -0,0 +1,120 @@
+package com.makowski.messenger.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.MessengerApplication;
+import com.makowski.messenger.dataset.DatasetGenerator;
+import com.makowski.messenger.dataset.DatasetSettings;
+import com.makowski.messenger.repository.UserRepository;
+
+/**
+ * Closed-loop HTTP load test. Starts the application on a random port with its own embedded H2 database, fills it with
+ * a generated dataset and lets {@link LoadSettings#users()} virtual users hit the REST API over real HTTP.
+ * Prints latency percentiles and throughput per endpoint and exits with 1 when a request failed or a 99th percentile
+ * is above {@code load.max-p99-ms}. With {@code load.modes=platform,virtual} the same load runs against a fresh
+ * application on platform threads and then on virtual threads, which needs a Java 21 runtime.
+ * <p>
+ * Virtual users wait for each response before the next request, so when the server stalls they send less and the
+ * percentiles understate what an open stream of clients would see.
+ */
+public final class LoadTest {
+
+    private static final String USERNAME_PREFIX = "load";
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.fromSystemProperties();
+        // devtools would start the application again in a thread of its own, where a failed start doesn't fail the run
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        StringBuilder text = new StringBuilder();
+        int status = 0;
+        for (String mode : settings.modes()) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(MessengerApplication.class)
+                .properties("server.port=0",
+                            "spring.profiles.active=dev-h2",
+                            "spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_ON_EXIT=FALSE",
+                            "spring.h2.console.enabled=false",
+                            "spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                            "logging.level.root=WARN")
+                .run(args);
+            try {
+                LoadReport report = run(context, settings);
+                text.append(mode).append(" threads, ");
+                status = Math.max(status, check(settings, report, text));
+            } finally {
+                context.close();
+            }
+        }
+        System.out.print(text);
+        Path file = Path.of(settings.report());
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+        System.exit(status);
+    }
+
+    private static LoadReport run(ConfigurableApplicationContext context, LoadSettings settings) throws Exception {
+        // messages stay younger than a week, so the nightly remover can't delete chats the virtual users are reading
+        int users = Math.max(settings.users() * 10, 200);
+        context.getBean(DatasetGenerator.class).generate(new DatasetSettings(settings.seed(), USERNAME_PREFIX, users, 10,
+                users * 5, 10, users * 100L, 6, 0.1, 1000));
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            userIds.add(userRepository.findByUsername(USERNAME_PREFIX + i).orElseThrow().getId());
+        }
+
+        String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        LoadReport report = new LoadReport();
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.warmupSeconds());
+        long stopAt = measureFrom + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+
+        ExecutorService executor = Executors.newFixedThreadPool(settings.users());
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < settings.users(); i++) {
+            List<Long> receiverIds = new ArrayList<>(userIds);
+            receiverIds.remove(i);
+            running.add(executor.submit(new VirtualUser(client, objectMapper, baseUrl, USERNAME_PREFIX + i, receiverIds,
+                    settings, report, settings.seed() + i, measureFrom, stopAt)));
+        }
+        for (Future<?> user : running) user.get();
+        executor.shutdown();
+        return report;
+    }
+
+    // appends the report of one run and returns 1 when it failed
+    private static int check(LoadSettings settings, LoadReport report, StringBuilder text) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        report.print(new PrintStream(buffer, true, StandardCharsets.UTF_8), settings.users(), settings.durationSeconds());
+        text.append(buffer.toString(StandardCharsets.UTF_8));
+
+        int status = 0;
+        if (report.hasErrors()) {
+            text.append("Some requests failed\n");
+            status = 1;
+        }
+        if (settings.maxP99Millis() > 0) {
+            Map<String, Double> slow = report.slowerThan(settings.maxP99Millis());
+            slow.forEach((endpoint, p99) -> text.append(String.format("%s p99 %.2f ms is above %d ms%n", endpoint, p99, settings.maxP99Millis())));
+            if (!slow.isEmpty()) status = 1;
+        }
+        return status;
+    }
+}
@@ -0,0 +1,34 @@
+package com.makowski.messenger.load;
+
+/**
+ * Requests a virtual user can make, named by the weights that select them, e.g. {@code send=30,chats=20}.
+ */
+enum Operation {
+
+    SEND("send", "POST /message"),
+    EDIT("edit", "PUT /message/{id}"),
+    FLAG("flag", "PUT /message/flag/{id}"),
+    CHATS("chats", "GET /chat/all"),
+    CHAT("chat", "GET /chat/{id}");
+
+    static final String AUTHENTICATE = "POST /authenticate";
+
+    private final String key;
+    private final String endpoint;
+
+    Operation(String key, String endpoint) {
+        this.key = key;
+        this.endpoint = endpoint;
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    static Operation byKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) return operation;
+        }
+        throw new IllegalArgumentException("Unknown operation '" + key + "'");
+    }
+}
@@ -0,0 +1,132 @@
+package com.makowski.messenger.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.security.SecurityConstants;
+
+/**
+ * One simulated user in a closed loop: it logs in, then sends the next request as soon as the previous one is answered.
+ * Ids of its own messages and chats are taken from earlier responses, until there are some it sends or lists instead.
+ */
+class VirtualUser implements Runnable {
+
+    private static final int REMEMBERED_MESSAGES = 100;
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final String username;
+    private final List<Long> receiverIds;
+    private final LoadSettings settings;
+    private final LoadReport report;
+    private final Random random;
+    private final long measureFrom;
+    private final long stopAt;
+
+    private final List<Long> messageIds = new ArrayList<>();
+    private final List<Long> chatIds = new ArrayList<>();
+    private String token;
+
+    VirtualUser(HttpClient client, ObjectMapper objectMapper, String baseUrl, String username, List<Long> receiverIds,
+                LoadSettings settings, LoadReport report, long seed, long measureFrom, long stopAt) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.username = username;
+        this.receiverIds = receiverIds;
+        this.settings = settings;
+        this.report = report;
+        this.random = new Random(seed);
+        this.measureFrom = measureFrom;
+        this.stopAt = stopAt;
+    }
+
+    @Override
+    public void run() {
+        try {
+            logIn();
+            while (System.nanoTime() < stopAt) {
+                execute(settings.nextOperation(random));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(username + " stopped", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void logIn() throws IOException, InterruptedException {
+        String credentials = objectMapper.writeValueAsString(Map.of("username", username, "password", "password"));
+        HttpResponse<String> response = send(Operation.AUTHENTICATE, HttpRequest.newBuilder(uri("/authenticate"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials)).header("Content-Type", "application/json"));
+        token = response.headers().firstValue(SecurityConstants.AUTHORIZATION)
+                .orElseThrow(() -> new IllegalStateException(username + " could not log in: " + response.statusCode()));
+    }
+
+    private void execute(Operation operation) throws IOException, InterruptedException {
+        if ((operation == Operation.EDIT || operation == Operation.FLAG) && messageIds.isEmpty()) operation = Operation.SEND;
+        if (operation == Operation.CHAT && chatIds.isEmpty()) operation = Operation.CHATS;
+        switch (operation) {
+            case SEND -> {
+                String message = objectMapper.writeValueAsString(Map.of(
+                        "receiverId", List.of(receiverIds.get(random.nextInt(receiverIds.size()))), "content", "load test message"));
+                HttpResponse<String> response = send(operation, authorized("/message")
+                        .POST(HttpRequest.BodyPublishers.ofString(message)).header("Content-Type", "application/json"));
+                if (response.statusCode() == 201 || response.statusCode() == 202) remember(objectMapper.readTree(response.body()).get("id").asLong());
+            }
+            case EDIT -> send(operation, authorized("/message/" + randomMessage())
+                    .PUT(HttpRequest.BodyPublishers.ofString("edited load test message")).header("Content-Type", "text/plain"));
+            case FLAG -> send(operation, authorized("/message/flag/" + randomMessage())
+                    .PUT(HttpRequest.BodyPublishers.noBody()));
+            case CHATS -> {
+                HttpResponse<String> response = send(operation, authorized("/chat/all").GET());
+                if (response.statusCode() == 200) {
+                    chatIds.clear();
+                    for (JsonNode chat : objectMapper.readTree(response.body())) chatIds.add(chat.get("chatId").asLong());
+                }
+            }
+            case CHAT -> send(operation, authorized("/chat/" + chatIds.get(random.nextInt(chatIds.size()))).GET());
+        }
+    }
+
+    private HttpResponse<String> send(Operation operation, HttpRequest.Builder request) throws IOException, InterruptedException {
+        return send(operation.endpoint(), request);
+    }
+
+    private HttpResponse<String> send(String endpoint, HttpRequest.Builder request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        // logins happen once per user, mostly during the warmup, so they are always measured
+        if (endpoint.equals(Operation.AUTHENTICATE) || start >= measureFrom && start < stopAt) {
+            report.record(endpoint, System.nanoTime() - start, response.statusCode() >= 400);
+        }
+        return response;
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(uri(path)).header(SecurityConstants.AUTHORIZATION, token);
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private void remember(long messageId) {
+        if (messageIds.size() == REMEMBERED_MESSAGES) messageIds.remove(0);
+        messageIds.add(messageId);
+    }
+
+    private long randomMessage() {
+        return messageIds.get(random.nextInt(messageIds.size()));
+    }
+}
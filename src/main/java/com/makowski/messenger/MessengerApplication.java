@@ -2,13 +2,18 @@ package com.makowski.messenger;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
 public class MessengerApplication {
 
+	private static final int STARTUP_STEPS = 10000;
+
 	public static void main(String[] args) {
-		SpringApplication.run(MessengerApplication.class, args);
+		SpringApplication application = new SpringApplication(MessengerApplication.class);
+		application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+		application.run(args);
 	}
 }
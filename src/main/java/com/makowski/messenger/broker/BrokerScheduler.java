@@ -0,0 +1,74 @@
+package com.makowski.messenger.broker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the periodic work of the broker, the flushes of {@link EventFanout} and the polls of
+ * {@link DatabaseEventBroker}, on threads of its own. On the scheduler of the {@code @Scheduled} jobs they would
+ * wait for the removers, and the other nodes would serve what they cached for as long as a removal run takes.
+ * Tasks are registered when their beans are created and start with the application context.
+ */
+@Slf4j
+@Component
+public class BrokerScheduler implements SmartLifecycle {
+
+    static final int THREADS = 2;
+
+    private final List<Task> tasks = new ArrayList<>();
+    private ScheduledExecutorService executor;
+
+    public synchronized void scheduleWithFixedDelay(String name, Runnable runnable, long delayMillis) {
+        Task task = new Task(name, runnable, delayMillis);
+        tasks.add(task);
+        if (executor != null) schedule(task);
+    }
+
+    @Override
+    public synchronized void start() {
+        executor = Executors.newScheduledThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "event-broker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tasks.forEach(this::schedule);
+    }
+
+    @Override
+    public synchronized void stop() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    // an exception would cancel the schedule
+    private void schedule(Task task) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                task.runnable().run();
+            } catch (RuntimeException e) {
+                log.warn("Broker task {} failed, retrying on the next run", task.name(), e);
+            }
+        }, task.delayMillis(), task.delayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private record Task(String name, Runnable runnable, long delayMillis) {
+    }
+}
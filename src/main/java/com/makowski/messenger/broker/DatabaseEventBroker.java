@@ -0,0 +1,94 @@
+package com.makowski.messenger.broker;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.entity.BrokerEvent;
+import com.makowski.messenger.repository.BrokerEventRepository;
+import com.makowski.messenger.service.CommitSequence;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Passes batches through the broker_event table, which every node polls. Needs nothing but the shared database,
+ * at the cost of one small query per node and poll interval.
+ * <p>
+ * Rows can commit out of id order, so they are read by the position {@link CommitSequence} gives them after their
+ * commit: a row that commits late gets a later position and is still read, whatever the clocks of the nodes say.
+ * Rows are deleted after {@link #RETENTION}, long enough for any node that is still running.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "messenger.broker", havingValue = "database")
+public class DatabaseEventBroker implements EventBroker {
+
+    static final int POLL_SIZE = 1000;
+    static final Duration RETENTION = Duration.ofMinutes(1);
+
+    private final BrokerEventRepository brokerEventRepository;
+    private final ObjectMapper objectMapper;
+    private final List<Consumer<EventBatch>> listeners = new CopyOnWriteArrayList<>();
+    // the last row delivered
+    private long commitSeq;
+    private long id = Long.MAX_VALUE;
+
+    public DatabaseEventBroker(BrokerEventRepository brokerEventRepository, ObjectMapper objectMapper,
+                               BrokerScheduler brokerScheduler,
+                               @Value("${messenger.broker.poll-interval-ms:200}") long pollIntervalMillis,
+                               @Value("${messenger.broker.prune-interval-ms:60000}") long pruneIntervalMillis) {
+        this.brokerEventRepository = brokerEventRepository;
+        this.objectMapper = objectMapper;
+        // a node that starts has nothing cached yet, so the earlier batches don't concern it
+        Long maxCommitSeq = brokerEventRepository.findMaxCommitSeq();
+        this.commitSeq = maxCommitSeq == null ? 0 : maxCommitSeq;
+        brokerScheduler.scheduleWithFixedDelay("poll", this::poll, pollIntervalMillis);
+        brokerScheduler.scheduleWithFixedDelay("prune", this::prune, pruneIntervalMillis);
+    }
+
+    @Override
+    public String name() {
+        return "database";
+    }
+
+    @Override
+    public void publish(EventBatch batch) throws JsonProcessingException {
+        brokerEventRepository.save(new BrokerEvent(batch.origin(), objectMapper.writeValueAsString(batch),
+            CommitSequence.UNPOSITIONED));
+    }
+
+    @Override
+    public void subscribe(Consumer<EventBatch> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void poll() {
+        for (BrokerEvent event : brokerEventRepository.findAfter(commitSeq, id, PageRequest.of(0, POLL_SIZE))) {
+            deliver(event);
+            commitSeq = event.getCommitSeq();
+            id = event.getId();
+        }
+    }
+
+    public void prune() {
+        brokerEventRepository.deleteCreatedBefore(LocalDateTime.now().minus(RETENTION));
+    }
+
+    private void deliver(BrokerEvent event) {
+        try {
+            EventBatch batch = objectMapper.readValue(event.getPayload(), EventBatch.class);
+            listeners.forEach(listener -> listener.accept(batch));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Broker event {} from node {} could not be delivered", event.getId(), event.getOrigin(), e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.makowski.messenger.broker;
+
+import java.util.Set;
+
+/**
+ * Changes made on one node since its last batch, each id once however often it changed. Profiles is set when any
+ * user was renamed or deleted, all when the node dropped ids it could not send. Receiving nodes drop what they
+ * cached about these ids, or everything for all; the data itself is read from the database again.
+ */
+public record EventBatch(String origin, Set<Long> chatIds, Set<Long> userIds, Set<Long> messageIds,
+                         boolean profiles, boolean all) {
+
+    // the ids, and one for each flag that is set
+    public int size() {
+        return chatIds.size() + userIds.size() + messageIds.size() + (profiles ? 1 : 0) + (all ? 1 : 0);
+    }
+}
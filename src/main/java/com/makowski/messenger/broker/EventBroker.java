@@ -0,0 +1,17 @@
+package com.makowski.messenger.broker;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries event batches between the nodes of one deployment. Every subscriber gets every batch at least once,
+ * including the batches of its own node, in no guaranteed order.
+ * The implementation is chosen with {@code messenger.broker}.
+ */
+public interface EventBroker {
+
+    String name();
+
+    void publish(EventBatch batch) throws Exception;
+
+    void subscribe(Consumer<EventBatch> listener);
+}
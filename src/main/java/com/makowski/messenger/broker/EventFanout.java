@@ -0,0 +1,184 @@
+package com.makowski.messenger.broker;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.makowski.messenger.cluster.LocalNode;
+import com.makowski.messenger.service.AfterTransaction;
+import com.makowski.messenger.service.MessageJsonCache;
+import com.makowski.messenger.service.RecentMessagesCache;
+import com.makowski.messenger.service.ResourceVersions;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Spreads the changes made on this node to the other nodes through the {@link EventBroker}, and applies theirs here.
+ * Without it the ETag versions of {@link ResourceVersions} and the {@link MessageJsonCache} of a node only follow
+ * its own writes, so a client polling node B would keep getting 304 for a chat a message was just sent to on node A.
+ * Services report their changes here rather than to {@link ResourceVersions}, which is bumped here for this node.
+ * <p>
+ * Changes are collected once their transaction commits and sent every flush interval, on the {@link BrokerScheduler},
+ * as one batch per node, with every id once however often it changed. Received batches are applied like local
+ * changes, but not sent on.
+ * While the broker fails, at most {@link #MAX_PENDING} ids of each kind wait; past that they are dropped and the
+ * next batch tells the other nodes to drop everything they cached.
+ */
+@Slf4j
+@Component
+public class EventFanout {
+
+    // keeps the JSON of a batch within the 4000 characters of broker_event.payload
+    static final int MAX_BATCH_SIZE = 150;
+    static final int MAX_PENDING = 100 * MAX_BATCH_SIZE;
+
+    private final EventBroker broker;
+    private final ResourceVersions resourceVersions;
+    private final MessageJsonCache messageJsonCache;
+    private final RecentMessagesCache recentMessagesCache;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+
+    private final Set<Long> chatIds = new LinkedHashSet<>();
+    private final Set<Long> userIds = new LinkedHashSet<>();
+    private final Set<Long> messageIds = new LinkedHashSet<>();
+    private boolean profiles;
+    private boolean all;
+
+    public EventFanout(EventBroker broker, ResourceVersions resourceVersions, MessageJsonCache messageJsonCache,
+                       RecentMessagesCache recentMessagesCache, MeterRegistry meterRegistry, LocalNode localNode,
+                       BrokerScheduler brokerScheduler, @Value("${messenger.broker.flush-interval-ms:100}") long flushIntervalMillis) {
+        this.broker = broker;
+        this.resourceVersions = resourceVersions;
+        this.messageJsonCache = messageJsonCache;
+        this.recentMessagesCache = recentMessagesCache;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = localNode.getId();
+        broker.subscribe(this::receive);
+        brokerScheduler.scheduleWithFixedDelay("flush", this::flush, flushIntervalMillis);
+    }
+
+    public void chatChanged(Long chatId) {
+        chatsChanged(List.of(chatId));
+    }
+
+    public void chatsChanged(Collection<Long> chatIds) {
+        List<Long> ids = List.copyOf(chatIds);
+        resourceVersions.chatsChanged(ids);
+        afterCommit(() -> add(this.chatIds, ids));
+    }
+
+    public void userChanged(Long userId) {
+        usersChanged(List.of(userId));
+    }
+
+    public void usersChanged(Collection<Long> userIds) {
+        List<Long> ids = List.copyOf(userIds);
+        resourceVersions.usersChanged(ids);
+        afterCommit(() -> add(this.userIds, ids));
+    }
+
+    public void profilesChanged() {
+        resourceVersions.profilesChanged();
+        afterCommit(() -> profiles = true);
+    }
+
+    public void messageChanged(Long chatId, Long messageId) {
+        resourceVersions.chatChanged(chatId);
+        afterCommit(() -> {
+            add(chatIds, List.of(chatId));
+            add(messageIds, List.of(messageId));
+        });
+    }
+
+    public void flush() {
+        EventBatch batch;
+        while ((batch = nextBatch()) != null) {
+            EventBatch published = batch;
+            try {
+                meterRegistry.timer("messenger.broker.publish", "broker", broker.name()).recordCallable(() -> {
+                    broker.publish(published);
+                    return null;
+                });
+                meterRegistry.counter("messenger.broker.published").increment(batch.size());
+            } catch (Exception e) {
+                meterRegistry.counter("messenger.broker.failures", "broker", broker.name()).increment();
+                log.warn("Broker {} failed on a batch of {} ids, retrying on the next flush", broker.name(), batch.size(), e);
+                requeue(batch);
+                return;
+            }
+        }
+    }
+
+    void receive(EventBatch batch) {
+        if (nodeId.equals(batch.origin())) return;
+        if (batch.all()) {
+            resourceVersions.invalidateAll();
+            messageJsonCache.clear();
+            recentMessagesCache.invalidateAll();
+        }
+        if (batch.profiles()) resourceVersions.profilesChanged();
+        resourceVersions.chatsChanged(batch.chatIds());
+        resourceVersions.usersChanged(batch.userIds());
+        batch.messageIds().forEach(messageJsonCache::evict);
+        recentMessagesCache.evictChats(batch.chatIds());
+        meterRegistry.counter("messenger.broker.received").increment(batch.size());
+    }
+
+    private synchronized EventBatch nextBatch() {
+        if (chatIds.isEmpty() && userIds.isEmpty() && messageIds.isEmpty() && !profiles && !all) return null;
+        Set<Long> chats = take(chatIds, MAX_BATCH_SIZE);
+        Set<Long> users = take(userIds, MAX_BATCH_SIZE - chats.size());
+        Set<Long> messages = take(messageIds, MAX_BATCH_SIZE - chats.size() - users.size());
+        EventBatch batch = new EventBatch(nodeId, chats, users, messages, profiles, all);
+        profiles = false;
+        all = false;
+        return batch;
+    }
+
+    private synchronized void requeue(EventBatch batch) {
+        add(chatIds, batch.chatIds());
+        add(userIds, batch.userIds());
+        add(messageIds, batch.messageIds());
+        profiles |= batch.profiles();
+        all |= batch.all();
+    }
+
+    // guarded by this
+    private void add(Set<Long> pending, Collection<Long> ids) {
+        if (all) return;
+        pending.addAll(ids);
+        if (pending.size() > MAX_PENDING) {
+            log.warn("More than {} changes are waiting for broker {}, the other nodes will drop all they cached",
+                MAX_PENDING, broker.name());
+            chatIds.clear();
+            userIds.clear();
+            messageIds.clear();
+            all = true;
+        }
+    }
+
+    private static Set<Long> take(Set<Long> pending, int count) {
+        Set<Long> taken = new LinkedHashSet<>();
+        for (Iterator<Long> ids = pending.iterator(); ids.hasNext() && taken.size() < count; ) {
+            taken.add(ids.next());
+            ids.remove();
+        }
+        return taken;
+    }
+
+    // only committed changes concern the other nodes
+    private void afterCommit(Runnable collect) {
+        AfterTransaction.afterCommit(() -> collectNow(collect));
+    }
+
+    private synchronized void collectNow(Runnable collect) {
+        collect.run();
+    }
+}
@@ -0,0 +1,53 @@
+package com.makowski.messenger.broker;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands batches to the subscribers of every application context in this JVM, on the publishing thread.
+ * With a single instance it only reaches itself; it lets several instances started in one JVM, as in tests,
+ * behave like a cluster.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "messenger.broker", havingValue = "in-process", matchIfMissing = true)
+public class InProcessEventBroker implements EventBroker {
+
+    private static final List<Consumer<EventBatch>> SUBSCRIBERS = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<EventBatch>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String name() {
+        return "in-process";
+    }
+
+    @Override
+    public void publish(EventBatch batch) {
+        for (Consumer<EventBatch> subscriber : SUBSCRIBERS) {
+            try {
+                subscriber.accept(batch);
+            } catch (RuntimeException e) {
+                log.warn("A subscriber failed on a batch from node {}", batch.origin(), e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<EventBatch> listener) {
+        listeners.add(listener);
+        SUBSCRIBERS.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        SUBSCRIBERS.removeAll(listeners);
+    }
+}
@@ -0,0 +1,112 @@
+package com.makowski.messenger.cluster;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.repository.ChatRepository;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.repository.UserRepository;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Finds the chat a request is about, for {@link ChatRoutingFilter}: the one in the path under {@code /chat/{chatId}},
+ * the chat of the message for changes to one, and for a new message the chat of its sender and receivers. The body
+ * of a new message is read with the converters of Spring MVC, so every format the controller takes is understood.
+ * A new message to a new set of members has no chat yet and isn't routed.
+ */
+@Component
+public class ChatLocator {
+
+    private static final Pattern CHAT_PATH = Pattern.compile("/chat/(\\d+)(/.*)?");
+    private static final Pattern MESSAGE_PATH = Pattern.compile("/message(/flag)?/(\\d+)");
+    private static final String NEW_MESSAGE_PATH = "/message";
+
+    private final ChatRepository chatRepository;
+    private final MessageRepository messageRepository;
+    private final UserRepository userRepository;
+    private final RequestMappingHandlerAdapter handlerAdapter;
+
+    // the adapter of the controllers, not the one of Spring Data REST; looked up on first use, as filters are created
+    // before Spring MVC
+    public ChatLocator(ChatRepository chatRepository, MessageRepository messageRepository, UserRepository userRepository,
+                       @Lazy @Qualifier("requestMappingHandlerAdapter") RequestMappingHandlerAdapter handlerAdapter) {
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.userRepository = userRepository;
+        this.handlerAdapter = handlerAdapter;
+    }
+
+    // by path and method only, without a query
+    public boolean isAboutChat(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+        if (CHAT_PATH.matcher(path).matches()) return true;
+        if (NEW_MESSAGE_PATH.equals(path)) return "POST".equals(method);
+        Matcher message = MESSAGE_PATH.matcher(path);
+        return message.matches() && ("PUT".equals(method) || "DELETE".equals(method) && message.group(1) == null);
+    }
+
+    // null when the request isn't about a chat that exists; the body is read, so it has to be one that can be read again
+    public Long chatOf(HttpServletRequest request) {
+        if (!isAboutChat(request)) return null;
+        String path = request.getRequestURI();
+        Matcher chat = CHAT_PATH.matcher(path);
+        if (chat.matches()) return Long.valueOf(chat.group(1));
+        Matcher message = MESSAGE_PATH.matcher(path);
+        if (message.matches()) return messageRepository.findChatIdById(Long.valueOf(message.group(2))).orElse(null);
+        return newMessageChat(request);
+    }
+
+    private Long newMessageChat(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Message message = readMessage(request);
+        if (authentication == null || message == null || message.getReceiverId() == null) return null;
+        Long senderId = userRepository.findIdByUsername(authentication.getName()).orElse(null);
+        if (senderId == null) return null;
+        Set<Long> memberIds = new HashSet<>(message.getReceiverId());
+        memberIds.add(senderId);
+        if (memberIds.size() < 2) return null;
+        List<Long> chatIds = chatRepository.findIdsByMembers(senderId, memberIds, memberIds.size());
+        return chatIds.isEmpty() ? null : chatIds.get(0);
+    }
+
+    // null when no converter takes the body, which the controller then answers
+    @SuppressWarnings("unchecked")
+    private Message readMessage(HttpServletRequest request) {
+        try {
+            MediaType contentType = request.getContentType() == null ? MediaType.APPLICATION_JSON : MediaType.parseMediaType(request.getContentType());
+            HttpInputMessage body = new ServletServerHttpRequest(request);
+            for (HttpMessageConverter<?> converter : handlerAdapter.getMessageConverters()) {
+                if (converter instanceof GenericHttpMessageConverter<?> generic && generic.canRead(Message.class, null, contentType)) {
+                    return (Message) generic.read(Message.class, null, body);
+                }
+                if (converter.canRead(Message.class, contentType)) {
+                    return ((HttpMessageConverter<Message>) converter).read(Message.class, body);
+                }
+            }
+            return null;
+        } catch (IOException | HttpMessageNotReadableException | InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
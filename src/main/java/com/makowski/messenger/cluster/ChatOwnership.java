@@ -0,0 +1,106 @@
+package com.makowski.messenger.cluster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Assigns every chat to one of the {@link ClusterMembership} nodes, so state kept in memory per chat has one owner.
+ * <p>
+ * Consistent hashing: each node takes {@value #VIRTUAL_NODES} points on a ring of 64-bit hashes and owns the chats
+ * hashing up to its points. A node that joins takes about 1/n of the chats, all from the others; a node that leaves
+ * hands only its own chats on. A node that isn't on the ring yet, e.g. while starting, treats every chat as its own.
+ */
+@Slf4j
+@Component
+public class ChatOwnership {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final LocalNode localNode;
+    private final ClusterMembership membership;
+    private volatile Ring ring = new Ring(Collections.emptyNavigableMap(), false, false);
+
+    public ChatOwnership(LocalNode localNode, ClusterMembership membership) {
+        this.localNode = localNode;
+        this.membership = membership;
+        membership.addListener(this::rebuild);
+        rebuild();
+    }
+
+    public ClusterNode owner(Long chatId) {
+        NavigableMap<Long, ClusterNode> points = ring.points();
+        if (points.isEmpty()) return null;
+        Map.Entry<Long, ClusterNode> point = points.ceilingEntry(hash(chatId));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    public boolean isLocal(Long chatId) {
+        return remoteOwner(chatId) == null;
+    }
+
+    // the node requests about the chat should go to, or null when it is this one
+    public ClusterNode remoteOwner(Long chatId) {
+        if (!ring.containsLocalNode()) return null;
+        ClusterNode owner = owner(chatId);
+        return owner == null || owner.id().equals(localNode.getId()) ? null : owner;
+    }
+
+    // whether any chat can have another owner, before looking up which chat a request is about
+    public boolean hasRemoteNodes() {
+        return ring.containsLocalNode() && ring.containsOtherNodes();
+    }
+
+    public List<ClusterNode> nodes() {
+        return ring.points().values().stream().distinct().toList();
+    }
+
+    synchronized void rebuild() {
+        List<ClusterNode> nodes = membership.nodes();
+        NavigableMap<Long, ClusterNode> points = new TreeMap<>();
+        for (ClusterNode node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                points.put(pointHash(node.id(), i), node);
+            }
+        }
+        boolean containsLocalNode = nodes.stream().anyMatch(node -> node.id().equals(localNode.getId()));
+        boolean containsOtherNodes = nodes.stream().anyMatch(node -> !node.id().equals(localNode.getId()));
+        ring = new Ring(Collections.unmodifiableNavigableMap(points), containsLocalNode, containsOtherNodes);
+        log.info("Chats are spread over {} nodes: {}", nodes.size(), nodes.stream().map(ClusterNode::id).toList());
+    }
+
+    static long hash(Long chatId) {
+        return mix(chatId);
+    }
+
+    // The first 8 bytes of SHA-1. Node ids are strings, whose 32-bit hashCode collides easily ("Aa" and "BB"), and
+    // two nodes on the same points would leave one of them without chats.
+    static long pointHash(String nodeId, int point) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((nodeId + "#" + point).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    // the SplitMix64 finalizer, so neighbouring ids land far apart on the ring
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private record Ring(NavigableMap<Long, ClusterNode> points, boolean containsLocalNode, boolean containsOtherNodes) {
+    }
+}
@@ -0,0 +1,245 @@
+package com.makowski.messenger.cluster;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Forwards requests about a chat, those under {@code /chat/{chatId}} and the writes of messages, to the node that owns
+ * the chat and passes its response back, so the state that node keeps about the chat serves every client. The chat is
+ * found by {@link ChatLocator}. Runs after authentication, so only authenticated requests are forwarded; the owner
+ * checks access again.
+ * <p>
+ * A forwarded request is marked and served wherever it arrives, so nodes whose rings briefly disagree while one joins
+ * or leaves don't send it back and forth. The mark is signed with messenger.cluster.secret, which all nodes share;
+ * a mark a client sent itself doesn't keep its request from being routed, and isn't passed on. When the owner can't be reached, the request is served here: the owner
+ * only holds copies of what is in the database. When the owner was reached but failed or didn't answer within
+ * messenger.cluster.forward-timeout-ms, only GET, HEAD and OPTIONS are served here; any other request may have been
+ * applied by the owner already and gets 502, or 504 after the timeout.
+ */
+@Slf4j
+@Component
+public class ChatRoutingFilter extends OncePerRequestFilter {
+
+    static final String FORWARDED_BY = "X-Messenger-Forwarded-By";
+    static final String FORWARD_SIGNATURE = "X-Messenger-Forward-Signature";
+    static final String SERVED_BY = "X-Messenger-Node";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(1);
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    // set by the HTTP client itself or only meaningful for one connection
+    private static final Set<String> NOT_FORWARDED = Set.of("connection", "content-length", "date", "expect", "host",
+            "keep-alive", "te", "trailer", "transfer-encoding", "upgrade",
+            FORWARDED_BY.toLowerCase(Locale.ROOT), FORWARD_SIGNATURE.toLowerCase(Locale.ROOT));
+    // shared by the instances in one JVM, as with in-process membership, when messenger.cluster.secret isn't set
+    private static final byte[] JVM_SECRET = randomSecret();
+
+    private final LocalNode localNode;
+    private final ChatOwnership chatOwnership;
+    private final ChatLocator chatLocator;
+    private final MeterRegistry meterRegistry;
+    private final Duration requestTimeout;
+    private final SecretKeySpec secret;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+
+    public ChatRoutingFilter(LocalNode localNode, ChatOwnership chatOwnership, ChatLocator chatLocator, MeterRegistry meterRegistry,
+                             @Value("${messenger.cluster.forward-timeout-ms:10000}") long requestTimeoutMillis,
+                             @Value("${messenger.cluster.secret:}") String secret) {
+        this.localNode = localNode;
+        this.chatOwnership = chatOwnership;
+        this.chatLocator = chatLocator;
+        this.meterRegistry = meterRegistry;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.secret = new SecretKeySpec(secret.isEmpty() ? JVM_SECRET : secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !chatLocator.isAboutChat(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        HttpServletRequest served = request;
+        if (!isForwarded(request) && chatOwnership.hasRemoteNodes()) {
+            // read once, as the chat of a new message is found through its body, and the request is served here with
+            // its body when forwarding fails
+            CachedBodyRequest cached = new CachedBodyRequest(request);
+            served = cached;
+            Long chatId = chatLocator.chatOf(cached);
+            ClusterNode owner = chatId == null ? null : chatOwnership.remoteOwner(chatId);
+            if (owner != null && forwarded(cached, response, owner)) return;
+        }
+        response.setHeader(SERVED_BY, localNode.getId());
+        filterChain.doFilter(served, response);
+    }
+
+    // false when the request is to be served here after all
+    private boolean forwarded(CachedBodyRequest request, HttpServletResponse response, ClusterNode owner)
+            throws ServletException, IOException {
+        try {
+            forward(request, response, owner);
+            meterRegistry.counter("messenger.cluster.forwarded").increment();
+            return true;
+        } catch (ConnectException | HttpConnectTimeoutException e) {
+            meterRegistry.counter("messenger.cluster.forward.failures").increment();
+            log.warn("Node {} owning {} is unreachable, serving it here", owner.id(), request.getRequestURI(), e);
+        } catch (IOException e) {
+            meterRegistry.counter("messenger.cluster.forward.failures").increment();
+            // part of the owner's answer went out already
+            if (response.isCommitted()) throw e;
+            if (!SAFE_METHODS.contains(request.getMethod())) {
+                log.warn("Node {} failed on {} {}, which it may have applied", owner.id(), request.getMethod(), request.getRequestURI(), e);
+                response.sendError(e instanceof HttpTimeoutException ? HttpServletResponse.SC_GATEWAY_TIMEOUT : HttpServletResponse.SC_BAD_GATEWAY);
+                return true;
+            }
+            log.warn("Node {} failed on {}, serving it here", owner.id(), request.getRequestURI(), e);
+        }
+        return false;
+    }
+
+    private boolean isForwarded(HttpServletRequest request) {
+        String node = request.getHeader(FORWARDED_BY);
+        String signature = request.getHeader(FORWARD_SIGNATURE);
+        return node != null && signature != null && MessageDigest.isEqual(
+                signature(node, request.getMethod(), target(request)).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // of the forwarding node and the request line, so that a mark taken from one request doesn't fit another
+    String signature(String node, String method, String target) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secret);
+            return Base64.getEncoder().encodeToString(mac.doFinal((node + " " + method + " " + target).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Forwarded requests could not be signed", e);
+        }
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private static String target(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return request.getRequestURI() + (query == null ? "" : "?" + query);
+    }
+
+    private void forward(CachedBodyRequest request, HttpServletResponse response, ClusterNode owner)
+            throws IOException, ServletException {
+        String target = target(request);
+        HttpRequest.Builder forwarded = HttpRequest.newBuilder(URI.create(owner.url() + target))
+                .method(request.getMethod(), HttpRequest.BodyPublishers.ofByteArray(request.body))
+                .timeout(requestTimeout)
+                .header(FORWARDED_BY, localNode.getId())
+                .header(FORWARD_SIGNATURE, signature(localNode.getId(), request.getMethod(), target));
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (NOT_FORWARDED.contains(name.toLowerCase(Locale.ROOT))) continue;
+            for (String value : Collections.list(request.getHeaders(name))) forwarded.header(name, value);
+        }
+        HttpResponse<InputStream> answer;
+        try {
+            answer = client.send(forwarded.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while forwarding to node " + owner.id(), e);
+        }
+        response.setStatus(answer.statusCode());
+        answer.headers().map().forEach((name, values) -> {
+            if (name.startsWith(":") || NOT_FORWARDED.contains(name.toLowerCase(Locale.ROOT))) return;
+            values.forEach(value -> response.addHeader(name, value));
+        });
+        try (InputStream body = answer.body(); OutputStream out = response.getOutputStream()) {
+            body.transferTo(out);
+        }
+    }
+
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.makowski.messenger.cluster;
+
+import java.util.List;
+
+/**
+ * The instances currently serving, as told by whatever discovers them. The implementation is chosen with
+ * {@code messenger.cluster.membership}.
+ */
+public interface ClusterMembership {
+
+    List<ClusterNode> nodes();
+
+    // called whenever nodes() changes
+    void addListener(Runnable listener);
+}
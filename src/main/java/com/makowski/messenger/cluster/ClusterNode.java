@@ -0,0 +1,7 @@
+package com.makowski.messenger.cluster;
+
+/**
+ * A running instance: its {@code messenger.node-id} and the base URL other instances reach it at.
+ */
+public record ClusterNode(String id, String url) {
+}
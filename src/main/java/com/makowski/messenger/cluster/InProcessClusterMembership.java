@@ -0,0 +1,56 @@
+package com.makowski.messenger.cluster;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Stands in for discovery when several instances run in one JVM, as in tests: an instance joins once its web server
+ * listens and leaves when its context closes.
+ */
+@Component
+@ConditionalOnProperty(name = "messenger.cluster.membership", havingValue = "in-process")
+public class InProcessClusterMembership implements ClusterMembership, ApplicationListener<WebServerInitializedEvent> {
+
+    private static final Map<String, ClusterNode> NODES = new ConcurrentSkipListMap<>();
+    private static final List<Runnable> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final LocalNode localNode;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public InProcessClusterMembership(LocalNode localNode) {
+        this.localNode = localNode;
+    }
+
+    @Override
+    public List<ClusterNode> nodes() {
+        return List.copyOf(NODES.values());
+    }
+
+    @Override
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+        LISTENERS.add(listener);
+    }
+
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event) {
+        if ("management".equals(event.getApplicationContext().getServerNamespace())) return;
+        NODES.put(localNode.getId(), new ClusterNode(localNode.getId(), "http://localhost:" + event.getWebServer().getPort()));
+        LISTENERS.forEach(Runnable::run);
+    }
+
+    @PreDestroy
+    public void leave() {
+        LISTENERS.removeAll(listeners);
+        if (NODES.remove(localNode.getId()) != null) LISTENERS.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,23 @@
+package com.makowski.messenger.cluster;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The id of this instance among the others, {@code messenger.node-id} or a random one.
+ */
+@Component
+public class LocalNode {
+
+    private final String id;
+
+    public LocalNode(@Value("${messenger.node-id:}") String id) {
+        this.id = id.isEmpty() ? UUID.randomUUID().toString() : id;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
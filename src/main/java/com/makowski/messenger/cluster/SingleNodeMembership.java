@@ -0,0 +1,30 @@
+package com.makowski.messenger.cluster;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * This instance alone, which owns every chat. Nothing ever rebalances: other instances started with it own every chat
+ * as well and never forward.
+ */
+@Component
+@ConditionalOnProperty(name = "messenger.cluster.membership", havingValue = "single", matchIfMissing = true)
+public class SingleNodeMembership implements ClusterMembership {
+
+    private final List<ClusterNode> nodes;
+
+    public SingleNodeMembership(LocalNode localNode) {
+        this.nodes = List.of(new ClusterNode(localNode.getId(), null));
+    }
+
+    @Override
+    public List<ClusterNode> nodes() {
+        return nodes;
+    }
+
+    @Override
+    public void addListener(Runnable listener) {
+    }
+}
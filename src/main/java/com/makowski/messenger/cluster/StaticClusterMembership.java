@@ -0,0 +1,41 @@
+package com.makowski.messenger.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * A fixed list of instances, {@code messenger.cluster.nodes=a=http://host-a:8080,b=http://host-b:8080}.
+ * Every instance needs the same list, its own id in it, and the same {@code messenger.cluster.secret}, with which
+ * forwarded requests are signed. The list never changes while running, so chats are never rebalanced: the chats of
+ * a node that is down stay its own, and each request for them is served by the node that received it after the
+ * connect timeout of {@link ChatRoutingFilter}.
+ */
+@Component
+@ConditionalOnProperty(name = "messenger.cluster.membership", havingValue = "static")
+public class StaticClusterMembership implements ClusterMembership {
+
+    private final List<ClusterNode> nodes = new ArrayList<>();
+
+    public StaticClusterMembership(@Value("${messenger.cluster.nodes}") List<String> nodes,
+                                   @Value("${messenger.cluster.secret:}") String secret) {
+        if (secret.isBlank()) throw new IllegalArgumentException("messenger.cluster.secret has to be set with static membership");
+        for (String node : nodes) {
+            int separator = node.indexOf('=');
+            if (separator < 1) throw new IllegalArgumentException("Expected id=url in messenger.cluster.nodes: " + node);
+            this.nodes.add(new ClusterNode(node.substring(0, separator).trim(), node.substring(separator + 1).trim()));
+        }
+    }
+
+    @Override
+    public List<ClusterNode> nodes() {
+        return List.copyOf(nodes);
+    }
+
+    @Override
+    public void addListener(Runnable listener) {
+    }
+}
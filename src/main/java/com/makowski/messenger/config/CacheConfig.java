@@ -0,0 +1,34 @@
+package com.makowski.messenger.config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+
+@Configuration
+public class CacheConfig {
+
+    // The provider hands out one shared cache manager per URI, so every application context (tests, benchmarks and
+    // load tests start several in one JVM) gets its own URI and can't close or read the caches of another one.
+    @Bean(destroyMethod = "close")
+    public CacheManager jCacheManager() throws IOException {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        XmlConfiguration configuration = new XmlConfiguration(new ClassPathResource("ehcache.xml").getURL(), getClass().getClassLoader());
+        return provider.getCacheManager(URI.create("messenger:" + UUID.randomUUID()), configuration);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager jCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, jCacheManager);
+    }
+}
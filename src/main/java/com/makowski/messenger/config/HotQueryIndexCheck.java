@@ -0,0 +1,90 @@
+package com.makowski.messenger.config;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Component
+@AllArgsConstructor
+public class HotQueryIndexCheck {
+
+    // query -> table and the leading columns an index needs so that the query doesn't scan the whole table
+    private static final List<HotQuery> HOT_QUERIES = List.of(
+            new HotQuery("MessageRepository.findExpiredIds", "message", List.of("permanent", "date_time")),
+            new HotQuery("Chat.messages", "message", List.of("chat_id")),
+            new HotQuery("User.chats", "chat_members", List.of("user_id")),
+            new HotQuery("ChangeLogRepository.findChanges", "change_log", List.of("user_id", "commit_seq")),
+            new HotQuery("ChangeLogRepository.findIdsByCommitSeq", "change_log", List.of("commit_seq")),
+            new HotQuery("OutboxEventRepository.findIdsByCommitSeq", "outbox_event", List.of("commit_seq")),
+            new HotQuery("BrokerEventRepository.findIdsByCommitSeq", "broker_event", List.of("commit_seq")),
+            new HotQuery("ChatSequenceRepository.findUnread", "chat_read", List.of("user_id")),
+            new HotQuery("MessageRepository.findIdsByChatIdAndSeqAfter", "message", List.of("chat_id", "seq")),
+            new HotQuery("MessageRepository.findSeqsByChatIdAndSeqAfter", "message", List.of("chat_id", "seq")),
+            new HotQuery("MessageRepository.findIdsByChatIdAndSeqBetween", "message", List.of("chat_id", "seq"))
+    );
+
+    private DataSource dataSource;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkIndexes() {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (HotQuery query : HOT_QUERIES) {
+                if (!isCovered(metaData, query)) {
+                    log.warn("{} will run as a full scan of table '{}': no index starts with columns {}",
+                            query.name(), query.table(), query.columns());
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Could not check indexes of hot queries", e);
+        }
+    }
+
+    private boolean isCovered(DatabaseMetaData metaData, HotQuery query) throws SQLException {
+        for (List<String> indexColumns : readIndexes(metaData, identifier(metaData, query.table()))) {
+            if (indexColumns.size() >= query.columns().size()
+                    && indexColumns.subList(0, query.columns().size()).equals(query.columns())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<List<String>> readIndexes(DatabaseMetaData metaData, String table) throws SQLException {
+        Map<String, TreeMap<Short, String>> indexes = new TreeMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(null, null, table, false, true)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (indexName == null || column == null) continue;
+                indexes.computeIfAbsent(indexName, name -> new TreeMap<>())
+                        .put(rs.getShort("ORDINAL_POSITION"), column.toLowerCase());
+            }
+        }
+        List<List<String>> result = new ArrayList<>();
+        indexes.values().forEach(columns -> result.add(new ArrayList<>(columns.values())));
+        return result;
+    }
+
+    private String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+        return metaData.storesUpperCaseIdentifiers() ? name.toUpperCase() : name;
+    }
+
+    private record HotQuery(String name, String table, List<String> columns) {
+    }
+}
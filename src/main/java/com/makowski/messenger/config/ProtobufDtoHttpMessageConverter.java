@@ -0,0 +1,141 @@
+package com.makowski.messenger.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.makowski.messenger.dto.ChatDto;
+import com.makowski.messenger.dto.ChatMessagesDto;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.dto.SyncDto;
+import com.makowski.messenger.dto.UnreadDto;
+import com.makowski.messenger.dto.UserDto;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.exception.ErrorResponse;
+
+/**
+ * Reads and writes the REST payloads as {@value #PROTOBUF_VALUE}, following the schema in proto/messenger.proto.
+ * The payloads go through Jackson like JSON does, so their annotations (formats, ignored fields) apply the same way.
+ * Lists and sets are wrapped in a message with a single repeated {@code items} field.
+ */
+public class ProtobufDtoHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType PROTOBUF = MediaType.parseMediaType(PROTOBUF_VALUE);
+
+    private static final String SCHEMA = "proto/messenger.proto";
+    private static final String ITEMS = "items";
+    private static final Map<Class<?>, String> MESSAGE_TYPES = Map.of(
+            Message.class, "Message",
+            MessageDto.class, "Message",
+            UserDto.class, "User",
+            ChatDto.class, "Chat",
+            ChatMessagesDto.class, "ChatMessages",
+            SyncDto.class, "Sync",
+            UnreadDto.class, "Unread",
+            ErrorResponse.class, "Error");
+    private static final Map<Class<?>, String> LIST_TYPES = Map.of(
+            ChatDto.class, "ChatList",
+            UnreadDto.class, "UnreadList",
+            UserDto.class, "UserList");
+
+    // the modules and defaults of the JSON mapper, e.g. constructor parameter names for UserDto
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+            .factory(new ProtobufFactory())
+            .featuresToDisable(JsonParser.Feature.AUTO_CLOSE_SOURCE, JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .build();
+    private final Map<String, ProtobufSchema> schemas;
+
+    public ProtobufDtoHttpMessageConverter() {
+        super(PROTOBUF);
+        try {
+            NativeProtobufSchema schema = ProtobufSchemaLoader.std.loadNative(new ClassPathResource(SCHEMA).getURL());
+            schemas = schema.getMessageNames().stream().collect(Collectors.toMap(name -> name, schema::forType));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load " + SCHEMA, e);
+        }
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return MESSAGE_TYPES.containsKey(clazz);
+    }
+
+    // Spring asks with the class of the body only after canWrite(Type, ...) accepted it, and the class of a list
+    // doesn't tell whether its elements have a schema
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || Collection.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return canRead(mediaType) && supports(ResolvableType.forType(GenericTypeResolver.resolveType(type, contextClass)).resolve(Object.class));
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return canWrite(mediaType) && messageType(bodyType(type, clazz)) != null;
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        JavaType javaType = mapper.constructType(GenericTypeResolver.resolveType(type, contextClass));
+        try {
+            return mapper.readerFor(javaType).with(schemas.get(MESSAGE_TYPES.get(javaType.getRawClass()))).readValue(inputMessage.getBody());
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Invalid Protobuf message: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        String messageType = messageType(bodyType(type, object.getClass()));
+        Object body = object instanceof Collection<?> items ? Map.of(ITEMS, items) : object;
+        mapper.writer(schemas.get(messageType)).writeValue(outputMessage.getBody(), body);
+    }
+
+    // the declared type when it tells more than the class of the body, e.g. Set<UserDto> rather than HashSet
+    private ResolvableType bodyType(@Nullable Type type, Class<?> clazz) {
+        ResolvableType declared = type == null ? ResolvableType.NONE : ResolvableType.forType(type);
+        return declared.resolve(Object.class) == Object.class ? ResolvableType.forClass(clazz) : declared;
+    }
+
+    @Nullable
+    private String messageType(ResolvableType type) {
+        Class<?> clazz = type.resolve(Object.class);
+        if (Collection.class.isAssignableFrom(clazz)) {
+            return LIST_TYPES.get(type.asCollection().getGeneric(0).resolve(Object.class));
+        }
+        return MESSAGE_TYPES.get(clazz);
+    }
+}
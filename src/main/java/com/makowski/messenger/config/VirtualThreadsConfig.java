@@ -0,0 +1,41 @@
+package com.makowski.messenger.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Opt-in execution mode with {@code spring.threads.virtual.enabled=true}: Spring Boot then serves requests and runs
+ * {@code @Scheduled} jobs on virtual threads. JDBC drivers block inside {@code synchronized} code, which pins a virtual
+ * thread to its carrier, so the number of threads inside JDBC is bounded by the size of the connection pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    public VirtualThreadsConfig() {
+        if (JavaVersion.getJavaVersion().isOlderThan(JavaVersion.TWENTY_ONE)) {
+            throw new IllegalStateException("Virtual threads need Java 21 or newer, the application runs on Java "
+                    + JavaVersion.getJavaVersion());
+        }
+    }
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    return new ConnectionLimitingDataSource(dataSource, dataSource.getMaximumPoolSize());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.makowski.messenger.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import lombok.AllArgsConstructor;
+
+@Configuration
+@AllArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    // Appended after Spring Boot's converters, so JSON stays the answer to "Accept: */*". CBOR is one of
+    // the defaults once jackson-dataformat-cbor is on the classpath, but with a mapper Spring MVC builds on its
+    // own; it is replaced in place by one from Boot's builder, so CBOR gets the same modules and spring.jackson
+    // settings as JSON.
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        int cbor = -1;
+        for (int i = 0; i < converters.size() && cbor < 0; i++) {
+            if (converters.get(i) instanceof MappingJackson2CborHttpMessageConverter) cbor = i;
+        }
+        if (cbor >= 0) {
+            converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter);
+            converters.add(cbor, new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build()));
+        }
+        converters.add(new ProtobufDtoHttpMessageConverter());
+    }
+}
@@ -4,15 +4,22 @@ import java.util.List;
 
 import com.makowski.messenger.exception.ErrorResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.makowski.messenger.dto.ChatDto;
-import com.makowski.messenger.entity.Chat;
+import com.makowski.messenger.dto.ChatMessagesDto;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.dto.UnreadDto;
 import com.makowski.messenger.service.ChatService;
 
 import lombok.AllArgsConstructor;
@@ -31,27 +38,83 @@ public class ChatController {
     
     private ChatService chatService;
 
-    @Operation(summary = "Get my chats", description = "Returns a list of chats from a currently logged in user. List contains only members names and chat IDs")
+    @Operation(summary = "Get my chats", description = "Returns a list of chats from a currently logged in user. List contains only members names and chat IDs. Supports conditional requests with If-None-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful retrieval of a chat list", content = @Content(array = @ArraySchema(schema = @Schema(implementation = ChatDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the version in If-None-Match"),
             @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Chat list is empty", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @GetMapping("/all")
-    public ResponseEntity<List<ChatDto>> getMyChats() {
+    public ResponseEntity<List<ChatDto>> getMyChats(WebRequest request) {
+        if (ConditionalRequests.notModified(request, chatService.getMyChatsTag())) return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         return new ResponseEntity<>(chatService.getMyChats(), HttpStatus.OK);
     }
 
-    @Operation(summary = "Get chat", description = "Returns a chat based on an ID. Allowed only for chat members")
+    @Operation(summary = "Get chat", description = "Returns a chat based on an ID. Allowed only for chat members. Supports conditional requests with If-None-Match")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successful retrieval of a Chat", content = @Content(schema = @Schema(implementation = Chat.class))),
+            @ApiResponse(responseCode = "200", description = "Successful retrieval of a Chat", content = @Content(schema = @Schema(implementation = ChatMessagesDto.class))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the version in If-None-Match"),
             @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "403", description = "Access denied - allowed only for chat members", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Chat with a selected ID doesn't exist in a database", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @GetMapping("/{chatId}")
-    public ResponseEntity<Chat> getChat(@PathVariable Long chatId) {
-        return new ResponseEntity<>(chatService.getMyChat(chatId), HttpStatus.OK);
+    public ResponseEntity<ChatMessagesDto> getChat(@PathVariable Long chatId, WebRequest request) {
+        if (ConditionalRequests.notModified(request, chatService.getMyChatTag(chatId))) return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        return new ResponseEntity<>(chatService.getMyChatMessages(chatId), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Get chat history", description = "Returns up to limit messages of a chat in sequence order: those after the sequence number in after, those before the one in before, or the latest ones. Allowed only for chat members")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval of messages", content = @Content(schema = @Schema(implementation = ChatMessagesDto.class))),
+            @ApiResponse(responseCode = "400", description = "Both after and before given, or limit out of range", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "403", description = "Access denied - allowed only for chat members", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Chat with a selected ID doesn't exist in a database", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/{chatId}/history")
+    public ResponseEntity<ChatMessagesDto> getChatHistory(@PathVariable Long chatId, @RequestParam(required = false) Long after,
+                                                          @RequestParam(required = false) Long before, @RequestParam(defaultValue = "50") int limit) {
+        return new ResponseEntity<>(chatService.getMyChatHistory(chatId, after, before, limit), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Get unread counts", description = "Returns for every chat of a currently logged in user its last sequence number and the number of messages after the last one read")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval of unread counts", content = @Content(array = @ArraySchema(schema = @Schema(implementation = UnreadDto.class)))),
+            @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/unread")
+    public ResponseEntity<List<UnreadDto>> getUnread() {
+        return new ResponseEntity<>(chatService.getMyUnread(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Mark chat read", description = "Marks the messages of a chat up to a sequence number as read. Allowed only for chat members")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Read position saved; it never moves back"),
+            @ApiResponse(responseCode = "400", description = "Sequence number beyond the last message of the chat", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "403", description = "Access denied - allowed only for chat members", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Chat with a selected ID doesn't exist in a database", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PutMapping("/{chatId}/read/{seq}")
+    public ResponseEntity<HttpStatus> markRead(@PathVariable Long chatId, @PathVariable long seq) {
+        chatService.markMyChatRead(chatId, seq);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @Operation(summary = "Stream chat messages", description = "Streams all messages of a chat, oldest first, as newline-delimited JSON. Allowed only for chat members")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages are streamed one JSON object per line", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = MessageDto.class))),
+            @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "403", description = "Access denied - allowed only for chat members", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Chat with a selected ID doesn't exist in a database", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping(value = "/{chatId}/messages", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMessages(@PathVariable Long chatId) {
+        chatService.getMyChat(chatId);
+        StreamingResponseBody body = out -> chatService.writeMessages(chatId, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @Operation(summary = "Delete chat", description = "Delete chat with a selected ID. Allowed only for chat members")
@@ -0,0 +1,27 @@
+package com.makowski.messenger.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    // The same resource is served as JSON, CBOR or Protobuf depending on Accept, and every representation
+    // needs its own strong ETag, so the version is combined with the Accept header. Vary: Accept tells caches
+    // to keep the representations apart as well.
+    static boolean notModified(WebRequest request, String eTag) {
+        HttpServletResponse response = ((ServletWebRequest) request).getResponse();
+        if (response != null && !response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String representationTag = accept == null ? eTag
+                : eTag.substring(0, eTag.length() - 1) + "-" + Integer.toHexString(accept.hashCode()) + "\"";
+        return request.checkNotModified(representationTag);
+    }
+}
@@ -1,10 +1,14 @@
 package com.makowski.messenger.controller;
 
+import java.util.Optional;
+
 import com.makowski.messenger.exception.ErrorResponse;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.makowski.messenger.dto.MessageDto;
 import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.ingestion.MessageIngestion;
 import com.makowski.messenger.service.MessageService;
 
 import jakarta.validation.Valid;
@@ -32,42 +36,48 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 public class MessageController {
     
     private MessageService messageService;
+    private Optional<MessageIngestion> messageIngestion;
 
-    @Operation(summary = "Save message", description = "Add a new message to database")
+    @Operation(summary = "Save message", description = "Add a new message to database. With messenger.ingestion.mode=write-behind the message is saved shortly after the answer, which carries its id but no seq yet.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "201", description = "Successful creation of a new message", content = @Content(schema = @Schema(implementation = Message.class))),
+            @ApiResponse(responseCode = "201", description = "Successful creation of a new message", content = @Content(schema = @Schema(implementation = MessageDto.class))),
+            @ApiResponse(responseCode = "202", description = "Message accepted and about to be saved (write-behind mode)", content = @Content(schema = @Schema(implementation = MessageDto.class))),
             @ApiResponse(responseCode = "400", description = "Invalid Request - Message is too long or empty or have no receivers (others than sender)", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
-            @ApiResponse(responseCode = "404", description = "One of receivers does not exist in a database ", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            @ApiResponse(responseCode = "404", description = "One of receivers does not exist in a database ", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Too many messages waiting to be saved (write-behind mode), retry after the Retry-After seconds", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PostMapping
-    public ResponseEntity<Message> saveMessage(@Valid @RequestBody Message message) {
-        return new ResponseEntity<>(messageService.saveMessage(message), HttpStatus.CREATED);
+    public ResponseEntity<MessageDto> saveMessage(@Valid @RequestBody Message message) {
+        if (messageIngestion.isPresent()) {
+            return new ResponseEntity<>(MessageDto.from(messageIngestion.get().accept(message)), HttpStatus.ACCEPTED);
+        }
+        return new ResponseEntity<>(MessageDto.from(messageService.saveMessage(message)), HttpStatus.CREATED);
     }
 
     @Operation(summary = "Update message", description = "Change content of a message with a selected ID")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Message successfully updated", content = @Content(schema = @Schema(implementation = Message.class))),
+            @ApiResponse(responseCode = "200", description = "Message successfully updated", content = @Content(schema = @Schema(implementation = MessageDto.class))),
             @ApiResponse(responseCode = "400", description = "Invalid Request - message is too long or empty", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "403", description = "Message can be updated only by its author", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Message doesn't exist in a database", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Message> updateMessage(@RequestBody String content, @PathVariable Long id) {
-        return new ResponseEntity<>(messageService.updateMessage(content, id), HttpStatus.OK);                                
+    public ResponseEntity<MessageDto> updateMessage(@RequestBody String content, @PathVariable Long id) {
+        return new ResponseEntity<>(MessageDto.from(messageService.updateMessage(content, id)), HttpStatus.OK);
     }
 
     @Operation(summary = "Change flag", description = "Change flag of a message with a selected ID to the opposite. Allowed only for an owner of a message. Messages with a flag will NOT be automatically removed after 7 days.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Flag successfully changed", content = @Content(schema = @Schema(implementation = Message.class))),
+            @ApiResponse(responseCode = "200", description = "Flag successfully changed", content = @Content(schema = @Schema(implementation = MessageDto.class))),
             @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "403", description = "The message flag can only be changed by its author", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Message doesn't exist in a database", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PutMapping("/flag/{id}")
-    public ResponseEntity<Message> changeFlag(@PathVariable Long id) {
-        return new ResponseEntity<>(messageService.changeFlag(id), HttpStatus.OK);
+    public ResponseEntity<MessageDto> changeFlag(@PathVariable Long id) {
+        return new ResponseEntity<>(MessageDto.from(messageService.changeFlag(id)), HttpStatus.OK);
     }
 
     @Operation(summary = "Delete message", description = "Delete message with a selected ID from database. Allowed only for an owner of a message.")
@@ -0,0 +1,41 @@
+package com.makowski.messenger.controller;
+
+import com.makowski.messenger.exception.ErrorResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.makowski.messenger.dto.SyncDto;
+import com.makowski.messenger.service.SyncService;
+
+import lombok.AllArgsConstructor;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.media.*;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@AllArgsConstructor
+@Tag(name = "Sync Controller", description = "Changes of the logged in user's chats")
+@RequestMapping("/sync")
+public class SyncController {
+
+    private SyncService syncService;
+
+    @Operation(summary = "Get changes", description = "Returns the messages changed and the messages and chats deleted since a token, at most one page at a time, with the token to ask with next. Without a token returns only a token to start from")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval of changes", content = @Content(schema = @Schema(implementation = SyncDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid token", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping
+    public ResponseEntity<SyncDto> getChanges(@Parameter(description = "Token from the previous response") @RequestParam(required = false) String since) {
+        return new ResponseEntity<>(syncService.sync(since), HttpStatus.OK);
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.makowski.messenger.dto.PasswordDto;
 import com.makowski.messenger.dto.UserDto;
@@ -72,15 +73,15 @@ public class UserController {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-    @Operation(summary = "Delete user", description = "Delete a currently logged in user from database")
+    @Operation(summary = "Delete user", description = "Delete a currently logged in user. The account is disabled immediately, its chats and messages are removed in the background")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "204", description = "User successfully deleted from a database"),
+            @ApiResponse(responseCode = "202", description = "User marked as deleted, removal of its data has been scheduled"),
             @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
     })
     @DeleteMapping
     public ResponseEntity<HttpStatus> deleteUser() {
         userService.deleteUser();
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
     }
 
     @Operation(summary = "Get user", description = "Returns username, first name and surname from a user with a selected ID")
@@ -130,14 +131,16 @@ public class UserController {
         return new ResponseEntity<>(userService.deleteFromContactList(contactId), HttpStatus.OK);
     }
 
-    @Operation(summary = "Get my contact list", description = "Returns a contact list from a currently logged in user")
+    @Operation(summary = "Get my contact list", description = "Returns a contact list from a currently logged in user. Supports conditional requests with If-None-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful retrieval of a contact list", content = @Content(array = @ArraySchema(schema = @Schema(implementation = UserDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the version in If-None-Match"),
             @ApiResponse(responseCode = "401", description = "JWT Token not valid", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "There is no contact on a list", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @GetMapping("/contacts")
-    public ResponseEntity<Set<UserDto>> getMyContactList() {
+    public ResponseEntity<Set<UserDto>> getMyContactList(WebRequest request) {
+        if (ConditionalRequests.notModified(request, userService.getMyContactsTag())) return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         return new ResponseEntity<>(userService.getMyContactList(), HttpStatus.OK);
     }
 }
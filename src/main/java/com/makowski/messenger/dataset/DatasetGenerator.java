@@ -0,0 +1,356 @@
+package com.makowski.messenger.dataset;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.metamodel.mapping.BasicValuedMapping;
+import org.hibernate.metamodel.mapping.JdbcMapping;
+import org.springframework.stereotype.Component;
+
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.service.RecentMessagesCache;
+import com.makowski.messenger.service.ResourceVersions;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills the database with a synthetic, reproducible dataset using batched JDBC inserts.
+ * <p>
+ * Ids are assigned here, starting after the highest existing id, and the identity columns are moved past them at the
+ * end. Set columns (contact lists and receivers) are bound with Hibernate's own binders, so they are stored exactly
+ * like the entities store them on every supported database.
+ */
+@Slf4j
+@Component
+@AllArgsConstructor
+public class DatasetGenerator {
+
+    // bcrypt hash of "password", fixed so that generated rows don't depend on a random salt
+    static final String PASSWORD_HASH = "$2a$10$Uw0oLcbH.cyAMxbC4bMb9uPKcLivM5Y.n7lJsvrT28N9TcistHo8S";
+
+    // chance that a chat gets one more member than it already has, so most chats are private and few are large
+    private static final double EXTRA_MEMBER_PROBABILITY = 0.3;
+    private static final int MAX_CONTENT_WORDS = 20;
+    private static final String[] WORDS = {
+            "hello", "hi", "how", "are", "you", "fine", "thanks", "see", "tomorrow", "meeting", "lunch", "today",
+            "ok", "sure", "why", "not", "call", "me", "later", "project", "deadline", "weekend", "coffee", "yes", "no"
+    };
+
+    private DataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private ResourceVersions resourceVersions;
+    private RecentMessagesCache recentMessagesCache;
+
+    public DatasetSummary generate(DatasetSettings settings) {
+        long start = System.currentTimeMillis();
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                Generation generation = new Generation(settings, connection, (SharedSessionContractImplementor) session,
+                        setColumn(sessionFactory, User.class, "contactList"), setColumn(sessionFactory, Message.class, "receiverId"));
+                DatasetSummary summary = generation.run(start);
+                log.info("Generated {} users, {} contacts, {} chats, {} memberships and {} messages in {} ms (checksum {})",
+                        summary.users(), summary.contacts(), summary.chats(), summary.memberships(), summary.messages(),
+                        summary.millis(), summary.checksum());
+                return summary;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not generate the dataset", e);
+        } finally {
+            entityManagerFactory.getCache().evictAll();
+            resourceVersions.invalidateAll();
+            recentMessagesCache.invalidateAll();
+        }
+    }
+
+    private JdbcMapping setColumn(SessionFactoryImplementor sessionFactory, Class<?> entity, String attribute) {
+        return ((BasicValuedMapping) sessionFactory.getMappingMetamodel().getEntityDescriptor(entity)
+                .findAttributeMapping(attribute)).getJdbcMapping();
+    }
+
+    private static class Generation {
+
+        private final DatasetSettings settings;
+        private final Connection connection;
+        private final SharedSessionContractImplementor options;
+        private final JdbcMapping contactListColumn;
+        private final JdbcMapping receiversColumn;
+        private final Random random;
+        private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        private long checksum = 17;
+        private long firstUserId;
+        private long firstChatId;
+        private long firstMessageId;
+        private int[][] chatMembers;
+        private long[] lastSeq;
+
+        Generation(DatasetSettings settings, Connection connection, SharedSessionContractImplementor options,
+                   JdbcMapping contactListColumn, JdbcMapping receiversColumn) {
+            this.settings = settings;
+            this.connection = connection;
+            this.options = options;
+            this.contactListColumn = contactListColumn;
+            this.receiversColumn = receiversColumn;
+            this.random = new Random(settings.seed());
+        }
+
+        DatasetSummary run(long start) throws SQLException {
+            firstUserId = nextId("users", "id");
+            firstChatId = nextId("chat", "id");
+            firstMessageId = Math.max(nextId("message", "message_id"), nextBlockId("message"));
+            long contacts = insertUsers();
+            long memberships = insertChats();
+            long messages = insertMessages();
+            insertSequences();
+            restartIdentity("users", "id", firstUserId + settings.users());
+            restartIdentity("chat", "id", firstChatId + settings.chats());
+            moveIdBlock("message", firstMessageId + messages);
+            return new DatasetSummary(settings.users(), contacts, settings.chats(), memberships, messages, checksum,
+                    System.currentTimeMillis() - start);
+        }
+
+        private long insertUsers() throws SQLException {
+            long contacts = 0;
+            try (Batch batch = new Batch("insert into users (id, username, password, first_name, surname, contact_list, deleted) "
+                    + "values (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < settings.users(); i++) {
+                    Set<Long> contactList = new HashSet<>();
+                    int size = Math.min(random.nextInt(2 * settings.contactsPerUser() + 1), settings.users() - 1);
+                    while (contactList.size() < size) {
+                        int contact = random.nextInt(settings.users());
+                        if (contact != i && contactList.add(firstUserId + contact)) mix(contact);
+                    }
+                    contacts += size;
+                    PreparedStatement statement = batch.statement();
+                    statement.setLong(1, firstUserId + i);
+                    statement.setString(2, settings.usernamePrefix() + i);
+                    statement.setString(3, PASSWORD_HASH);
+                    statement.setString(4, "firstName" + i);
+                    statement.setString(5, "surname" + i);
+                    bind(contactListColumn, statement, contactList, 6);
+                    statement.setBoolean(7, false);
+                    batch.add();
+                }
+            }
+            return contacts;
+        }
+
+        private long insertChats() throws SQLException {
+            long memberships = 0;
+            chatMembers = new int[settings.chats()][];
+            Set<List<Integer>> memberSets = new HashSet<>();
+            try (Batch chats = new Batch("insert into chat (id) values (?)")) {
+                for (int c = 0; c < settings.chats(); c++) {
+                    chatMembers[c] = randomMembers(memberSets);
+                    chats.statement().setLong(1, firstChatId + c);
+                    chats.add();
+                }
+            }
+            try (Batch members = new Batch("insert into chat_members (chat_id, user_id) values (?, ?)")) {
+                for (int c = 0; c < settings.chats(); c++) {
+                    for (int member : chatMembers[c]) {
+                        members.statement().setLong(1, firstChatId + c);
+                        members.statement().setLong(2, firstUserId + member);
+                        members.add();
+                        mix(member);
+                    }
+                    memberships += chatMembers[c].length;
+                }
+            }
+            return memberships;
+        }
+
+        // chats are looked up by their exact member set, so two chats never get the same members if it can be avoided
+        private int[] randomMembers(Set<List<Integer>> memberSets) {
+            int maxMembers = Math.min(settings.maxChatMembers(), settings.users());
+            Set<Integer> members = new LinkedHashSet<>();
+            for (int attempt = 0; attempt < 10; attempt++) {
+                int size = 2;
+                while (size < maxMembers && random.nextDouble() < EXTRA_MEMBER_PROBABILITY) size++;
+                members.clear();
+                while (members.size() < size) members.add(random.nextInt(settings.users()));
+                if (memberSets.add(members.stream().sorted().toList())) break;
+            }
+            return members.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private long insertMessages() throws SQLException {
+            lastSeq = new long[settings.chats()];
+            if (settings.chats() == 0) return 0;
+            long secondsSpread = settings.days() * 24L * 60 * 60;
+            try (Batch batch = new Batch("insert into message (message_id, sender_id, receivers, permanent, date_time, content, chat_id, seq) "
+                    + "values (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (long m = 0; m < settings.messages(); m++) {
+                    // cubing a uniform number skews the activity towards a few hot chats
+                    int chat = (int) (settings.chats() * Math.pow(random.nextDouble(), 3));
+                    int[] members = chatMembers[chat];
+                    int sender = members[random.nextInt(members.length)];
+                    Set<Long> receivers = new HashSet<>();
+                    for (int member : members) {
+                        if (member != sender) receivers.add(firstUserId + member);
+                    }
+                    boolean permanent = random.nextDouble() < settings.permanentRatio();
+                    long secondsAgo = random.nextLong(secondsSpread);
+                    String content = randomContent();
+                    mix(chat);
+                    mix(sender);
+                    mix(permanent ? 1 : 0);
+                    mix(secondsAgo);
+                    mix(content.hashCode());
+
+                    PreparedStatement statement = batch.statement();
+                    statement.setLong(1, firstMessageId + m);
+                    statement.setLong(2, firstUserId + sender);
+                    bind(receiversColumn, statement, receivers, 3);
+                    statement.setBoolean(4, permanent);
+                    statement.setObject(5, now.minusSeconds(secondsAgo));
+                    statement.setString(6, content);
+                    statement.setLong(7, firstChatId + chat);
+                    statement.setLong(8, ++lastSeq[chat]);
+                    batch.add();
+                }
+            }
+            return settings.messages();
+        }
+
+        // every member starts with the whole chat read
+        private void insertSequences() throws SQLException {
+            try (Batch sequences = new Batch("insert into chat_sequence (chat_id, last_seq) values (?, ?)")) {
+                for (int c = 0; c < settings.chats(); c++) {
+                    sequences.statement().setLong(1, firstChatId + c);
+                    sequences.statement().setLong(2, lastSeq[c]);
+                    sequences.add();
+                }
+            }
+            try (Batch reads = new Batch("insert into chat_read (chat_id, user_id, last_read_seq) values (?, ?, ?)")) {
+                for (int c = 0; c < settings.chats(); c++) {
+                    for (int member : chatMembers[c]) {
+                        reads.statement().setLong(1, firstChatId + c);
+                        reads.statement().setLong(2, firstUserId + member);
+                        reads.statement().setLong(3, lastSeq[c]);
+                        reads.add();
+                    }
+                }
+            }
+        }
+
+        private String randomContent() {
+            StringBuilder content = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            int words = random.nextInt(MAX_CONTENT_WORDS);
+            for (int i = 0; i < words; i++) {
+                content.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            return content.toString();
+        }
+
+        private long nextId(String table, String column) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("select max(" + column + ") from " + table)) {
+                rs.next();
+                return rs.getLong(1) + 1;
+            }
+        }
+
+        // message ids come from id_block, see MessageIdAllocator
+        private long nextBlockId(String name) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement("select next_id from id_block where name = ?")) {
+                statement.setString(1, name);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }
+        }
+
+        private void moveIdBlock(String name, long nextValue) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement("update id_block set next_id = ? where name = ? and next_id < ?")) {
+                statement.setLong(1, nextValue);
+                statement.setString(2, name);
+                statement.setLong(3, nextValue);
+                statement.executeUpdate();
+            }
+            connection.commit();
+        }
+
+        // MySQL moves auto_increment past explicitly inserted ids by itself, H2 and PostgreSQL need to be told
+        private void restartIdentity(String table, String column, long nextValue) throws SQLException {
+            String database = connection.getMetaData().getDatabaseProductName();
+            if (database.startsWith("MySQL")) return;
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("alter table " + table + " alter column " + column + " restart with " + nextValue);
+            }
+            connection.commit();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void bind(JdbcMapping column, PreparedStatement statement, Set<Long> value, int index) throws SQLException {
+            column.getJdbcValueBinder().bind(statement, value, index, options);
+        }
+
+        private void mix(long value) {
+            checksum = 31 * checksum + value;
+        }
+
+        private class Batch implements AutoCloseable {
+
+            private final PreparedStatement statement;
+            private int size;
+
+            Batch(String sql) throws SQLException {
+                statement = connection.prepareStatement(sql);
+            }
+
+            PreparedStatement statement() {
+                return statement;
+            }
+
+            void add() throws SQLException {
+                statement.addBatch();
+                if (++size == settings.batchSize()) flush();
+            }
+
+            void flush() throws SQLException {
+                if (size > 0) {
+                    statement.executeBatch();
+                    connection.commit();
+                    size = 0;
+                }
+            }
+
+            @Override
+            public void close() throws SQLException {
+                try {
+                    flush();
+                } finally {
+                    statement.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.makowski.messenger.dataset;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Command line entry point of the {@link DatasetGenerator}. Started with {@code --messenger.dataset.generate=true}
+ * the application fills its database and exits, e.g.
+ * <pre>
+ * java -jar messenger.jar --spring.profiles.active=dev-mysql --messenger.dataset.generate=true \
+ *      --messenger.dataset.users=100000 --messenger.dataset.messages=5000000
+ * </pre>
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "messenger.dataset.generate", havingValue = "true")
+public class DatasetGeneratorRunner implements ApplicationRunner {
+
+    private final DatasetGenerator datasetGenerator;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${messenger.dataset.seed:42}")
+    private long seed;
+    @Value("${messenger.dataset.username-prefix:gen}")
+    private String usernamePrefix;
+    @Value("${messenger.dataset.users:10000}")
+    private int users;
+    @Value("${messenger.dataset.contacts-per-user:20}")
+    private int contactsPerUser;
+    @Value("${messenger.dataset.chats:50000}")
+    private int chats;
+    @Value("${messenger.dataset.max-chat-members:50}")
+    private int maxChatMembers;
+    @Value("${messenger.dataset.messages:1000000}")
+    private long messages;
+    @Value("${messenger.dataset.days:30}")
+    private int days;
+    @Value("${messenger.dataset.permanent-ratio:0.1}")
+    private double permanentRatio;
+    @Value("${messenger.dataset.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        datasetGenerator.generate(new DatasetSettings(seed, usernamePrefix, users, contactsPerUser, chats, maxChatMembers,
+                messages, days, permanentRatio, batchSize));
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
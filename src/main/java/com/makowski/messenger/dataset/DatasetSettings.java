@@ -0,0 +1,34 @@
+package com.makowski.messenger.dataset;
+
+/**
+ * Size and shape of a generated dataset. The same settings with the same seed always produce the same rows.
+ *
+ * @param seed             seed of the random generator
+ * @param usernamePrefix   generated users are named prefix0, prefix1, ...
+ * @param users            number of users
+ * @param contactsPerUser  average size of a user's contact list
+ * @param chats            number of chats
+ * @param maxChatMembers   upper bound of members in one chat, most chats have two
+ * @param messages         number of messages
+ * @param days             messages are spread over this many days before now
+ * @param permanentRatio   fraction of messages flagged as permanent
+ * @param batchSize        rows sent in one JDBC batch and committed together
+ */
+public record DatasetSettings(long seed,
+                              String usernamePrefix,
+                              int users,
+                              int contactsPerUser,
+                              int chats,
+                              int maxChatMembers,
+                              long messages,
+                              int days,
+                              double permanentRatio,
+                              int batchSize) {
+
+    public DatasetSettings {
+        if (users < 2) throw new IllegalArgumentException("At least two users are needed to create chats");
+        if (maxChatMembers < 2) throw new IllegalArgumentException("A chat needs at least two members");
+        if (days < 1) throw new IllegalArgumentException("Messages need at least one day to be spread over");
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive");
+    }
+}
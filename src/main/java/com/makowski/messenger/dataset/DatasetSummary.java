@@ -0,0 +1,14 @@
+package com.makowski.messenger.dataset;
+
+/**
+ * Rows inserted by one run of the {@link DatasetGenerator}. The checksum covers the generated values relative to the
+ * first inserted ids, so two runs with the same settings have equal checksums even when they land on different ids.
+ */
+public record DatasetSummary(int users,
+                             long contacts,
+                             int chats,
+                             long memberships,
+                             long messages,
+                             long checksum,
+                             long millis) {
+}
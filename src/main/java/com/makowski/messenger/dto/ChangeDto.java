@@ -0,0 +1,21 @@
+package com.makowski.messenger.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.makowski.messenger.entity.ChangeLogEntry;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeDto {
+    private ChangeLogEntry.Type type;
+    private Long chatId;
+    private Long messageId;
+
+    // the current state of the message, only for MESSAGE
+    @Schema(implementation = MessageDto.class)
+    private MessageJson message;
+}
@@ -0,0 +1,17 @@
+package com.makowski.messenger.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ChatMessagesDto {
+    private Long id;
+
+    @ArraySchema(schema = @Schema(implementation = MessageDto.class))
+    private List<MessageJson> messages;
+}
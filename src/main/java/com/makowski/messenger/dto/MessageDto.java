@@ -0,0 +1,31 @@
+package com.makowski.messenger.dto;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.makowski.messenger.constants.Constants;
+import com.makowski.messenger.entity.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class MessageDto {
+    private Long id;
+    private Long seq;
+    private Long senderId;
+    private Set<Long> receiverId;
+    private boolean permanent;
+
+    @JsonFormat(pattern = Constants.FORMATTER)
+    private LocalDateTime dateTime;
+
+    private String content;
+
+    public static MessageDto from(Message message) {
+        return new MessageDto(message.getId(), message.getSeq(), message.getSenderId(), message.getReceiverId(), message.isPermanent(),
+                message.getDateTime(), message.getContent());
+    }
+}
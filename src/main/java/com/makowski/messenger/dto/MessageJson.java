@@ -0,0 +1,47 @@
+package com.makowski.messenger.dto;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+/**
+ * A {@link MessageDto} that is already serialized to JSON. JSON responses get the text as it is, binary formats
+ * (CBOR, Protobuf) re-encode its tokens without building the DTO again.
+ */
+public class MessageJson implements JsonSerializable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String json;
+
+    public MessageJson(String json) {
+        this.json = json;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        if (!generator.canWriteBinaryNatively()) {
+            generator.writeRawValue(json);
+            return;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+}
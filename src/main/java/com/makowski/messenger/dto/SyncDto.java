@@ -0,0 +1,18 @@
+package com.makowski.messenger.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SyncDto {
+    // the since parameter of the next request
+    private String token;
+    // more changes are waiting, ask again right away
+    private boolean more;
+    // the changes since the token were pruned, reload the chats and continue from the new token
+    private boolean resyncRequired;
+    private List<ChangeDto> changes;
+}
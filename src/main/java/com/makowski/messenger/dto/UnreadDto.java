@@ -0,0 +1,12 @@
+package com.makowski.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UnreadDto {
+    private Long chatId;
+    private long lastSeq;
+    private long unread;
+}
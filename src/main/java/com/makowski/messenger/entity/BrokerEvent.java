@@ -0,0 +1,44 @@
+package com.makowski.messenger.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Table(name = "broker_event")
+@NoArgsConstructor
+public class BrokerEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "origin", nullable = false, length = 64)
+    private String origin;
+
+    // JSON of the EventBatch
+    @Column(name = "payload", nullable = false, length = 4000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // the commit position of the transaction that wrote the batch, -1 until CommitSequence positions it
+    @Column(name = "commit_seq", nullable = false)
+    private Long commitSeq;
+
+    public BrokerEvent(String origin, String payload, long commitSeq) {
+        this.origin = origin;
+        this.payload = payload;
+        this.commitSeq = commitSeq;
+    }
+}
@@ -0,0 +1,50 @@
+package com.makowski.messenger.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Table(name = "change_log")
+@NoArgsConstructor
+public class ChangeLogEntry {
+
+    // MESSAGE_DELETED and CHAT_DELETED are tombstones: what they point to no longer exists, or was accepted and never
+    // saved. MEMBERS_CHANGED is logged when a chat is created and when a member leaves it.
+    public enum Type { MESSAGE, MESSAGE_DELETED, CHAT_DELETED, MEMBERS_CHANGED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 32)
+    private Type type;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // the commit position of the transaction that wrote the entry, -1 until CommitSequence positions it
+    @Column(name = "commit_seq", nullable = false)
+    private Long commitSeq;
+}
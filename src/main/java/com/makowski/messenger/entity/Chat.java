@@ -5,6 +5,10 @@ import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -21,6 +25,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @Table(name = "chat")
 @NoArgsConstructor
@@ -36,6 +42,7 @@ public class Chat {
 
     @JsonIgnore
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(
         name = "chat_members",
         joinColumns = @JoinColumn(name = "chat_id", referencedColumnName = "id"),
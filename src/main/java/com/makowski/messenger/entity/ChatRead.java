@@ -0,0 +1,39 @@
+package com.makowski.messenger.entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Table(name = "chat_read")
+@IdClass(ChatRead.Key.class)
+@NoArgsConstructor
+public class ChatRead {
+
+    @Id
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "last_read_seq", nullable = false)
+    private long lastReadSeq;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long chatId;
+        private Long userId;
+    }
+}
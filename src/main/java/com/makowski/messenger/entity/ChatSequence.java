@@ -0,0 +1,22 @@
+package com.makowski.messenger.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Table(name = "chat_sequence")
+@NoArgsConstructor
+public class ChatSequence {
+
+    @Id
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+}
@@ -0,0 +1,22 @@
+package com.makowski.messenger.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Table(name = "id_block")
+@NoArgsConstructor
+public class IdBlock {
+
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "next_id", nullable = false)
+    private long nextId;
+}
@@ -6,31 +6,40 @@ import java.util.Set;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import org.springframework.data.domain.Persistable;
+
 import com.makowski.messenger.constants.Constants;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.Setter;
 
 @Entity
 @Data
 @Table(name = "message")
 @NoArgsConstructor
-public class Message {
+public class Message implements Persistable<Long> {
 
+    // taken from MessageIdAllocator before the insert, so a message queued for a later insert already has its id
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "message_id")
     private Long id;
+
+    // position in the chat, 1, 2, 3... in commit order; dateTime changes on edit and comes from the clock
+    @Column(name = "seq")
+    private Long seq;
                                           
     @Column(name = "sender_id", nullable = false)
     private Long senderId;
@@ -55,4 +64,21 @@ public class Message {
     @ManyToOne
     @JoinColumn(name = "chat_id", referencedColumnName = "id")
     private Chat chat;
-}
\ No newline at end of file
+
+    // with an assigned id, whether the message was inserted already can't be told from the id
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient boolean stored;
+
+    @JsonIgnore
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+}
@@ -0,0 +1,56 @@
+package com.makowski.messenger.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Table(name = "outbox_event")
+@NoArgsConstructor
+public class OutboxEvent {
+
+    public enum Type { MESSAGE_CREATED, MESSAGE_UPDATED, MESSAGE_DELETED, CHAT_CREATED, CHAT_DELETED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 32)
+    private Type type;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "message_id")
+    private Long messageId;
+
+    // JSON: the message for MESSAGE_CREATED and MESSAGE_UPDATED, the member ids for CHAT_CREATED
+    @Column(name = "payload", length = 4000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // the commit position of the transaction that wrote the event, -1 until CommitSequence positions it
+    @Column(name = "commit_seq", nullable = false)
+    private Long commitSeq;
+
+    public OutboxEvent(Type type, Long chatId, Long messageId, String payload) {
+        this.type = type;
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.payload = payload;
+    }
+}
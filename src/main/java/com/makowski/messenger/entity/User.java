@@ -6,6 +6,10 @@ import java.util.Set;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -23,6 +27,8 @@ import lombok.RequiredArgsConstructor;
 
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NoArgsConstructor
 @RequiredArgsConstructor
 @Table(name = "users")
@@ -54,6 +60,10 @@ public class User {
     @Column(name = "surname", nullable = false)
     private String surname;
 
+    @JsonIgnore
+    @Column(name = "deleted", nullable = false)
+    private boolean deleted = false;
+
     @JsonIgnore
     @Column(name = "contact_list")
     private Set<Long> contactList;
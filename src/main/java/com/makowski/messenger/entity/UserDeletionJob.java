@@ -0,0 +1,53 @@
+package com.makowski.messenger.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Table(name = "user_deletion_job")
+@NoArgsConstructor
+public class UserDeletionJob {
+
+    // CONTACTS removes the user from the contact lists of the others, going through them in id order
+    public enum Phase { MESSAGES, MEMBERSHIPS, CONTACTS, ACCOUNT }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false, unique = true)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "phase", nullable = false, length = 32)
+    private Phase phase = Phase.MESSAGES;
+
+    @Column(name = "processed", nullable = false)
+    private long processed;
+
+    // the last user whose contact list the CONTACTS phase went through
+    @Column(name = "last_user_id", nullable = false)
+    private long lastUserId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public UserDeletionJob(Long userId) {
+        this.userId = userId;
+    }
+}
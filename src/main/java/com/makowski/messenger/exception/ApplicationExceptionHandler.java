@@ -36,6 +36,14 @@ public class ApplicationExceptionHandler extends ResponseEntityExceptionHandler
         return new ResponseEntity<>(error, HttpStatus.FORBIDDEN);
     }
 
+    @ExceptionHandler(IngestionOverloadedException.class)
+    public ResponseEntity<Object> handleIngestionOverloadedException(RuntimeException ex) {
+        ErrorResponse error = new ErrorResponse(Arrays.asList(ex.getMessage()));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>(error, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(EmptyResultDataAccessException.class)
     public ResponseEntity<Object> handleDataAccessException(EmptyResultDataAccessException ex) {
         ErrorResponse error = new ErrorResponse(Arrays.asList("Cannot delete non-existing resource"));  
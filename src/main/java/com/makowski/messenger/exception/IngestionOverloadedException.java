@@ -0,0 +1,7 @@
+package com.makowski.messenger.exception;
+
+public class IngestionOverloadedException extends RuntimeException {
+    public IngestionOverloadedException() {
+        super("Too many messages are waiting to be saved, try again later");
+    }
+}
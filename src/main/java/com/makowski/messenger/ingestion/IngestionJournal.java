@@ -0,0 +1,236 @@
+package com.makowski.messenger.ingestion;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.entity.Chat;
+import com.makowski.messenger.entity.Message;
+
+/**
+ * Append-only log of the accepted messages that are not in the database yet, one JSON object per line in segment
+ * files journal-&lt;n&gt;.log. An append returns once its line is forced to disk. Appends arriving while another one
+ * forces the file wait for the next force, so one fsync covers all the messages that came in meanwhile.
+ * A segment is deleted once a newer one is written and all its messages are committed to the database.
+ * Lines cut short by a crash are skipped when the journal is read back.
+ * <p>
+ * Messages the database refuses are moved to the dead-letter segment dead-letter.log with the reason, for an
+ * operator to look at. It is never read back.
+ */
+public class IngestionJournal implements Closeable {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+    private static final String DEAD_LETTER_FILE = "dead-letter.log";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final long segmentBytes;
+    private final List<Entry> recovered = new ArrayList<>();
+    private final Map<Long, Integer> pending = new HashMap<>();
+    private final Object forceLock = new Object();
+    private final AtomicLong syncs = new AtomicLong();
+    private final Object deadLetterLock = new Object();
+
+    private FileChannel channel;
+    private long segment;
+    private long position;
+    // guarded by forceLock
+    private long forcedSegment;
+    private long forcedPosition;
+
+    public IngestionJournal(Path directory, ObjectMapper objectMapper, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = segments();
+        for (Map.Entry<Long, Path> existing : segments.entrySet()) {
+            int count = read(existing.getKey(), existing.getValue());
+            if (count == 0) Files.delete(existing.getValue());
+            else pending.put(existing.getKey(), count);
+        }
+        segment = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        channel = open(segment);
+        pending.put(segment, 0);
+    }
+
+    // the messages left by an earlier run, each to be committed like a new one
+    public List<Entry> recovered() {
+        return List.copyOf(recovered);
+    }
+
+    public Entry append(Record record) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        long appendedTo;
+        long end;
+        synchronized (this) {
+            if (position > 0 && position + line.length > segmentBytes) rotate();
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) position += channel.write(buffer);
+            pending.merge(segment, 1, Integer::sum);
+            appendedTo = segment;
+            end = position;
+        }
+        awaitForced(appendedTo, end);
+        return new Entry(appendedTo, record);
+    }
+
+    public synchronized void committed(Entry entry) throws IOException {
+        int left = pending.merge(entry.segment(), -1, Integer::sum);
+        if (left == 0 && entry.segment() != segment) {
+            pending.remove(entry.segment());
+            Files.deleteIfExists(path(entry.segment()));
+        }
+    }
+
+    // Forced like an append before the entry is committed, so a crash in between leaves the message in both places
+    // rather than in neither.
+    public void deadLetter(Entry entry, String reason) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(new DeadLetter(entry.record(), reason, LocalDateTime.now())) + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+        synchronized (deadLetterLock) {
+            try (FileChannel deadLetters = FileChannel.open(directory.resolve(DEAD_LETTER_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) deadLetters.write(buffer);
+                deadLetters.force(false);
+            }
+        }
+        committed(entry);
+    }
+
+    public long syncs() {
+        return syncs.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        if (pending.getOrDefault(segment, 0) == 0) Files.deleteIfExists(path(segment));
+    }
+
+    private void awaitForced(long appendedTo, long end) throws IOException {
+        synchronized (forceLock) {
+            if (appendedTo < forcedSegment || appendedTo == forcedSegment && end <= forcedPosition) return;
+            FileChannel target;
+            long targetSegment;
+            long targetPosition;
+            synchronized (this) {
+                // a rotation forces the segment it leaves
+                if (appendedTo < segment) return;
+                target = channel;
+                targetSegment = segment;
+                targetPosition = position;
+            }
+            try {
+                target.force(false);
+            } catch (ClosedChannelException e) {
+                // rotated meanwhile, which forced it
+            }
+            syncs.incrementAndGet();
+            forcedSegment = targetSegment;
+            forcedPosition = targetPosition;
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        if (pending.getOrDefault(segment, 0) == 0) {
+            pending.remove(segment);
+            Files.deleteIfExists(path(segment));
+        }
+        segment++;
+        position = 0;
+        channel = open(segment);
+        pending.put(segment, 0);
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(path(number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private Path path(long number) {
+        return directory.resolve("journal-" + number + ".log");
+    }
+
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) segments.put(Long.parseLong(matcher.group(1)), file);
+            });
+        }
+        return segments;
+    }
+
+    private int read(long number, Path file) throws IOException {
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    recovered.add(new Entry(number, objectMapper.readValue(line, Record.class)));
+                    count++;
+                } catch (IOException e) {
+                    // the line was being written when the process stopped, so it was never acknowledged
+                }
+            }
+        }
+        return count;
+    }
+
+    public record Entry(long segment, Record record) {
+    }
+
+    public record DeadLetter(Record record, String reason, LocalDateTime deadLetteredAt) {
+    }
+
+    /**
+     * An accepted message, with the id and the chat it got on acceptance.
+     */
+    public record Record(long id, long chatId, long senderId, Set<Long> receiverId, boolean permanent,
+                         LocalDateTime dateTime, String content) {
+
+        public static Record of(Message message) {
+            return new Record(message.getId(), message.getChat().getId(), message.getSenderId(), message.getReceiverId(),
+                    message.isPermanent(), message.getDateTime(), message.getContent());
+        }
+
+        // a new entity for every attempt, as a failed insert leaves the previous one marked as stored
+        public Message toMessage() {
+            Chat chat = new Chat();
+            chat.setId(chatId);
+            Message message = new Message();
+            message.setId(id);
+            message.setChat(chat);
+            message.setSenderId(senderId);
+            message.setReceiverId(receiverId);
+            message.setPermanent(permanent);
+            message.setDateTime(dateTime);
+            message.setContent(content);
+            return message;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.makowski.messenger.ingestion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.exception.EntityNotFoundException;
+import com.makowski.messenger.exception.IngestionOverloadedException;
+import com.makowski.messenger.ingestion.IngestionJournal.Entry;
+import com.makowski.messenger.ingestion.IngestionJournal.Record;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.service.MessageService;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Saves new messages in the background for messenger.ingestion.mode=write-behind. A message is checked and gets its
+ * id and chat right away, is written to the {@link IngestionJournal} and answered; a single flusher thread inserts
+ * the queued messages in one transaction per batch. A batch is written once it has batch-size messages or its oldest
+ * message waited flush-interval-ms.
+ * <p>
+ * At most queue-capacity messages wait for their insert. When the database falls behind and the queue is full, a new
+ * message waits up to accept-timeout-ms for room and is then refused with 503, so the backlog stays bounded.
+ * Messages of a failed batch are retried. A message refused on its own, e.g. because its chat was deleted or its
+ * sender left it in the meantime, is moved to the journal's dead-letter segment, and its sender finds a tombstone in
+ * the change log. Messages still in the journal on startup are inserted before requests are served, with at most
+ * recovery-attempts tries per batch, after which they are dead-lettered as well.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "messenger.ingestion.mode", havingValue = "write-behind")
+public class MessageIngestion {
+
+    private static final String METRIC_PREFIX = "messenger.ingestion.";
+    private static final Duration MIN_RETRY_DELAY = Duration.ofMillis(50);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(5);
+    private static final int UNTIL_STOPPED = Integer.MAX_VALUE;
+
+    private final MessageService messageService;
+    private final MessageRepository messageRepository;
+    private final IngestionJournal journal;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long acceptTimeoutMillis;
+    private final int recoveryAttempts;
+
+    private final BlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+    private final Semaphore room;
+    private final Thread flusher = new Thread(this::flushUntilStopped, "message-ingestion");
+    private final Timer flushTimer;
+    private final Timer delayTimer;
+    private final DistributionSummary batchSizes;
+    private volatile boolean running = true;
+
+    public MessageIngestion(MessageService messageService, MessageRepository messageRepository, ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${messenger.ingestion.journal-dir:journal}") Path journalDir,
+                            @Value("${messenger.ingestion.journal-segment-bytes:16777216}") long segmentBytes,
+                            @Value("${messenger.ingestion.queue-capacity:10000}") int queueCapacity,
+                            @Value("${messenger.ingestion.batch-size:500}") int batchSize,
+                            @Value("${messenger.ingestion.flush-interval-ms:10}") long flushIntervalMillis,
+                            @Value("${messenger.ingestion.accept-timeout-ms:1000}") long acceptTimeoutMillis,
+                            @Value("${messenger.ingestion.recovery-attempts:10}") int recoveryAttempts) throws IOException {
+        if (batchSize < 1 || batchSize > queueCapacity) {
+            throw new IllegalArgumentException("messenger.ingestion.batch-size must be between 1 and messenger.ingestion.queue-capacity");
+        }
+        this.messageService = messageService;
+        this.messageRepository = messageRepository;
+        this.journal = new IngestionJournal(journalDir, objectMapper, segmentBytes);
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.acceptTimeoutMillis = acceptTimeoutMillis;
+        this.recoveryAttempts = recoveryAttempts;
+        this.room = new Semaphore(queueCapacity);
+        this.flushTimer = meterRegistry.timer(METRIC_PREFIX + "flush");
+        this.delayTimer = meterRegistry.timer(METRIC_PREFIX + "delay");
+        this.batchSizes = meterRegistry.summary(METRIC_PREFIX + "batch_size");
+        meterRegistry.gauge(METRIC_PREFIX + "queue", queue, BlockingQueue::size);
+        FunctionCounter.builder(METRIC_PREFIX + "journal.syncs", journal, IngestionJournal::syncs).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        recover();
+        flusher.start();
+    }
+
+    // The message with its id and chat, but no seq until it is inserted.
+    public Message accept(Message message) {
+        if (!running) throw new IngestionOverloadedException();
+        try {
+            if (!room.tryAcquire(acceptTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                meterRegistry.counter(METRIC_PREFIX + "rejected").increment();
+                throw new IngestionOverloadedException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestionOverloadedException();
+        }
+        try {
+            Message accepted = messageService.acceptMessage(message);
+            Entry entry = journal.append(Record.of(accepted));
+            queue.add(new Queued(entry, System.nanoTime()));
+            meterRegistry.counter(METRIC_PREFIX + "accepted").increment();
+            return accepted;
+        } catch (IOException e) {
+            room.release();
+            throw new UncheckedIOException("Could not write to the ingestion journal", e);
+        } catch (RuntimeException e) {
+            room.release();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void stop() throws IOException, InterruptedException {
+        // no interrupt, which would close the file channels of an H2 file database under the insert
+        running = false;
+        flusher.join();
+        journal.close();
+    }
+
+    private void recover() {
+        List<Entry> recovered = journal.recovered();
+        if (recovered.isEmpty()) return;
+        log.info("Inserting {} messages left in the ingestion journal", recovered.size());
+        for (int from = 0; from < recovered.size(); from += batchSize) {
+            List<Entry> entries = recovered.subList(from, Math.min(from + batchSize, recovered.size()));
+            Set<Long> inserted = new HashSet<>(messageRepository.findIdsByIdIn(entries.stream().map(entry -> entry.record().id()).toList()));
+            List<Queued> batch = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (inserted.contains(entry.record().id())) committed(entry);
+                else batch.add(new Queued(entry, System.nanoTime()));
+            }
+            if (batch.isEmpty()) continue;
+            // the flusher isn't running yet, nor is anything else holding room
+            room.acquireUninterruptibly(batch.size());
+            write(batch, recoveryAttempts);
+        }
+    }
+
+    private void flushUntilStopped() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Queued first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = first.acceptedAt() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Queued next = wait > 0 && running ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!batch.isEmpty()) write(batch, UNTIL_STOPPED);
+            batch.clear();
+        }
+    }
+
+    // Retries until the batch is written, the node stops or the attempts run out. Messages left when the node stops
+    // are inserted from the journal on the next start, the ones left after the last attempt are dead-lettered.
+    private void write(List<Queued> batch, int attempts) {
+        Duration retryDelay = MIN_RETRY_DELAY;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Message> refused = flushTimer.record(() -> messageService.insertAccepted(batch.stream().map(queued -> queued.entry().record().toMessage()).toList()));
+                Set<Long> refusedIds = refused.stream().map(Message::getId).collect(Collectors.toSet());
+                batchSizes.record(batch.size() - refused.size());
+                for (Queued queued : batch) {
+                    if (refusedIds.contains(queued.entry().record().id())) deadLetter(queued, "chat deleted or sender no longer a member");
+                    else done(queued);
+                }
+                return;
+            } catch (DataIntegrityViolationException | EntityNotFoundException e) {
+                if (batch.size() > 1) {
+                    // one refused message must not take the others with it
+                    batch.forEach(queued -> write(List.of(queued), attempts));
+                    return;
+                }
+                deadLetter(batch.get(0), e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                meterRegistry.counter(METRIC_PREFIX + "failures").increment();
+                if (!running) {
+                    log.warn("Leaving {} messages in the ingestion journal: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                if (attempt >= attempts) {
+                    log.warn("Giving up on {} messages after {} attempts: {}", batch.size(), attempt, e.getMessage());
+                    batch.forEach(queued -> deadLetter(queued, e.getMessage()));
+                    return;
+                }
+                log.warn("Could not insert {} messages, retrying in {} ms: {}", batch.size(), retryDelay.toMillis(), e.getMessage());
+                try {
+                    Thread.sleep(retryDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryDelay = retryDelay.multipliedBy(2).compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : retryDelay.multipliedBy(2);
+            }
+        }
+    }
+
+    // The sender was answered with the message's id, so a tombstone tells it the message won't come. Without the
+    // database the tombstone is lost, the dead letter isn't.
+    private void deadLetter(Queued queued, String reason) {
+        Record record = queued.entry().record();
+        log.warn("Dead-lettering message {}: {}", record.id(), reason);
+        meterRegistry.counter(METRIC_PREFIX + "dead_lettered").increment();
+        room.release();
+        try {
+            journal.deadLetter(queued.entry(), reason);
+        } catch (IOException e) {
+            // still in the journal, so it is tried again on the next start
+            log.warn("Could not dead-letter message {}: {}", record.id(), e.getMessage());
+            return;
+        }
+        try {
+            messageService.reportRefused(record.toMessage());
+        } catch (RuntimeException e) {
+            log.warn("Could not report refused message {}: {}", record.id(), e.getMessage());
+        }
+    }
+
+    private void done(Queued queued) {
+        delayTimer.record(System.nanoTime() - queued.acceptedAt(), TimeUnit.NANOSECONDS);
+        committed(queued.entry());
+        room.release();
+    }
+
+    private void committed(Entry entry) {
+        try {
+            journal.committed(entry);
+        } catch (IOException e) {
+            // the segment is read again on the next start and its inserted messages skipped
+            log.warn("Could not remove a journal segment: {}", e.getMessage());
+        }
+    }
+
+    private record Queued(Entry entry, long acceptedAt) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.makowski.messenger.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of one step of the JWT authentication: checking credentials, signing or verifying a token.
+ */
+@Name("messenger.Auth")
+@Label("Authentication")
+@Category({"Messenger", "Security"})
+@Description("Credential check, token signing or token verification in the security filters")
+public class AuthEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Username")
+    String username;
+
+    @Label("Success")
+    boolean success;
+
+    public static AuthEvent start(String phase) {
+        AuthEvent event = new AuthEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    public void finish(String username, boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.username = username;
+            this.success = success;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.makowski.messenger.monitoring;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import com.makowski.messenger.dto.ChatDto;
+import com.makowski.messenger.dto.UserDto;
+import com.makowski.messenger.entity.Chat;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.User;
+
+/**
+ * Emits JFR events for service and repository calls. Nothing is computed unless a recording with the events
+ * enabled is running, e.g. {@code jcmd <pid> JFR.start settings=profile}.
+ */
+@Aspect
+@Component
+public class FlightRecorderAspect {
+
+    private static final Set<String> CHAT_ID_PARAMETERS = Set.of("chatId");
+    private static final Set<String> USER_ID_PARAMETERS = Set.of("userId", "contactId", "senderId", "memberId");
+
+    @Around("execution(public * com.makowski.messenger.service.MessageService.*(..))"
+            + " || execution(public * com.makowski.messenger.service.ChatService.*(..))"
+            + " || execution(public * com.makowski.messenger.service.UserService.*(..))")
+    public Object recordServiceCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        ServiceCallEvent event = new ServiceCallEvent();
+        if (!event.isEnabled()) return joinPoint.proceed();
+        event.begin();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = joinPoint.proceed();
+            failed = false;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+                event.username = username();
+                event.userId = userId(joinPoint, result);
+                event.chatId = chatId(joinPoint, result);
+                event.rows = rows(joinPoint, result);
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object recordRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        RepositoryCallEvent event = new RepositoryCallEvent();
+        if (!event.isEnabled()) return joinPoint.proceed();
+        event.begin();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = joinPoint.proceed();
+            failed = false;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = AopProxyUtils.proxiedUserInterfaces(joinPoint.getThis())[0].getSimpleName() + "." + joinPoint.getSignature().getName();
+                event.userId = userId(joinPoint, result);
+                event.chatId = chatId(joinPoint, result);
+                event.rows = rows(joinPoint, result);
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    private String username() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+
+    private long chatId(ProceedingJoinPoint joinPoint, Object result) {
+        long fromParameter = idParameter(joinPoint, CHAT_ID_PARAMETERS);
+        if (fromParameter != 0) return fromParameter;
+        for (Object value : values(joinPoint, result)) {
+            if (value instanceof Chat chat && chat.getId() != null) return chat.getId();
+            if (value instanceof ChatDto chat && chat.getChatId() != null) return chat.getChatId();
+            if (value instanceof Message message && message.getChat() != null && message.getChat().getId() != null) {
+                return message.getChat().getId();
+            }
+        }
+        return 0;
+    }
+
+    private long userId(ProceedingJoinPoint joinPoint, Object result) {
+        long fromParameter = idParameter(joinPoint, USER_ID_PARAMETERS);
+        if (fromParameter != 0) return fromParameter;
+        for (Object value : values(joinPoint, result)) {
+            if (value instanceof User user && user.getId() != null) return user.getId();
+            if (value instanceof UserDto user && user.getUserId() != null) return user.getUserId();
+            if (value instanceof Message message && message.getSenderId() != null) return message.getSenderId();
+        }
+        return 0;
+    }
+
+    private long idParameter(ProceedingJoinPoint joinPoint, Set<String> names) {
+        String[] parameterNames = ((MethodSignature) joinPoint.getSignature()).getParameterNames();
+        Object[] args = joinPoint.getArgs();
+        for (int i = 0; parameterNames != null && i < parameterNames.length; i++) {
+            if (names.contains(parameterNames[i]) && args[i] instanceof Number id) return id.longValue();
+        }
+        return 0;
+    }
+
+    // the arguments first, then the result, unwrapped from an Optional
+    private Object[] values(ProceedingJoinPoint joinPoint, Object result) {
+        Object[] args = joinPoint.getArgs();
+        Object[] values = new Object[args.length + 1];
+        System.arraycopy(args, 0, values, 0, args.length);
+        values[args.length] = result instanceof Optional<?> optional ? optional.orElse(null) : result;
+        return values;
+    }
+
+    private long rows(ProceedingJoinPoint joinPoint, Object result) {
+        if (result instanceof Collection<?> collection) return collection.size();
+        if (result instanceof Slice<?> slice) return slice.getNumberOfElements();
+        if (result instanceof Optional<?> optional) return optional.isPresent() ? 1 : 0;
+        if (result instanceof Number number) return number.longValue();
+        if (result instanceof Boolean) return 0;
+        if (result != null) return 1;
+        // methods like deleteAll(entities) return nothing but act on their argument
+        for (Object arg : joinPoint.getArgs()) {
+            if (arg instanceof Collection<?> collection) return collection.size();
+        }
+        return 0;
+    }
+}
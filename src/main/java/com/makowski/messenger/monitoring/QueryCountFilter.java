@@ -0,0 +1,67 @@
+package com.makowski.messenger.monitoring;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final QueryCounter queryCounter;
+    private final MeterRegistry meterRegistry;
+    private final int queryBudget;
+    private final int repeatedStatementThreshold;
+
+    public QueryCountFilter(QueryCounter queryCounter, MeterRegistry meterRegistry,
+                            @Value("${messenger.queries.budget:20}") int queryBudget,
+                            @Value("${messenger.queries.repeated-statement-threshold:5}") int repeatedStatementThreshold) {
+        this.queryCounter = queryCounter;
+        this.meterRegistry = meterRegistry;
+        this.queryBudget = queryBudget;
+        this.repeatedStatementThreshold = repeatedStatementThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        queryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryCounter.Result result = queryCounter.stop();
+            String endpoint = request.getMethod() + " " + getPattern(request);
+            DistributionSummary.builder("messenger.http.queries")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(result.count());
+            if (result.count() > queryBudget) {
+                log.warn("{} executed {} SQL statements, budget is {}", endpoint, result.count(), queryBudget);
+            }
+            result.statements().forEach((sql, executions) -> {
+                if (executions >= repeatedStatementThreshold) {
+                    log.warn("Possible N+1 in {}: statement executed {} times: {}", endpoint, executions, sql);
+                }
+            });
+        }
+    }
+
+    private String getPattern(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNMAPPED";
+    }
+}
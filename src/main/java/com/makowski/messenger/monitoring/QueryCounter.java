@@ -0,0 +1,45 @@
+package com.makowski.messenger.monitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts SQL statements prepared by Hibernate on the current thread between {@link #start()} and {@link #stop()}.
+ */
+@Component
+public class QueryCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<Map<String, Integer>> STATEMENTS = new ThreadLocal<>();
+
+    public void start() {
+        STATEMENTS.set(new HashMap<>());
+    }
+
+    public Result stop() {
+        Map<String, Integer> statements = STATEMENTS.get();
+        STATEMENTS.remove();
+        if (statements == null) return new Result(0, Map.of());
+        int count = statements.values().stream().mapToInt(Integer::intValue).sum();
+        return new Result(count, statements);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Map<String, Integer> statements = STATEMENTS.get();
+        if (statements != null) statements.merge(sql, 1, Integer::sum);
+        return sql;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    public record Result(int count, Map<String, Integer> statements) {
+    }
+}
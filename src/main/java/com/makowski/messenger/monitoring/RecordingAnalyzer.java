@@ -0,0 +1,96 @@
+package com.makowski.messenger.monitoring;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Summarizes the messenger events of a JFR recording into a latency table per event type and phase:
+ * <pre>
+ * java -cp target/classes com.makowski.messenger.monitoring.RecordingAnalyzer recording.jfr
+ * </pre>
+ */
+public final class RecordingAnalyzer {
+
+    private static final String EVENT_PREFIX = "messenger.";
+
+    private RecordingAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: RecordingAnalyzer <recording.jfr>");
+            System.exit(2);
+        }
+        print(summarize(Path.of(args[0])), System.out);
+    }
+
+    public static Map<String, Phase> summarize(Path recording) throws IOException {
+        Map<String, Phase> phases = new TreeMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+            String type = event.getEventType().getName();
+            if (!type.startsWith(EVENT_PREFIX)) continue;
+            String phase = event.hasField("phase") ? event.getString("phase") : "";
+            long rows = event.hasField("rows") ? event.getLong("rows") : 0;
+            phases.computeIfAbsent(type.substring(EVENT_PREFIX.length()) + " " + phase, key -> new Phase())
+                    .add(event.getDuration(), rows);
+        }
+        return phases;
+    }
+
+    public static void print(Map<String, Phase> phases, PrintStream out) {
+        out.printf("%-60s %8s %10s %9s %9s %9s %9s %10s%n",
+                "phase", "count", "total ms", "p50 ms", "p90 ms", "p99 ms", "max ms", "rows");
+        phases.forEach((name, phase) -> out.printf("%-60s %8d %10.1f %9.2f %9.2f %9.2f %9.2f %10d%n",
+                name, phase.count(), millis(phase.total()), millis(phase.percentile(50)), millis(phase.percentile(90)),
+                millis(phase.percentile(99)), millis(phase.percentile(100)), phase.rows()));
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+
+    public static class Phase {
+
+        private final List<Duration> durations = new ArrayList<>();
+        private long rows;
+        private boolean sorted;
+
+        void add(Duration duration, long rows) {
+            durations.add(duration);
+            this.rows += rows;
+            sorted = false;
+        }
+
+        public int count() {
+            return durations.size();
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public Duration total() {
+            return durations.stream().reduce(Duration.ZERO, Duration::plus);
+        }
+
+        // nearest-rank percentile
+        public Duration percentile(double percentile) {
+            if (!sorted) {
+                Collections.sort(durations);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * durations.size());
+            return durations.get(Math.max(rank, 1) - 1);
+        }
+    }
+}
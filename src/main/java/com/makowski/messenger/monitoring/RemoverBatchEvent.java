@@ -0,0 +1,49 @@
+package com.makowski.messenger.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of one batch deleted by a background remover.
+ */
+@Name("messenger.RemoverBatch")
+@Label("Remover Batch")
+@Category({"Messenger", "Remover"})
+@Description("One page of rows deleted by a scheduled remover")
+public class RemoverBatchEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Chat Id")
+    long chatId;
+
+    @Label("Rows")
+    long rows;
+
+    // for a batch that spans several chats
+    public static RemoverBatchEvent start(String phase) {
+        RemoverBatchEvent event = new RemoverBatchEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    public static RemoverBatchEvent start(String phase, Long chatId) {
+        RemoverBatchEvent event = new RemoverBatchEvent();
+        event.phase = phase;
+        event.chatId = chatId;
+        event.begin();
+        return event;
+    }
+
+    public void finish(long rows) {
+        end();
+        if (shouldCommit()) {
+            this.rows = rows;
+            commit();
+        }
+    }
+}
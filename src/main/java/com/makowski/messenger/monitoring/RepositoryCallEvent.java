@@ -0,0 +1,31 @@
+package com.makowski.messenger.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a Spring Data repository call. Ids are 0 when the call is not about a single user or chat.
+ */
+@Name("messenger.RepositoryCall")
+@Label("Repository Call")
+@Category({"Messenger", "Database"})
+@Description("Method call on a Spring Data repository, including the SQL it runs")
+public class RepositoryCallEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("User Id")
+    long userId;
+
+    @Label("Chat Id")
+    long chatId;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+}
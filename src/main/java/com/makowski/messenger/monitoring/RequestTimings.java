@@ -0,0 +1,89 @@
+package com.makowski.messenger.monitoring;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Always-on timers of the phases of the request handled by the current thread, between {@link #start()} and
+ * {@link #stop()}. Nested phases are exclusive: SQL executed during a user lookup counts only as SQL, so the phases
+ * and the unattributed rest add up to the time of the whole request. Outside of a request the timers do nothing.
+ */
+public final class RequestTimings {
+
+    public enum Phase {
+        JWT, USER_LOOKUP, MEMBERSHIP, SQL, JSON
+    }
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private final long[] nanos = new long[Phase.values().length];
+    private final int[] counts = new int[Phase.values().length];
+    // time spent in nested phases, per level of the phases currently running
+    private long[] nestedNanos = new long[8];
+    private int depth;
+    private long totalNanos;
+
+    private RequestTimings() {
+    }
+
+    public static void start() {
+        CURRENT.set(new RequestTimings());
+    }
+
+    public static RequestTimings stop() {
+        RequestTimings timings = CURRENT.get();
+        CURRENT.remove();
+        if (timings == null) return null;
+        timings.totalNanos = System.nanoTime() - timings.start;
+        return timings;
+    }
+
+    public static long begin() {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) timings.push();
+        return System.nanoTime();
+    }
+
+    public static void end(Phase phase, long begin) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) timings.pop(phase, System.nanoTime() - begin);
+    }
+
+    public static <T> T time(Phase phase, Supplier<T> action) {
+        long begin = begin();
+        try {
+            return action.get();
+        } finally {
+            end(phase, begin);
+        }
+    }
+
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public int count(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    public long otherNanos() {
+        return totalNanos - Arrays.stream(nanos).sum();
+    }
+
+    private void push() {
+        if (depth == nestedNanos.length) nestedNanos = Arrays.copyOf(nestedNanos, depth * 2);
+        nestedNanos[depth++] = 0;
+    }
+
+    private void pop(Phase phase, long elapsed) {
+        if (depth == 0) return;
+        nanos[phase.ordinal()] += elapsed - nestedNanos[--depth];
+        counts[phase.ordinal()]++;
+        if (depth > 0) nestedNanos[depth - 1] += elapsed;
+    }
+}
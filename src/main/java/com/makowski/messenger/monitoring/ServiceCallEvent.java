@@ -0,0 +1,34 @@
+package com.makowski.messenger.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a public method call on a service. Ids are 0 when the call is not about a single user or chat.
+ */
+@Name("messenger.ServiceCall")
+@Label("Service Call")
+@Category({"Messenger", "Service"})
+@Description("Public method of MessageService, ChatService or UserService")
+public class ServiceCallEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Username")
+    String username;
+
+    @Label("User Id")
+    long userId;
+
+    @Label("Chat Id")
+    long chatId;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+}
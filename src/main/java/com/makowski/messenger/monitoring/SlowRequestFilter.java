@@ -0,0 +1,77 @@
+package com.makowski.messenger.monitoring;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Times every request with {@link RequestTimings} and logs one line with the split across phases when a request takes
+ * longer than {@code messenger.slow-request.threshold-ms}.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SlowRequestFilter extends OncePerRequestFilter implements HibernatePropertiesCustomizer {
+
+    private final long thresholdNanos;
+
+    public SlowRequestFilter(@Value("${messenger.slow-request.threshold-ms:500}") long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestTimings.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestTimings timings = RequestTimings.stop();
+            if (timings.totalNanos() >= thresholdNanos) {
+                log.warn(format(request, response, timings));
+            }
+        }
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTimingListener.class.getName());
+    }
+
+    private String format(HttpServletRequest request, HttpServletResponse response, RequestTimings timings) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        StringBuilder line = new StringBuilder("slow_request")
+                .append(" method=").append(request.getMethod())
+                .append(" endpoint=").append(pattern != null ? pattern : "UNMAPPED")
+                .append(" uri=").append(request.getRequestURI())
+                .append(" status=").append(response.getStatus())
+                .append(" total_ms=").append(millis(timings.totalNanos()));
+        for (Phase phase : Phase.values()) {
+            line.append(' ').append(phase.name().toLowerCase(Locale.ROOT)).append("_ms=").append(millis(timings.nanos(phase)));
+        }
+        return line.append(" sql_statements=").append(timings.count(Phase.SQL))
+                .append(" other_ms=").append(millis(timings.otherNanos()))
+                .toString();
+    }
+
+    private String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+}
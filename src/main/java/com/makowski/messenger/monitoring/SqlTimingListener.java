@@ -0,0 +1,34 @@
+package com.makowski.messenger.monitoring;
+
+import org.hibernate.SessionEventListener;
+
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
+
+/**
+ * Adds the execution time of JDBC statements and batches to the {@link RequestTimings} of the current request.
+ * Hibernate creates one instance per session.
+ */
+public class SqlTimingListener implements SessionEventListener {
+
+    private long begin;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        begin = RequestTimings.begin();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestTimings.end(Phase.SQL, begin);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        begin = RequestTimings.begin();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestTimings.end(Phase.SQL, begin);
+    }
+}
@@ -0,0 +1,62 @@
+package com.makowski.messenger.monitoring;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Logs the startup steps that took the most time on their own, without their nested steps, when the application was
+ * started by {@code MessengerApplication.main} with a buffering startup recorder. The whole timeline is available
+ * from the {@code /actuator/startup} endpoint.
+ */
+@Slf4j
+@Component
+@AllArgsConstructor
+public class StartupReport {
+
+    private static final int SLOWEST_STEPS = 10;
+
+    private ApplicationStartup applicationStartup;
+
+    @EventListener
+    public void report(ApplicationReadyEvent event) {
+        if (!(applicationStartup instanceof BufferingApplicationStartup buffering)) return;
+        List<TimelineEvent> events = buffering.getBufferedTimeline().getEvents();
+        Map<Long, Duration> nested = new HashMap<>();
+        for (TimelineEvent timelineEvent : events) {
+            Long parentId = timelineEvent.getStartupStep().getParentId();
+            if (parentId != null) nested.merge(parentId, timelineEvent.getDuration(), Duration::plus);
+        }
+        String slowest = events.stream()
+                .sorted(Comparator.comparing((TimelineEvent timelineEvent) -> selfTime(timelineEvent, nested)).reversed())
+                .limit(SLOWEST_STEPS)
+                .map(timelineEvent -> String.format("%n%8d ms  %s %s", selfTime(timelineEvent, nested).toMillis(),
+                        timelineEvent.getStartupStep().getName(), tags(timelineEvent)))
+                .collect(Collectors.joining());
+        log.info("Started in {} ms, slowest steps:{}", event.getTimeTaken().toMillis(), slowest);
+    }
+
+    private Duration selfTime(TimelineEvent event, Map<Long, Duration> nested) {
+        return event.getDuration().minus(nested.getOrDefault(event.getStartupStep().getId(), Duration.ZERO));
+    }
+
+    private String tags(TimelineEvent event) {
+        return StreamSupport.stream(event.getStartupStep().getTags().spliterator(), false)
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(" "));
+    }
+}
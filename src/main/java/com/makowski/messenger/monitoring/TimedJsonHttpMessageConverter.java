@@ -0,0 +1,45 @@
+package com.makowski.messenger.monitoring;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
+
+/**
+ * The JSON converter of the REST controllers, replacing Spring Boot's default one, which adds the time spent reading
+ * request bodies and writing responses to the {@link RequestTimings} of the current request.
+ */
+@Component
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        long begin = RequestTimings.begin();
+        try {
+            return super.read(type, contextClass, inputMessage);
+        } finally {
+            RequestTimings.end(Phase.JSON, begin);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        long begin = RequestTimings.begin();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            RequestTimings.end(Phase.JSON, begin);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.makowski.messenger.outbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.entity.OutboxEvent;
+
+/**
+ * Appends the published events to a local file, one JSON object per line, and syncs the file after every batch.
+ * Events among the last ones in the file are skipped, also after a restart.
+ */
+@Component
+@ConditionalOnProperty(name = "messenger.outbox.file.path")
+public class FileOutboxSink implements OutboxSink {
+
+    // a line holds at most a 4000 character payload, so this covers more than a batch
+    private static final int TAIL_BYTES = 4 * 1024 * 1024;
+
+    private final Path path;
+    private final JsonFactory jsonFactory;
+    private final RecentEventIds written = new RecentEventIds();
+
+    public FileOutboxSink(@Value("${messenger.outbox.file.path}") Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.jsonFactory = objectMapper.getFactory();
+        readWrittenIds(path, objectMapper);
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        Set<Long> ids = new LinkedHashSet<>();
+        for (OutboxEvent event : events) {
+            if (written.contains(event.getId()) || !ids.add(event.getId())) continue;
+            try (JsonGenerator generator = jsonFactory.createGenerator(lines)) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", event.getId());
+                generator.writeStringField("type", event.getType().name());
+                generator.writeNumberField("chatId", event.getChatId());
+                if (event.getMessageId() != null) generator.writeNumberField("messageId", event.getMessageId());
+                generator.writeStringField("createdAt", event.getCreatedAt().toString());
+                if (event.getPayload() != null) {
+                    generator.writeFieldName("payload");
+                    generator.writeRawValue(event.getPayload());
+                }
+                generator.writeEndObject();
+            }
+            lines.write('\n');
+        }
+        if (lines.size() == 0) return;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.position(channel.size());
+            if (!endsWithNewline(channel)) channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        }
+        ids.forEach(written::add);
+    }
+
+    // after a crash in the middle of a line the next one starts on a line of its own
+    private static boolean endsWithNewline(FileChannel channel) throws IOException {
+        if (channel.size() == 0) return true;
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, channel.size() - 1);
+        return last.get(0) == '\n';
+    }
+
+    private void readWrittenIds(Path path, ObjectMapper objectMapper) {
+        if (!Files.exists(path)) return;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            long start = Math.max(0, file.length() - TAIL_BYTES);
+            byte[] tail = new byte[(int) (file.length() - start)];
+            file.seek(start);
+            file.readFully(tail);
+            String[] lines = new String(tail, StandardCharsets.UTF_8).split("\n");
+            // the first line of the tail may start in the middle
+            for (int i = start > 0 ? 1 : 0; i < lines.length; i++) {
+                try {
+                    JsonNode id = objectMapper.readTree(lines[i]).path("id");
+                    if (id.isNumber()) written.add(id.asLong());
+                } catch (IOException e) {
+                    // a line cut by a crash doesn't parse
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path, e);
+        }
+    }
+}
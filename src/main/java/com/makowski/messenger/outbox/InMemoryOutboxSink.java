@@ -0,0 +1,46 @@
+package com.makowski.messenger.outbox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.makowski.messenger.entity.OutboxEvent;
+
+/**
+ * Keeps the latest published events in memory, for tests and local runs.
+ */
+@Component
+@ConditionalOnProperty(name = "messenger.outbox.memory.enabled", havingValue = "true", matchIfMissing = true)
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final int capacity;
+    private final Deque<OutboxEvent> events = new ArrayDeque<>();
+    private final RecentEventIds published = new RecentEventIds();
+
+    public InMemoryOutboxSink(@Value("${messenger.outbox.memory.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            // offered again after another sink failed
+            if (!published.add(event.getId())) continue;
+            if (this.events.size() == capacity) this.events.removeFirst();
+            this.events.addLast(event);
+        }
+    }
+
+    public synchronized List<OutboxEvent> getEvents() {
+        return List.copyOf(events);
+    }
+}
@@ -0,0 +1,78 @@
+package com.makowski.messenger.outbox;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.entity.Chat;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.OutboxEvent;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.repository.OutboxEventRepository;
+import com.makowski.messenger.service.CommitSequence;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Writes message and chat events to the outbox table. Called inside the transaction of the change, an event
+ * is stored exactly when the change is, whatever happens to the request afterwards; {@link OutboxRelay}
+ * publishes it from there, in the order the transactions commit, once {@link CommitSequence} has positioned it.
+ * Deletions are recorded before the rows go away, since their chats are found through them.
+ */
+@Component
+@AllArgsConstructor
+public class Outbox {
+
+    private OutboxEventRepository outboxEventRepository;
+    private ObjectMapper objectMapper;
+
+    @Transactional
+    public void messageCreated(Message message) {
+        append(OutboxEvent.Type.MESSAGE_CREATED, message);
+    }
+
+    @Transactional
+    public void messageUpdated(Message message) {
+        append(OutboxEvent.Type.MESSAGE_UPDATED, message);
+    }
+
+    @Transactional
+    public void messagesDeleted(List<Long> messageIds) {
+        if (messageIds.isEmpty()) return;
+        outboxEventRepository.appendForMessages(messageIds, OutboxEvent.Type.MESSAGE_DELETED, LocalDateTime.now(), CommitSequence.UNPOSITIONED);
+    }
+
+    @Transactional
+    public void chatCreated(Chat chat) {
+        List<Long> memberIds = chat.getMembers().stream().map(User::getId).sorted().toList();
+        save(new OutboxEvent(OutboxEvent.Type.CHAT_CREATED, chat.getId(), null, toJson(Map.of("members", memberIds))));
+    }
+
+    @Transactional
+    public void chatDeleted(Long chatId) {
+        save(new OutboxEvent(OutboxEvent.Type.CHAT_DELETED, chatId, null, null));
+    }
+
+    private void append(OutboxEvent.Type type, Message message) {
+        save(new OutboxEvent(type, message.getChat().getId(), message.getId(), toJson(MessageDto.from(message))));
+    }
+
+    private void save(OutboxEvent event) {
+        event.setCommitSeq(CommitSequence.UNPOSITIONED);
+        outboxEventRepository.save(event);
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox payload could not be serialized", e);
+        }
+    }
+}
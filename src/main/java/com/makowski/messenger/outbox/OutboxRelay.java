@@ -0,0 +1,79 @@
+package com.makowski.messenger.outbox;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.makowski.messenger.entity.OutboxEvent;
+import com.makowski.messenger.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes the outbox to every {@link OutboxSink} in batches, in the order their transactions committed, and deletes
+ * a batch once all sinks took it. An event committed late still comes after the ones already published. A failing sink stops the run and the batch is tried again on the next one.
+ * Only one instance should relay; turn it off on the others with {@code messenger.outbox.relay.enabled=false}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "messenger.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    static final int BATCH_SIZE = 500;
+    private static final int MAX_BATCHES_PER_RUN = 20;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OutboxSink> sinks;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, List<OutboxSink> sinks, MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sinks = sinks;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("messenger.outbox.lag", lagMillis, AtomicLong::get)
+            .description("Age of the oldest event not yet published")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${messenger.outbox.relay.interval-ms:1000}")
+    public void relay() {
+        int batches = 0;
+        List<OutboxEvent> batch;
+        do {
+            batch = outboxEventRepository.findBatch(PageRequest.of(0, BATCH_SIZE));
+            if (batch.isEmpty() || !publish(batch)) break;
+            outboxEventRepository.deleteByIdIn(batch.stream().map(OutboxEvent::getId).toList());
+            meterRegistry.counter("messenger.outbox.published").increment(batch.size());
+        } while (batch.size() == BATCH_SIZE && ++batches < MAX_BATCHES_PER_RUN);
+        lagMillis.set(outboxEventRepository.findFirstByOrderByCommitSeqAscIdAsc()
+            .map(oldest -> Duration.between(oldest.getCreatedAt(), LocalDateTime.now()).toMillis())
+            .orElse(0L));
+    }
+
+    private boolean publish(List<OutboxEvent> batch) {
+        for (OutboxSink sink : sinks) {
+            try {
+                meterRegistry.timer("messenger.outbox.publish", "sink", sink.name()).recordCallable(() -> {
+                    sink.publish(batch);
+                    return null;
+                });
+            } catch (Exception e) {
+                meterRegistry.counter("messenger.outbox.failures", "sink", sink.name()).increment();
+                log.warn("Outbox sink {} failed on events {}..{}, retrying on the next run", sink.name(),
+                    batch.get(0).getId(), batch.get(batch.size() - 1).getId(), e);
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package com.makowski.messenger.outbox;
+
+import java.util.List;
+
+import com.makowski.messenger.entity.OutboxEvent;
+
+/**
+ * A destination of the outbox events. Every bean implementing it gets each batch from {@link OutboxRelay},
+ * in commit order, which is not the id order. Delivery is at least once: when a sink fails, the batch stays in the
+ * outbox and is offered again to every sink, so sinks should ignore event ids they already have, e.g. through
+ * {@link RecentEventIds}.
+ */
+public interface OutboxSink {
+
+    String name();
+
+    void publish(List<OutboxEvent> events) throws Exception;
+}
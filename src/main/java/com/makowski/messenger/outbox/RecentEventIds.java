@@ -0,0 +1,32 @@
+package com.makowski.messenger.outbox;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The ids of the last events a sink took, so that it can skip a batch offered again. Only the batch a sink failed on
+ * comes again, so a window of a few batches is enough; the ids are kept as such because events come in commit order,
+ * not in id order. Not thread-safe: sinks publish one batch at a time.
+ */
+public class RecentEventIds {
+
+    static final int CAPACITY = 10 * OutboxRelay.BATCH_SIZE;
+
+    private final Set<Long> ids = new LinkedHashSet<>();
+
+    public boolean contains(long id) {
+        return ids.contains(id);
+    }
+
+    // false when the id is in the window already
+    public boolean add(long id) {
+        if (!ids.add(id)) return false;
+        if (ids.size() > CAPACITY) {
+            Iterator<Long> oldest = ids.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        return true;
+    }
+}
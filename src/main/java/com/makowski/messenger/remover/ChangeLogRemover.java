@@ -0,0 +1,41 @@
+package com.makowski.messenger.remover;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.makowski.messenger.repository.ChangeLogRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+
+@Component
+@AllArgsConstructor
+public class ChangeLogRemover {
+
+    private static final int CHUNK_SIZE = 1000;
+    private ChangeLogRepository changeLogRepository;
+    private MeterRegistry meterRegistry;
+
+    // Clients offline for longer than the retention get resyncRequired instead of the changes. Entries go by
+    // position, all of them up to the last one that expired, so the oldest remaining position tells which tokens
+    // were pruned; the newest position is always kept for that.
+    @Scheduled(cron = "0 30 0 * * *")
+    public void deleteOldEntries() {
+        Long newest = changeLogRepository.findMaxCommitSeq();
+        Long expired = changeLogRepository.findMaxCommitSeqCreatedBefore(LocalDateTime.now().minusDays(30));
+        if (newest == null || expired == null) return;
+        long below = Math.min(expired + 1, newest);
+        meterRegistry.timer("messenger.remover.change_log").record(() -> {
+            List<Long> ids;
+            do {
+                ids = changeLogRepository.findIdsByCommitSeqBelow(below, PageRequest.of(0, CHUNK_SIZE));
+                if (!ids.isEmpty()) changeLogRepository.deleteByIdIn(ids);
+                meterRegistry.counter("messenger.remover.change_log.deleted").increment(ids.size());
+            } while (ids.size() == CHUNK_SIZE);
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package com.makowski.messenger.remover;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.makowski.messenger.entity.UserDeletionJob;
+import com.makowski.messenger.service.UserDeletionService;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Component
+@AllArgsConstructor
+public class DeletedUsersRemover {
+
+    static final int CHUNKS_PER_RUN = 20;
+
+    private UserDeletionService userDeletionService;
+
+    // A run processes at most CHUNKS_PER_RUN chunks, so a big account doesn't hold the scheduler thread;
+    // the next run continues the job where this one stopped.
+    @Scheduled(fixedDelay = 10000)
+    public void deleteUsersData() {
+        int chunks = 0;
+        for (UserDeletionJob job : userDeletionService.getPendingJobs()) {
+            log.info("Deleting data of user {} from phase {} ({} rows processed)", job.getUserId(), job.getPhase(), job.getProcessed());
+            // every call deletes one bounded chunk in its own transaction and tells whether the job is finished
+            boolean finished = false;
+            while (!finished && chunks < CHUNKS_PER_RUN) {
+                finished = userDeletionService.processNextChunk(job.getId());
+                chunks++;
+            }
+            if (!finished) return;
+            log.info("User {} deleted", job.getUserId());
+        }
+    }
+}
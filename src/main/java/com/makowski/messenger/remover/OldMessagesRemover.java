@@ -1,34 +1,73 @@
 package com.makowski.messenger.remover;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.broker.EventFanout;
+import com.makowski.messenger.monitoring.RemoverBatchEvent;
+import com.makowski.messenger.outbox.Outbox;
 import com.makowski.messenger.repository.MessageRepository;
-import com.makowski.messenger.service.MessageService;
+import com.makowski.messenger.service.ChangeLog;
+import com.makowski.messenger.service.ChatService;
+import com.makowski.messenger.service.RecentMessagesCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
 
 @Component
+@AllArgsConstructor
 public class OldMessagesRemover {
 
     private static final int PAGE_SIZE = 100;
     private MessageRepository messageRepository;
-    private MessageService messageService;
+    private ChatService chatService;
+    private ChangeLog changeLog;
+    private Outbox outbox;
+    private RecentMessagesCache recentMessagesCache;
+    private EventFanout eventFanout;
+    private MeterRegistry meterRegistry;
+    private TransactionTemplate transactionTemplate;
 
     @Scheduled(cron = "0 0 0 * * *")
     public void deleteOldMessages() {
         LocalDateTime expireDate = LocalDateTime.now().minusDays(7);
-        Pageable pageable = PageRequest.of(0, PAGE_SIZE);
-        Page<Message> page;
+        meterRegistry.timer("messenger.remover.old_messages").record(() -> deleteOldMessages(expireDate));
+    }
+
+    // Expired messages are removed a page at a time across all chats: one query for the ids, one for their chats
+    // and one delete statement per page. The next page is the first one again, as the previous one is gone.
+    // A page is one transaction, so its tombstones and outbox events commit with the delete or not at all.
+    // The emptiness check of a chat runs once, after all of its expired messages are gone.
+    public void deleteOldMessages(LocalDateTime expireDate) {
+        Pageable firstPage = PageRequest.of(0, PAGE_SIZE);
+        Set<Long> chatIds = new TreeSet<>();
+        List<Long> messageIds;
 
         do {
-            page = messageRepository.findByPermanentFalseAndDateTimeBefore(expireDate, pageable);
-            page.getContent().forEach(message -> messageService.deleteMessage(message.getId()));
-            pageable = page.nextPageable();
-        } while (page.hasNext());
+            RemoverBatchEvent event = RemoverBatchEvent.start("old messages");
+            messageIds = transactionTemplate.execute(status -> {
+                List<Long> pageIds = messageRepository.findExpiredIds(expireDate, firstPage);
+                if (pageIds.isEmpty()) return pageIds;
+                List<Long> pageChatIds = messageRepository.findChatIdsByIdIn(pageIds);
+                outbox.messagesDeleted(pageIds);
+                changeLog.messagesDeleted(pageIds);
+                messageRepository.deleteByIdIn(pageIds);
+                recentMessagesCache.evictChats(pageChatIds);
+                eventFanout.chatsChanged(pageChatIds);
+                chatIds.addAll(pageChatIds);
+                return pageIds;
+            });
+            event.finish(messageIds.size());
+            meterRegistry.counter("messenger.remover.old_messages.deleted").increment(messageIds.size());
+        } while (messageIds.size() == PAGE_SIZE);
+        chatIds.forEach(chatService::deleteChatIfEmpty);
     }
-}
\ No newline at end of file
+}
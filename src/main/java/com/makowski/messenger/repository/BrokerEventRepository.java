@@ -0,0 +1,41 @@
+package com.makowski.messenger.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.makowski.messenger.entity.BrokerEvent;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BrokerEventRepository extends CrudRepository<BrokerEvent, Long>, CommitOrderedRepository {
+
+    // the batches after (commitSeq, id), in that order
+    @Query("select e from BrokerEvent e where e.commitSeq >= :commitSeq "
+            + "and (e.commitSeq > :commitSeq or e.id > :id) order by e.commitSeq, e.id")
+    List<BrokerEvent> findAfter(@Param("commitSeq") long commitSeq, @Param("id") long id, Pageable pageable);
+
+    @Query("select max(e.commitSeq) from BrokerEvent e")
+    Long findMaxCommitSeq();
+
+    @Override
+    @Query("select e.id from BrokerEvent e where e.commitSeq = :commitSeq order by e.id")
+    List<Long> findIdsByCommitSeq(@Param("commitSeq") long commitSeq, Pageable pageable);
+
+    @Override
+    @Transactional
+    @Modifying
+    @Query("update BrokerEvent e set e.commitSeq = :commitSeq where e.id in :ids")
+    int position(@Param("ids") List<Long> ids, @Param("commitSeq") long commitSeq);
+
+    @Transactional
+    @Modifying
+    @Query("delete from BrokerEvent e where e.createdAt < :expireDate")
+    int deleteCreatedBefore(@Param("expireDate") LocalDateTime expireDate);
+}
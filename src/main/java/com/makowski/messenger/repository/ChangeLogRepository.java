@@ -0,0 +1,77 @@
+package com.makowski.messenger.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.makowski.messenger.entity.ChangeLogEntry;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChangeLogRepository extends CrudRepository<ChangeLogEntry, Long>, CommitOrderedRepository {
+
+    // the entries after (commitSeq, id), in that order
+    @Query("select e from ChangeLogEntry e where e.userId = :userId and e.commitSeq >= :commitSeq "
+            + "and (e.commitSeq > :commitSeq or e.id > :id) order by e.commitSeq, e.id")
+    List<ChangeLogEntry> findChanges(@Param("userId") Long userId, @Param("commitSeq") long commitSeq,
+                                     @Param("id") long id, Pageable pageable);
+
+    // the positions taken only, entries not positioned yet are at -1
+    @Query("select min(e.commitSeq) from ChangeLogEntry e where e.commitSeq > 0")
+    Long findMinCommitSeq();
+
+    @Query("select max(e.commitSeq) from ChangeLogEntry e")
+    Long findMaxCommitSeq();
+
+    @Query("select max(e.commitSeq) from ChangeLogEntry e where e.createdAt < :expireDate")
+    Long findMaxCommitSeqCreatedBefore(@Param("expireDate") LocalDateTime expireDate);
+
+    @Query("select e.id from ChangeLogEntry e where e.commitSeq > 0 and e.commitSeq < :below")
+    List<Long> findIdsByCommitSeqBelow(@Param("below") long below, Pageable pageable);
+
+    // The fan-out to the members is a single insert-select, so a message costs one statement however big its chat is.
+    // HQL rather than native SQL: Hibernate flushes pending chat_members rows first and evicts no cache region.
+    @Transactional
+    @Modifying
+    @Query("insert into ChangeLogEntry (userId, chatId, messageId, type, createdAt, commitSeq) "
+            + "select u.id, c.id, :messageId, :type, :createdAt, :commitSeq from Chat c join c.members u where c.id = :chatId")
+    int appendForMembers(@Param("chatId") Long chatId, @Param("messageId") Long messageId, @Param("type") ChangeLogEntry.Type type,
+                         @Param("createdAt") LocalDateTime createdAt, @Param("commitSeq") long commitSeq);
+
+    // has to run before the messages are deleted, as it finds their chats through them
+    @Transactional
+    @Modifying
+    @Query("insert into ChangeLogEntry (userId, chatId, messageId, type, createdAt, commitSeq) "
+            + "select u.id, c.id, m.id, :type, :createdAt, :commitSeq from Message m join m.chat c join c.members u where m.id in :ids")
+    int appendForMessages(@Param("ids") List<Long> ids, @Param("type") ChangeLogEntry.Type type,
+                          @Param("createdAt") LocalDateTime createdAt, @Param("commitSeq") long commitSeq);
+
+    // has to run before the chat is deleted, as its members go with it
+    @Transactional
+    @Modifying
+    @Query("insert into ChangeLogEntry (userId, chatId, type, createdAt, commitSeq) "
+            + "select u.id, c.id, :type, :createdAt, :commitSeq from Chat c join c.members u where c.id = :chatId")
+    int appendForChat(@Param("chatId") Long chatId, @Param("type") ChangeLogEntry.Type type,
+                      @Param("createdAt") LocalDateTime createdAt, @Param("commitSeq") long commitSeq);
+
+    @Override
+    @Query("select e.id from ChangeLogEntry e where e.commitSeq = :commitSeq order by e.id")
+    List<Long> findIdsByCommitSeq(@Param("commitSeq") long commitSeq, Pageable pageable);
+
+    @Override
+    @Transactional
+    @Modifying
+    @Query("update ChangeLogEntry e set e.commitSeq = :commitSeq where e.id in :ids")
+    int position(@Param("ids") List<Long> ids, @Param("commitSeq") long commitSeq);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ChangeLogEntry e where e.id in :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+}
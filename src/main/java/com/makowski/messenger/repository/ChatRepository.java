@@ -1,6 +1,19 @@
 package com.makowski.messenger.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
 
 import com.makowski.messenger.entity.Chat;
 import org.springframework.stereotype.Repository;
@@ -8,4 +21,31 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface ChatRepository extends CrudRepository<Chat, Long> {
 
+    // Hibernate removes the chat_members rows of Chat.members before deleting the chat row
+    @Transactional
+    @Modifying
+    @Query("delete from Chat c where c.id = :chatId")
+    int deleteChatById(@Param("chatId") Long chatId);
+
+    // in chat id order, the order in which inserts lock the chats' sequences
+    @Query("select c.id from Chat c join c.members u where u.id = :userId order by c.id")
+    List<Long> findIdsByMemberId(@Param("userId") Long userId, Pageable pageable);
+
+    // the chat of exactly these members, looked for among the chats of one of them
+    @Query("select c.id from Chat c join c.members u where c.id in (select m.id from Chat m join m.members s where s.id = :memberId) "
+            + "group by c.id having count(u) = :count and sum(case when u.id in :memberIds then 1 else 0 end) = :count")
+    List<Long> findIdsByMembers(@Param("memberId") Long memberId, @Param("memberIds") Set<Long> memberIds, @Param("count") long count);
+
+    @Query("select count(u) from Chat c join c.members u where c.id = :chatId")
+    long countMembers(@Param("chatId") Long chatId);
+
+    @Query("select u.id from Chat c join c.members u where c.id = :chatId and u.id in :userIds")
+    Set<Long> findMemberIdsIn(@Param("chatId") Long chatId, @Param("userIds") Collection<Long> userIds);
+
+    // the query space keeps Hibernate from invalidating every second-level cache region after a native update
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "chat_members"))
+    @Query(value = "delete from chat_members where chat_id = :chatId and user_id = :userId", nativeQuery = true)
+    int deleteMember(@Param("chatId") Long chatId, @Param("userId") Long userId);
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.makowski.messenger.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.makowski.messenger.dto.UnreadDto;
+import com.makowski.messenger.entity.ChatSequence;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChatSequenceRepository extends CrudRepository<ChatSequence, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("insert into ChatSequence (chatId, lastSeq) values (:chatId, 0)")
+    int createSequence(@Param("chatId") Long chatId);
+
+    // The update locks the row of the chat until the caller's transaction ends, so concurrent senders of one chat
+    // take numbers one after another and a rollback gives its number back. Without a transaction the lock would
+    // be gone before the message is inserted.
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Modifying
+    @Query("update ChatSequence s set s.lastSeq = s.lastSeq + 1 where s.chatId = :chatId")
+    int increment(@Param("chatId") Long chatId);
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Modifying
+    @Query("update ChatSequence s set s.lastSeq = s.lastSeq + :count where s.chatId = :chatId")
+    int incrementBy(@Param("chatId") Long chatId, @Param("count") long count);
+
+    // Locks the row like increment without taking a number, for the writers that delete the chat or remove its
+    // members: they wait for the messages being inserted into it, and those inserted after them see the change.
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Modifying
+    @Query("update ChatSequence s set s.lastSeq = s.lastSeq where s.chatId = :chatId")
+    int lock(@Param("chatId") Long chatId);
+
+    @Query("select s.lastSeq from ChatSequence s where s.chatId = :chatId")
+    long findLastSeq(@Param("chatId") Long chatId);
+
+    @Transactional
+    @Modifying
+    @Query("insert into ChatRead (chatId, userId, lastReadSeq) select c.id, u.id, 0 from Chat c join c.members u where c.id = :chatId")
+    int createReadPositions(@Param("chatId") Long chatId);
+
+    // read positions only move forward, whatever order the requests arrive in
+    @Transactional
+    @Modifying
+    @Query("update ChatRead r set r.lastReadSeq = :seq where r.chatId = :chatId and r.userId = :userId and r.lastReadSeq < :seq")
+    int markRead(@Param("chatId") Long chatId, @Param("userId") Long userId, @Param("seq") long seq);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ChatRead r where r.chatId = :chatId and r.userId = :userId")
+    int deleteReadPosition(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    // sequence numbers have no gaps, so the difference is the number of messages sent since, deleted ones included
+    @Query("select new com.makowski.messenger.dto.UnreadDto(s.chatId, s.lastSeq, s.lastSeq - r.lastReadSeq) "
+            + "from ChatRead r join ChatSequence s on s.chatId = r.chatId where r.userId = :userId order by s.chatId")
+    List<UnreadDto> findUnread(@Param("userId") Long userId);
+}
@@ -0,0 +1,17 @@
+package com.makowski.messenger.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+
+/**
+ * A table read in commit order, whose rows {@link com.makowski.messenger.service.CommitSequence} positions after
+ * their transactions commit.
+ */
+public interface CommitOrderedRepository {
+
+    // in id order, so that a run that stops halfway leaves the later rows for the next one
+    List<Long> findIdsByCommitSeq(long commitSeq, Pageable pageable);
+
+    int position(List<Long> ids, long commitSeq);
+}
@@ -0,0 +1,24 @@
+package com.makowski.messenger.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.makowski.messenger.entity.IdBlock;
+
+@Repository
+public interface IdBlockRepository extends CrudRepository<IdBlock, String> {
+
+    // locks the row until the reading transaction ends, so two nodes never get the same block
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Modifying
+    @Query("update IdBlock b set b.nextId = b.nextId + :count where b.name = :name")
+    int advance(@Param("name") String name, @Param("count") long count);
+
+    @Query("select b.nextId from IdBlock b where b.name = :name")
+    long findNextId(@Param("name") String name);
+}
@@ -1,16 +1,77 @@
 package com.makowski.messenger.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.makowski.messenger.dto.MessageDto;
 import com.makowski.messenger.entity.Message;
+
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface MessageRepository extends CrudRepository<Message, Long> {
 
-    Page<Message> findByPermanentFalseAndDateTimeBefore(LocalDateTime expireDate, Pageable pageable);
-}
\ No newline at end of file
+    @Query("select m.id from Message m where m.permanent = false and m.dateTime < :expireDate")
+    List<Long> findExpiredIds(@Param("expireDate") LocalDateTime expireDate, Pageable pageable);
+
+    boolean existsByChatId(Long chatId);
+
+    @Query("select m.id from Message m where m.chat.id = :chatId")
+    List<Long> findIdsByChatId(@Param("chatId") Long chatId, Pageable pageable);
+
+    @Query("select m.seq from Message m where m.chat.id = :chatId and m.seq > :after order by m.seq")
+    List<Long> findSeqsByChatIdAndSeqAfter(@Param("chatId") Long chatId, @Param("after") long after, Pageable pageable);
+
+    @Query("select m.id from Message m where m.chat.id = :chatId and m.seq between :from and :to order by m.seq")
+    List<Long> findIdsByChatIdAndSeqBetween(@Param("chatId") Long chatId, @Param("from") long from, @Param("to") long to);
+
+    @Query("select m.id from Message m where m.chat.id = :chatId and m.seq > :after order by m.seq")
+    List<Long> findIdsByChatIdAndSeqAfter(@Param("chatId") Long chatId, @Param("after") long after, Pageable pageable);
+
+    @Query("select m.id from Message m where m.chat.id = :chatId and m.seq < :before order by m.seq desc")
+    List<Long> findIdsByChatIdAndSeqBefore(@Param("chatId") Long chatId, @Param("before") long before, Pageable pageable);
+
+    @Query("select new com.makowski.messenger.dto.MessageDto(m.id, m.seq, m.senderId, m.receiverId, m.permanent, m.dateTime, m.content) "
+            + "from Message m where m.id in :ids")
+    List<MessageDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select m.id from Message m where m.senderId = :senderId")
+    List<Long> findIdsBySenderId(@Param("senderId") Long senderId, Pageable pageable);
+
+    @Query("select m.id from Message m where m.id in :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select distinct m.chat.id from Message m where m.id in :ids")
+    List<Long> findChatIdsByIdIn(@Param("ids") List<Long> ids);
+
+    @Query("select m.chat.id from Message m where m.id = :id")
+    Optional<Long> findChatIdById(@Param("id") Long id);
+
+    // DTOs instead of entities, so nothing piles up in the persistence context while the cursor is read
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.makowski.messenger.dto.MessageDto(m.id, m.seq, m.senderId, m.receiverId, m.permanent, m.dateTime, m.content) "
+            + "from Message m where m.chat.id = :chatId order by m.seq")
+    Stream<MessageDto> streamByChatId(@Param("chatId") Long chatId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Message m where m.id in :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+}
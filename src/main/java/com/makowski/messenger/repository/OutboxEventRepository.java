@@ -0,0 +1,48 @@
+package com.makowski.messenger.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.makowski.messenger.entity.OutboxEvent;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxEventRepository extends CrudRepository<OutboxEvent, Long>, CommitOrderedRepository {
+
+    // in commit order; events not positioned yet wait for the next run
+    @Query("select e from OutboxEvent e where e.commitSeq >= 0 order by e.commitSeq, e.id")
+    List<OutboxEvent> findBatch(Pageable pageable);
+
+    Optional<OutboxEvent> findFirstByOrderByCommitSeqAscIdAsc();
+
+    // has to run before the messages are deleted, as it finds their chats through them
+    @Transactional
+    @Modifying
+    @Query("insert into OutboxEvent (type, chatId, messageId, createdAt, commitSeq) "
+            + "select :type, m.chat.id, m.id, :createdAt, :commitSeq from Message m where m.id in :ids")
+    int appendForMessages(@Param("ids") List<Long> ids, @Param("type") OutboxEvent.Type type,
+                          @Param("createdAt") LocalDateTime createdAt, @Param("commitSeq") long commitSeq);
+
+    @Override
+    @Query("select e.id from OutboxEvent e where e.commitSeq = :commitSeq order by e.id")
+    List<Long> findIdsByCommitSeq(@Param("commitSeq") long commitSeq, Pageable pageable);
+
+    @Override
+    @Transactional
+    @Modifying
+    @Query("update OutboxEvent e set e.commitSeq = :commitSeq where e.id in :ids")
+    int position(@Param("ids") List<Long> ids, @Param("commitSeq") long commitSeq);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id in :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+}
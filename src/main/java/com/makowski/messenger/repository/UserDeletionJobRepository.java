@@ -0,0 +1,14 @@
+package com.makowski.messenger.repository;
+
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+
+import com.makowski.messenger.entity.UserDeletionJob;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserDeletionJobRepository extends CrudRepository<UserDeletionJob, Long> {
+
+    List<UserDeletionJob> findAllByOrderByIdAsc();
+}
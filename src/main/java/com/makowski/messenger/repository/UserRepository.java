@@ -1,8 +1,12 @@
 package com.makowski.messenger.repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import com.makowski.messenger.entity.User;
 import org.springframework.stereotype.Repository;
@@ -12,6 +16,13 @@ public interface UserRepository extends CrudRepository<User, Long> {
 
     Optional<User> findByUsername(String username);
 
+    @Query("select u.id from User u where u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
     boolean existsByUsernameIgnoreCase(String username);
 
+    boolean existsByIdAndDeletedFalse(Long id);
+
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
 }
\ No newline at end of file
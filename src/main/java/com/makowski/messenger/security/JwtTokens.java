@@ -0,0 +1,25 @@
+package com.makowski.messenger.security;
+
+import java.util.Date;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+
+public class JwtTokens {
+
+    private static final Algorithm ALGORITHM = Algorithm.HMAC512(SecurityConstants.SECRET_KEY);
+
+    public static String sign(String username) {
+        return JWT.create()
+            .withSubject(username)
+            .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.TOKEN_EXPIRATION))
+            .sign(ALGORITHM);
+    }
+
+    public static String verify(String token) {
+        return JWT.require(ALGORITHM)
+            .build()
+            .verify(token)
+            .getSubject();
+    }
+}
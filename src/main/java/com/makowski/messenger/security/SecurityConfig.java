@@ -1,5 +1,6 @@
 package com.makowski.messenger.security;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -7,38 +8,52 @@ import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
-import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
 
 import com.makowski.messenger.security.filter.AuthenticationFilter;
 import com.makowski.messenger.security.filter.ExceptionHandlerFilter;
 import com.makowski.messenger.security.filter.JWTAuthorizationFilter;
 import com.makowski.messenger.security.manager.CustomAuthenticationManager;
 
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
-@AllArgsConstructor
 public class SecurityConfig {
     
     private CustomAuthenticationManager customAuthenticationManager;
+    private MeterRegistry meterRegistry;
+    private int managementPort;
+
+    public SecurityConfig(CustomAuthenticationManager customAuthenticationManager, MeterRegistry meterRegistry,
+                          @Value("${management.server.port:-1}") int managementPort) {
+        this.customAuthenticationManager = customAuthenticationManager;
+        this.meterRegistry = meterRegistry;
+        this.managementPort = managementPort;
+    }
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-        AuthenticationFilter authenticationFilter = new AuthenticationFilter(customAuthenticationManager);
+        AuthenticationFilter authenticationFilter = new AuthenticationFilter(customAuthenticationManager, meterRegistry);
         authenticationFilter.setFilterProcessesUrl("/authenticate");
+        PathPatternRequestMatcher.Builder paths = PathPatternRequestMatcher.withDefaults();
         http
             .headers(headers -> headers.frameOptions(Customizer.withDefaults()).disable())
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests((authorize) -> authorize  
-                .requestMatchers(AntPathRequestMatcher.antMatcher("/h2/**")).permitAll()
-                .requestMatchers(AntPathRequestMatcher.antMatcher("/v3/**")).permitAll()
-                .requestMatchers(AntPathRequestMatcher.antMatcher("/swagger-ui/**")).permitAll()
-                .requestMatchers(AntPathRequestMatcher.antMatcher(HttpMethod.POST, SecurityConstants.REGISTER_PATH)).permitAll()
+                .requestMatchers(paths.matcher("/h2/**")).permitAll()
+                .requestMatchers(paths.matcher("/v3/**")).permitAll()
+                .requestMatchers(paths.matcher("/swagger-ui/**")).permitAll()
+                .requestMatchers(paths.matcher(HttpMethod.GET, "/actuator/health")).permitAll()
+                // open only on a separate management port, which is not meant to be reachable from outside
+                .requestMatchers(new AndRequestMatcher(request -> managementPort > 0 && request.getLocalPort() == managementPort,
+                    paths.matcher(HttpMethod.GET, "/actuator/prometheus"))).permitAll()
+                .requestMatchers(paths.matcher(HttpMethod.POST, SecurityConstants.REGISTER_PATH)).permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(new ExceptionHandlerFilter(), AuthenticationFilter.class)
             .addFilter(authenticationFilter)
-            .addFilterAfter(new JWTAuthorizationFilter(), AuthenticationFilter.class)
+            .addFilterAfter(new JWTAuthorizationFilter(meterRegistry), AuthenticationFilter.class)
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
         return http.build();
     }
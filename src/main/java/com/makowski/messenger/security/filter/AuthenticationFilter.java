@@ -1,20 +1,23 @@
 package com.makowski.messenger.security.filter;
 
 import java.io.IOException;
-import java.util.Date;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.makowski.messenger.entity.User;
+import com.makowski.messenger.monitoring.AuthEvent;
+import com.makowski.messenger.monitoring.RequestTimings;
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
+import com.makowski.messenger.security.JwtTokens;
 import com.makowski.messenger.security.SecurityConstants;
 import com.makowski.messenger.security.manager.CustomAuthenticationManager;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -25,13 +28,23 @@ import lombok.AllArgsConstructor;
 public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
     
     private CustomAuthenticationManager authenticationManager;
+    private MeterRegistry meterRegistry;
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response) throws AuthenticationException {
         try {
             User user = new ObjectMapper().readValue(request.getInputStream(), User.class);
             Authentication authentication = new UsernamePasswordAuthenticationToken(user.getUsername(), user.getPassword());
-            return authenticationManager.authenticate(authentication);
+            AuthEvent event = AuthEvent.start("authenticate");
+            try {
+                Authentication result = RequestTimings.time(Phase.JWT, () ->
+                        meterRegistry.timer("messenger.jwt.authenticate").record(() -> authenticationManager.authenticate(authentication)));
+                event.finish(user.getUsername(), true);
+                return result;
+            } catch (AuthenticationException e) {
+                event.finish(user.getUsername(), false);
+                throw e;
+            }
         } catch (IOException e) {
             throw new RuntimeException();
         }
@@ -48,10 +61,10 @@ public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
     @Override
     protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Authentication authentication)
             throws IOException, ServletException {
-        String token = JWT.create()
-            .withSubject(authentication.getName())
-            .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.TOKEN_EXPIRATION))
-            .sign(Algorithm.HMAC512(SecurityConstants.SECRET_KEY));
+        AuthEvent event = AuthEvent.start("sign");
+        String token = RequestTimings.time(Phase.JWT, () ->
+                meterRegistry.timer("messenger.jwt.sign").record(() -> JwtTokens.sign(authentication.getName())));
+        event.finish(authentication.getName(), true);
         response.addHeader(SecurityConstants.AUTHORIZATION, SecurityConstants.BEARER + token);
     }
 
@@ -8,17 +8,25 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.makowski.messenger.monitoring.AuthEvent;
+import com.makowski.messenger.monitoring.RequestTimings;
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
+import com.makowski.messenger.security.JwtTokens;
 import com.makowski.messenger.security.SecurityConstants;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
 
+@AllArgsConstructor
 public class JWTAuthorizationFilter extends OncePerRequestFilter {
 
+    private MeterRegistry meterRegistry;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -29,10 +37,15 @@ public class JWTAuthorizationFilter extends OncePerRequestFilter {
             return;
         }
         String token = header.replace(SecurityConstants.BEARER, "");
-        String user = JWT.require(Algorithm.HMAC512(SecurityConstants.SECRET_KEY))
-                .build()
-                .verify(token)
-                .getSubject();
+        AuthEvent event = AuthEvent.start("verify");
+        String user;
+        try {
+            user = RequestTimings.time(Phase.JWT, () -> meterRegistry.timer("messenger.jwt.verify").record(() -> JwtTokens.verify(token)));
+        } catch (RuntimeException e) {
+            event.finish(null, false);
+            throw e;
+        }
+        event.finish(user, true);
         Authentication authentication = new UsernamePasswordAuthenticationToken(user, null, Arrays.asList());
         SecurityContextHolder.getContext().setAuthentication(authentication);
         filterChain.doFilter(request, response);
@@ -0,0 +1,43 @@
+package com.makowski.messenger.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs work once the transaction of the current thread is over, or right away outside of one, for the in-memory
+ * state that has to follow the database: a reader must not see a new version or an empty cache entry while the
+ * change that caused it is still uncommitted.
+ */
+public final class AfterTransaction {
+
+    private AfterTransaction() {
+    }
+
+    // for changes that only hold if the data changed: nothing runs on rollback
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // for evictions and version bumps, which are harmless when the transaction rolled back
+    public static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
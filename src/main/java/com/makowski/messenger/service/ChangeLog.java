@@ -0,0 +1,62 @@
+package com.makowski.messenger.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.makowski.messenger.entity.ChangeLogEntry;
+import com.makowski.messenger.repository.ChangeLogRepository;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Appends to the per-user change log served by {@link SyncService}: every change gets one entry for each member
+ * of its chat at the time of the change. Deletions are recorded as tombstones before the rows go away, since
+ * the members are found through them. An entry written in the caller's transaction commits or rolls back with
+ * the change; without one, a failed delete leaves a tombstone for a message that still exists.
+ * Entries are written unpositioned; {@link CommitSequence} numbers them in the order their transactions commit.
+ */
+@Component
+@AllArgsConstructor
+public class ChangeLog {
+
+    private ChangeLogRepository changeLogRepository;
+
+    @Transactional
+    public void messageChanged(Long chatId, Long messageId) {
+        changeLogRepository.appendForMembers(chatId, messageId, ChangeLogEntry.Type.MESSAGE, LocalDateTime.now(), CommitSequence.UNPOSITIONED);
+    }
+
+    @Transactional
+    public void messagesDeleted(List<Long> messageIds) {
+        if (messageIds.isEmpty()) return;
+        changeLogRepository.appendForMessages(messageIds, ChangeLogEntry.Type.MESSAGE_DELETED, LocalDateTime.now(), CommitSequence.UNPOSITIONED);
+    }
+
+    // for an accepted message that was never saved: only its sender knows it, and the chat may be gone
+    @Transactional
+    public void messageRefused(Long chatId, Long messageId, Long senderId) {
+        ChangeLogEntry entry = new ChangeLogEntry();
+        entry.setUserId(senderId);
+        entry.setChatId(chatId);
+        entry.setMessageId(messageId);
+        entry.setType(ChangeLogEntry.Type.MESSAGE_DELETED);
+        entry.setCreatedAt(LocalDateTime.now());
+        entry.setCommitSeq(CommitSequence.UNPOSITIONED);
+        changeLogRepository.save(entry);
+    }
+
+    // stands for the messages of the chat as well, so they get no tombstones of their own
+    @Transactional
+    public void chatDeleted(Long chatId) {
+        changeLogRepository.appendForChat(chatId, ChangeLogEntry.Type.CHAT_DELETED, LocalDateTime.now(), CommitSequence.UNPOSITIONED);
+    }
+
+    // for the members the chat has now: a member who left gets no entry
+    @Transactional
+    public void membersChanged(Long chatId) {
+        changeLogRepository.appendForChat(chatId, ChangeLogEntry.Type.MEMBERS_CHANGED, LocalDateTime.now(), CommitSequence.UNPOSITIONED);
+    }
+}
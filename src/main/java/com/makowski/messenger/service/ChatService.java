@@ -1,28 +1,72 @@
 package com.makowski.messenger.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.makowski.messenger.broker.EventFanout;
 import com.makowski.messenger.dto.ChatDto;
+import com.makowski.messenger.dto.ChatMessagesDto;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.dto.MessageJson;
+import com.makowski.messenger.dto.UnreadDto;
 import com.makowski.messenger.entity.Chat;
+import com.makowski.messenger.entity.User;
 import com.makowski.messenger.exception.AccessDeniedException;
 import com.makowski.messenger.exception.EntityNotFoundException;
+import com.makowski.messenger.exception.InvalidRequestException;
+import com.makowski.messenger.monitoring.RequestTimings;
+import com.makowski.messenger.outbox.Outbox;
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
 import com.makowski.messenger.repository.ChatRepository;
+import com.makowski.messenger.repository.ChatSequenceRepository;
+import com.makowski.messenger.repository.MessageRepository;
 
 import lombok.AllArgsConstructor;
 
 @Service
 @AllArgsConstructor
 public class ChatService {
+
+    private static final int DELETE_CHUNK_SIZE = 1000;
+    private static final int READ_CHUNK_SIZE = 500;
+    private static final int STREAM_FLUSH_INTERVAL = 100;
+    static final int MAX_HISTORY_PAGE = 200;
  
     private ChatRepository chatRepository;
+    private ChatSequenceRepository chatSequenceRepository;
+    private MessageRepository messageRepository;
+    private ObjectMapper objectMapper;
+    private MessageJsonCache messageJsonCache;
+    private RecentMessagesCache recentMessagesCache;
+    private ChangeLog changeLog;
+    private Outbox outbox;
+    private ResourceVersions resourceVersions;
+    private EventFanout eventFanout;
     private UserService userService;    
 
     public List<ChatDto> getMyChats() {
         return userService.getUsersChats();
     } 
 
+    public String getMyChatsTag() {
+        return userService.getMyChatsTag();
+    }
+
     public Chat getChat(Long chatId) {
         return chatRepository.findById(chatId)
             .orElseThrow(() -> new EntityNotFoundException(chatId, Chat.class));
@@ -34,10 +78,143 @@ public class ChatService {
         return getChat(chatId);
     }
 
+    public String getMyChatTag(Long chatId) {
+        if (!isItProperUser(chatId))
+            throw new AccessDeniedException();
+        return resourceVersions.chatTag(chatId);
+    }
+
+    // Read in pages of READ_CHUNK_SIZE sequence numbers, each page's ids taken from the range of its numbers.
+    // Only the ids come from the database when every message of the chat is cached.
+    public ChatMessagesDto getMyChatMessages(Long chatId) {
+        if (!isItProperUser(chatId))
+            throw new AccessDeniedException();
+        List<MessageJson> messages = new ArrayList<>();
+        long after = 0;
+        List<Long> seqs;
+        do {
+            seqs = messageRepository.findSeqsByChatIdAndSeqAfter(chatId, after, PageRequest.of(0, READ_CHUNK_SIZE));
+            if (seqs.isEmpty()) break;
+            after = seqs.get(seqs.size() - 1);
+            messages.addAll(toMessageJson(messageRepository.findIdsByChatIdAndSeqBetween(chatId, seqs.get(0), after)));
+        } while (seqs.size() == READ_CHUNK_SIZE);
+        return new ChatMessagesDto(chatId, messages);
+    }
+
+    // A page of the history in sequence order: the messages after a sequence number, for a client catching up,
+    // or the ones before it, for scrolling back. Without either, the latest messages.
+    public ChatMessagesDto getMyChatHistory(Long chatId, Long after, Long before, int limit) {
+        if (after != null && before != null || limit < 1 || limit > MAX_HISTORY_PAGE)
+            throw new InvalidRequestException();
+        if (!isItProperUser(chatId))
+            throw new AccessDeniedException();
+        if (after == null && before == null) {
+            Optional<List<String>> latest = recentMessagesCache.latest(chatId, limit);
+            if (latest.isPresent()) return new ChatMessagesDto(chatId, latest.get().stream().map(MessageJson::new).toList());
+        }
+        List<Long> messageIds;
+        if (after != null) {
+            messageIds = messageRepository.findIdsByChatIdAndSeqAfter(chatId, after, PageRequest.of(0, limit));
+        } else {
+            messageIds = new ArrayList<>(messageRepository.findIdsByChatIdAndSeqBefore(chatId,
+                before == null ? Long.MAX_VALUE : before, PageRequest.of(0, limit)));
+            Collections.reverse(messageIds);
+        }
+        return toChatMessages(chatId, messageIds);
+    }
+
+    private ChatMessagesDto toChatMessages(Long chatId, List<Long> messageIds) {
+        return new ChatMessagesDto(chatId, toMessageJson(messageIds));
+    }
+
+    private List<MessageJson> toMessageJson(List<Long> messageIds) {
+        Map<Long, String> json = getMessagesJson(messageIds);
+        List<MessageJson> messages = new ArrayList<>(messageIds.size());
+        for (Long id : messageIds) {
+            String message = json.get(id);
+            // deleted between the two queries
+            if (message != null) messages.add(new MessageJson(message));
+        }
+        return messages;
+    }
+
+    public List<UnreadDto> getMyUnread() {
+        return chatSequenceRepository.findUnread(userService.getLoggedUser().getId());
+    }
+
+    public void markMyChatRead(Long chatId, long seq) {
+        if (!isItProperUser(chatId))
+            throw new AccessDeniedException();
+        if (seq < 0 || seq > chatSequenceRepository.findLastSeq(chatId))
+            throw new InvalidRequestException();
+        chatSequenceRepository.markRead(chatId, userService.getLoggedUser().getId(), seq);
+    }
+
+    // Has to run in the transaction that inserts the message: the chat's sequence row stays locked until it ends.
+    public long nextSeq(Long chatId) {
+        chatSequenceRepository.increment(chatId);
+        return chatSequenceRepository.findLastSeq(chatId);
+    }
+
+    // Takes count numbers at once and returns the last of them, under the same rule as nextSeq. The chat may have
+    // been deleted since its messages were accepted.
+    public long nextSeqs(Long chatId, int count) {
+        if (chatSequenceRepository.incrementBy(chatId, count) == 0) throw new EntityNotFoundException(chatId, Chat.class);
+        return chatSequenceRepository.findLastSeq(chatId);
+    }
+
+    // Locks the chat's sequence row for the rest of the transaction and returns which of the users are members of the
+    // chat now, none if it was deleted. Deleting the chat or removing a member waits for the lock, so the answer holds
+    // until the transaction ends.
+    public Set<Long> lockMembers(Long chatId, Collection<Long> userIds) {
+        if (chatSequenceRepository.lock(chatId) == 0) return Set.of();
+        return chatRepository.findMemberIdsIn(chatId, userIds);
+    }
+
+    public void markRead(Long chatId, Long userId, long seq) {
+        chatSequenceRepository.markRead(chatId, userId, seq);
+    }
+
+    // Serialized messages by id; those missing from the cache are read as DTOs, at most READ_CHUNK_SIZE per query,
+    // and serialized once for the next readers. Messages that no longer exist are left out.
+    public Map<Long, String> getMessagesJson(Collection<Long> messageIds) {
+        Map<Long, String> cached = messageJsonCache.getAll(messageIds);
+        if (cached.size() < messageIds.size()) {
+            List<Long> missing = messageIds.stream().filter(id -> !cached.containsKey(id)).toList();
+            for (int from = 0; from < missing.size(); from += READ_CHUNK_SIZE) {
+                List<Long> chunk = missing.subList(from, Math.min(from + READ_CHUNK_SIZE, missing.size()));
+                for (MessageDto message : messageRepository.findDtosByIdIn(chunk)) {
+                    cached.put(message.getId(), messageJsonCache.put(message));
+                }
+            }
+        }
+        return cached;
+    }
+
+    // One JSON line per message, straight from the database cursor. A slow client blocks the writes and with them
+    // the reading of the cursor, so memory use doesn't grow with the length of the chat.
+    @Transactional(readOnly = true)
+    public long writeMessages(Long chatId, OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(MessageDto.class);
+        long count = 0;
+        try (Stream<MessageDto> messages = messageRepository.streamByChatId(chatId)) {
+            for (Iterator<MessageDto> iterator = messages.iterator(); iterator.hasNext(); ) {
+                out.write(writer.writeValueAsBytes(iterator.next()));
+                out.write('\n');
+                if (++count % STREAM_FLUSH_INTERVAL == 0) out.flush();
+            }
+        }
+        out.flush();
+        return count;
+    }
+
     public void saveChat(Chat chat) {
         chatRepository.save(chat);
+        chatSequenceRepository.createSequence(chat.getId());
+        chatSequenceRepository.createReadPositions(chat.getId());
     }
                                                                    
+    @Transactional
     public void deleteChatIfExist(Long chatId) {
         if (!chatRepository.existsById(chatId))
             throw new EntityNotFoundException(chatId, Chat.class);
@@ -46,17 +223,36 @@ public class ChatService {
         deleteChat(chatId);
     }
 
+    @Transactional
     public void deleteChatIfEmpty(Long chatId) {
-        if (getChat(chatId).getMessages().isEmpty()) {                   
-            deleteChat(chatId);           
+        if (!messageRepository.existsByChatId(chatId)) {
+            deleteChat(chatId);
         }
     }
 
+    // Set-based deletion: going through CascadeType.ALL on Chat.messages would load every message
+    // of the chat and delete them one by one. The chunks only bound the id list of each statement: the whole
+    // deletion is one transaction, the caller's if there is one, so the chat goes at once with its tombstone.
+    @Transactional
     public void deleteChat(Long chatId) {
-        chatRepository.deleteById(chatId); 
+        // waits for the messages being inserted into the chat, see lockMembers
+        chatSequenceRepository.lock(chatId);
+        chatRepository.findById(chatId).ifPresent(chat -> {
+            eventFanout.usersChanged(chat.getMembers().stream().map(User::getId).toList());
+            outbox.chatDeleted(chatId);
+        });
+        changeLog.chatDeleted(chatId);
+        recentMessagesCache.evictChat(chatId);
+        List<Long> messageIds;
+        do {
+            messageIds = messageRepository.findIdsByChatId(chatId, PageRequest.of(0, DELETE_CHUNK_SIZE));
+            if (!messageIds.isEmpty()) messageRepository.deleteByIdIn(messageIds);
+        } while (messageIds.size() == DELETE_CHUNK_SIZE);
+        chatRepository.deleteChatById(chatId);
+        eventFanout.chatChanged(chatId);
     }
 
     public boolean isItProperUser (Long chatId) {
-        return getChat(chatId).getMembers().contains(userService.getLoggedUser());
+        return RequestTimings.time(Phase.MEMBERSHIP, () -> getChat(chatId).getMembers().contains(userService.getLoggedUser()));
     }
 }
\ No newline at end of file
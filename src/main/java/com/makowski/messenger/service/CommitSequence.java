@@ -0,0 +1,109 @@
+package com.makowski.messenger.service;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.makowski.messenger.repository.CommitOrderedRepository;
+import com.makowski.messenger.repository.IdBlockRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Numbers the rows of the {@link CommitOrderedRepository} tables in the order their transactions commit, for readers
+ * that go through a table by position and must not pass over a row whose transaction commits after a later one.
+ * Rows are written {@link #UNPOSITIONED}, so writers take no common lock. After they commit, a positioning run
+ * advances the 'commit' row of id_block, which stays locked until the run commits, and writes the value it took
+ * into the rows it finds unpositioned. Runs of all nodes wait for each other on that row, and a row committed
+ * after a run looked goes to the next one, so once a position is visible, all lower ones are.
+ * <p>
+ * Rows are read by position only, so they show up to readers a positioning interval after their commit.
+ */
+@Slf4j
+@Component
+public class CommitSequence implements SmartLifecycle {
+
+    public static final long UNPOSITIONED = -1;
+    static final String COMMIT = "commit";
+    static final int PAGE_SIZE = 1000;
+
+    private final IdBlockRepository idBlockRepository;
+    private final List<CommitOrderedRepository> tables;
+    private final TransactionTemplate transactionTemplate;
+    private final long intervalMillis;
+    private ScheduledExecutorService executor;
+
+    public CommitSequence(IdBlockRepository idBlockRepository, List<CommitOrderedRepository> tables,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${messenger.commit-positions.interval-ms:50}") long intervalMillis) {
+        this.idBlockRepository = idBlockRepository;
+        this.tables = tables;
+        this.transactionTemplate = transactionTemplate;
+        this.intervalMillis = intervalMillis;
+    }
+
+    // Every transaction up to this position has committed.
+    public long lastPosition() {
+        return idBlockRepository.findNextId(COMMIT) - 1;
+    }
+
+    // One position for all rows committed so far. The rows are looked for once the id_block row is locked, as
+    // a run that had looked before could still be writing the same rows.
+    public void position() {
+        if (tables.stream().allMatch(table -> table.findIdsByCommitSeq(UNPOSITIONED, PageRequest.of(0, 1)).isEmpty())) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            idBlockRepository.advance(COMMIT, 1);
+            long position = idBlockRepository.findNextId(COMMIT) - 1;
+            for (CommitOrderedRepository table : tables) {
+                List<Long> ids;
+                do {
+                    ids = table.findIdsByCommitSeq(UNPOSITIONED, PageRequest.of(0, PAGE_SIZE));
+                    if (!ids.isEmpty()) table.position(ids, position);
+                } while (ids.size() == PAGE_SIZE);
+            }
+        });
+    }
+
+    // A thread of its own, so that positions, and with them sync and the outbox, don't wait for the removers.
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "commit-positions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::positionLogged, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    // an exception would cancel the schedule
+    private void positionLogged() {
+        try {
+            position();
+        } catch (RuntimeException e) {
+            log.warn("Positioning committed rows failed, retrying on the next run", e);
+        }
+    }
+}
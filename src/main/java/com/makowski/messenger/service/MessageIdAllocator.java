@@ -0,0 +1,50 @@
+package com.makowski.messenger.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.makowski.messenger.repository.IdBlockRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out message ids from blocks reserved in the id_block table, so a message has its id before it is inserted
+ * and nodes never hand out the same id. Ids left in a block when the node stops are never used.
+ * A block is reserved in a transaction of its own: call it outside of other transactions, or the row stays locked
+ * until they end.
+ */
+@Component
+public class MessageIdAllocator {
+
+    static final String MESSAGE = "message";
+    private static final String BLOCKS_COUNTER = "messenger.message_ids.blocks";
+
+    private final IdBlockRepository idBlockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int blockSize;
+    private long next;
+    private long limit;
+
+    public MessageIdAllocator(IdBlockRepository idBlockRepository, TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry, @Value("${messenger.message-ids.block-size:100}") int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("messenger.message-ids.block-size must be positive");
+        this.idBlockRepository = idBlockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.blockSize = blockSize;
+    }
+
+    public synchronized long next() {
+        if (next == limit) {
+            limit = transactionTemplate.execute(status -> {
+                idBlockRepository.advance(MESSAGE, blockSize);
+                return idBlockRepository.findNextId(MESSAGE);
+            });
+            next = limit - blockSize;
+            meterRegistry.counter(BLOCKS_COUNTER).increment();
+        }
+        return next++;
+    }
+}
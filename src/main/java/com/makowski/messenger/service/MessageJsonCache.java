@@ -0,0 +1,58 @@
+package com.makowski.messenger.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.makowski.messenger.dto.MessageDto;
+
+/**
+ * Serialized JSON of single messages, so reading a hot chat doesn't run Jackson over every message again.
+ * Bounded by the {@value #CACHE_NAME} cache in ehcache.xml; an entry has to be evicted whenever its message changes.
+ */
+@Component
+public class MessageJsonCache {
+
+    static final String CACHE_NAME = "message-json";
+
+    private final Cache<Long, String> cache;
+    private final ObjectWriter writer;
+
+    public MessageJsonCache(CacheManager jCacheManager, ObjectMapper objectMapper) {
+        this.cache = jCacheManager.getCache(CACHE_NAME, Long.class, String.class);
+        this.writer = objectMapper.writerFor(MessageDto.class);
+    }
+
+    // the messages found in the cache, in a map the caller may add the missing ones to
+    public Map<Long, String> getAll(Collection<Long> messageIds) {
+        return new HashMap<>(cache.getAll(new HashSet<>(messageIds)));
+    }
+
+    public String put(MessageDto message) {
+        try {
+            String json = writer.writeValueAsString(message);
+            cache.put(message.getId(), json);
+            return json;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Message " + message.getId() + " could not be serialized", e);
+        }
+    }
+
+    // after the transaction ends, so a reader can't cache the message as it was before the change committed
+    public void evict(Long messageId) {
+        AfterTransaction.afterCompletion(() -> cache.remove(messageId));
+    }
+
+    public void clear() {
+        cache.removeAll();
+    }
+}
@@ -1,11 +1,19 @@
 package com.makowski.messenger.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
+import com.makowski.messenger.broker.EventFanout;
 import com.makowski.messenger.constants.Constants;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.makowski.messenger.entity.Chat;
 import com.makowski.messenger.entity.Message;
@@ -14,22 +22,126 @@ import com.makowski.messenger.exception.AccessDeniedException;
 import com.makowski.messenger.exception.EntityNotFoundException;
 import com.makowski.messenger.exception.InvalidRequestException;
 import com.makowski.messenger.exception.NoReceiversException;
+import com.makowski.messenger.monitoring.RequestTimings;
+import com.makowski.messenger.outbox.Outbox;
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
 import com.makowski.messenger.repository.MessageRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 
 @Service
 @AllArgsConstructor
 public class MessageService {
 
+    private static final String SAVE_MESSAGE_TIMER = "messenger.message.save";
+    private static final String CHATS_CREATED_COUNTER = "messenger.chat.created";
+
     private MessageRepository messageRepository;
+    private MessageIdAllocator messageIdAllocator;
+    private TransactionTemplate transactionTemplate;
     private UserService userService;
     private ChatService chatService;
+    private MessageJsonCache messageJsonCache;
+    private RecentMessagesCache recentMessagesCache;
+    private ChangeLog changeLog;
+    private Outbox outbox;
+    private EventFanout eventFanout;
+    private MeterRegistry meterRegistry;
 
+    // The id is taken before the transaction, as a block of ids is reserved in a transaction of its own.
+    // One transaction from taking the sequence number to the insert, so the number is neither skipped nor taken twice.
     public Message saveMessage(Message message) {
         checkLength(message.getContent().length());
+        message.setId(messageIdAllocator.next());
+        return transactionTemplate.execute(status -> {
+            Chat chat = resolveChat(message);
+            message.setSeq(chatService.nextSeq(chat.getId()));
+            Message savedMessage = meterRegistry.timer(SAVE_MESSAGE_TIMER, "phase", "insert")
+                .record(() -> messageRepository.save(message));
+            outbox.messageCreated(savedMessage);
+            recentMessagesCache.messageSaved(savedMessage);
+            changeLog.messageChanged(chat.getId(), savedMessage.getId());
+            chatService.markRead(chat.getId(), savedMessage.getSenderId(), savedMessage.getSeq());
+            eventFanout.chatChanged(chat.getId());
+            return savedMessage;
+        });
+    }
+
+    // Checks the message and finds or creates its chat like saveMessage, but leaves the insert to insertAccepted:
+    // the message gets its id and no seq yet.
+    public Message acceptMessage(Message message) {
+        checkLength(message.getContent().length());
+        message.setId(messageIdAllocator.next());
+        transactionTemplate.executeWithoutResult(status -> resolveChat(message));
+        return message;
+    }
+
+    // Inserts accepted messages in one transaction and returns the ones it refused. The sequences are taken a chat
+    // at a time in chat id order, so batches running at the same time lock them in the same order. Under the lock the
+    // chat is checked again: a message whose chat was deleted or whose sender left it since its acceptance is refused.
+    @Transactional
+    public List<Message> insertAccepted(List<Message> messages) {
+        Map<Long, List<Message>> byChat = messages.stream()
+            .collect(Collectors.groupingBy(message -> message.getChat().getId(), TreeMap::new, Collectors.toList()));
+        List<Message> refused = new ArrayList<>();
+        byChat.forEach((chatId, chatMessages) -> {
+            Set<Long> members = chatService.lockMembers(chatId, chatMessages.stream().map(Message::getSenderId).collect(Collectors.toSet()));
+            chatMessages.stream().filter(message -> !members.contains(message.getSenderId())).forEach(refused::add);
+            chatMessages.removeIf(message -> !members.contains(message.getSenderId()));
+            if (chatMessages.isEmpty()) return;
+            long seq = chatService.nextSeqs(chatId, chatMessages.size()) - chatMessages.size();
+            for (Message message : chatMessages) message.setSeq(++seq);
+        });
+        byChat.values().removeIf(List::isEmpty);
+        // in acceptance order: the ones that got a seq
+        List<Message> inserted = messages.stream().filter(message -> message.getSeq() != null).toList();
+        if (inserted.isEmpty()) return refused;
+        meterRegistry.timer(SAVE_MESSAGE_TIMER, "phase", "insert_batch").record(() -> messageRepository.saveAll(inserted));
+        for (Message message : inserted) {
+            outbox.messageCreated(message);
+            recentMessagesCache.messageSaved(message);
+            changeLog.messageChanged(message.getChat().getId(), message.getId());
+        }
+        byChat.forEach((chatId, chatMessages) -> {
+            Map<Long, Long> lastSeqBySender = chatMessages.stream()
+                .collect(Collectors.toMap(Message::getSenderId, Message::getSeq, Math::max));
+            lastSeqBySender.forEach((senderId, seq) -> chatService.markRead(chatId, senderId, seq));
+        });
+        eventFanout.chatsChanged(byChat.keySet());
+        return refused;
+    }
+
+    // Tells the sender that an accepted message will never be saved, with a tombstone in the change log.
+    @Transactional
+    public void reportRefused(Message message) {
+        changeLog.messageRefused(message.getChat().getId(), message.getId(), message.getSenderId());
+    }
+
+    // the sender and the chat of a new message; a chat is created for a new set of members
+    private Chat resolveChat(Message message) {
         User sender = userService.getLoggedUser();
         message.setSenderId(sender.getId());
+        Set<User> members = meterRegistry.timer(SAVE_MESSAGE_TIMER, "phase", "receivers")
+            .record(() -> getReceivers(message));
+        if (members.isEmpty()) throw new NoReceiversException();
+        members.add(sender);
+        Chat chat = meterRegistry.timer(SAVE_MESSAGE_TIMER, "phase", "resolve_chat")
+            .record(() -> findChat(sender, members));
+        if (chat == null) {
+            chat = meterRegistry.timer(SAVE_MESSAGE_TIMER, "phase", "create_chat")
+                .record(() -> createChat(members));
+            meterRegistry.counter(CHATS_CREATED_COUNTER).increment();
+            outbox.chatCreated(chat);
+            changeLog.membersChanged(chat.getId());
+            List<Long> memberIds = members.stream().map(User::getId).toList();
+            eventFanout.usersChanged(memberIds);
+        }
+        message.setChat(chat);
+        return chat;
+    }
+
+    private Set<User> getReceivers(Message message) {
         Set<User> members = new HashSet<>();
         for (Long id : message.getReceiverId()) {
             if (!id.equals(message.getSenderId())) {
@@ -39,24 +151,27 @@ public class MessageService {
                 members.add(user);
             }
         }
-        if (members.isEmpty()) throw new NoReceiversException();
-        members.add(sender);
+        return members;
+    }
+
+    private Chat findChat(User sender, Set<User> members) {
         for (Chat chat : sender.getChats()) {
             Set<User> checkMembers = chat.getMembers();
             if (checkMembers.size() == members.size() && checkMembers.containsAll(members) && members.containsAll(checkMembers)) {
-                message.setChat(chat);
-                break;
+                return chat;
             }
         }
-        if (message.getChat() == null) {
-            Chat chat = new Chat();
-            chat.setMembers(members);
-            message.setChat(chat);
-            chatService.saveChat(chat);
-        }
-        return messageRepository.save(message);
+        return null;
+    }
+
+    private Chat createChat(Set<User> members) {
+        Chat chat = new Chat();
+        chat.setMembers(members);
+        chatService.saveChat(chat);
+        return chat;
     }
 
+    @Transactional
     public Message updateMessage(String content, Long messageId) {
         if (content == null) throw new InvalidRequestException();
         if (content.isBlank()) throw new InvalidRequestException();
@@ -65,22 +180,43 @@ public class MessageService {
         Message updatedMessage = getMessage(messageId);
         updatedMessage.setContent(content);
         updatedMessage.setDateTime(LocalDateTime.now());
-        return messageRepository.save(updatedMessage);
+        Message savedMessage = messageRepository.save(updatedMessage);
+        messageJsonCache.evict(messageId);
+        recentMessagesCache.messageUpdated(savedMessage);
+        outbox.messageUpdated(savedMessage);
+        changeLog.messageChanged(savedMessage.getChat().getId(), messageId);
+        eventFanout.messageChanged(savedMessage.getChat().getId(), messageId);
+        return savedMessage;
     }
 
+    @Transactional
     public Message changeFlag(Long messageId) {
         if (!isItProperUser(messageId)) throw new AccessDeniedException();
         Message updatedMessage = getMessage(messageId);
         updatedMessage.setPermanent(!updatedMessage.isPermanent());
-        return messageRepository.save(updatedMessage);
+        Message savedMessage = messageRepository.save(updatedMessage);
+        messageJsonCache.evict(messageId);
+        recentMessagesCache.messageUpdated(savedMessage);
+        outbox.messageUpdated(savedMessage);
+        changeLog.messageChanged(savedMessage.getChat().getId(), messageId);
+        eventFanout.messageChanged(savedMessage.getChat().getId(), messageId);
+        return savedMessage;
     }
 
+    @Transactional
     public void deleteMessage(Long id) {
-        Long chatId = getMessage(id).getChat().getId();
+        Message message = getMessage(id);
+        Long chatId = message.getChat().getId();
+        outbox.messagesDeleted(List.of(id));
+        changeLog.messagesDeleted(List.of(id));
         messageRepository.deleteById(id);
+        messageJsonCache.evict(id);
+        recentMessagesCache.messageDeleted(message);
+        eventFanout.messageChanged(chatId, id);
         chatService.deleteChatIfEmpty(chatId);
     }
 
+    @Transactional
     public void deleteMyMessage(Long messageId) {
         if (!isItProperUser(messageId)) throw new AccessDeniedException();
         deleteMessage(messageId);
@@ -92,7 +228,7 @@ public class MessageService {
     }
 
     public boolean isItProperUser(Long messageId) {
-        return userService.getLoggedUser().getId().equals(getMessage(messageId).getSenderId());
+        return RequestTimings.time(Phase.MEMBERSHIP, () -> userService.getLoggedUser().getId().equals(getMessage(messageId).getSenderId()));
     }
 
     public void checkLength(int length) {
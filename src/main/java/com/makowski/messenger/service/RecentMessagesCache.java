@@ -0,0 +1,252 @@
+package com.makowski.messenger.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.repository.ChatSequenceRepository;
+import com.makowski.messenger.repository.MessageRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The latest messages of the chats read most recently, as serialized JSON, so the first page of a hot chat's history
+ * is answered without the database.
+ * <p>
+ * A chat is loaded on its first read and then kept up to date by the writes of {@link MessageService}, applied after
+ * they commit. Commits of one chat happen in sequence order, but their callbacks may not run in that order. A window
+ * missing a sequence number is read from the database until the late message arrives. A load that raced with a
+ * write to its chat is used once and not kept.
+ * <p>
+ * Memory is bounded by {@code messenger.recent-messages.per-chat} messages for each of at most
+ * {@code messenger.recent-messages.max-chats} chats; when a chat is added, the one that was read or written longest
+ * ago goes. Writes that bypass {@link MessageService}, like the removers, drop the windows of their chats.
+ */
+@Component
+public class RecentMessagesCache {
+
+    private static final int STAMPS = 1 << 12;
+    // object headers and references of a window entry, next to the characters of its JSON
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final MessageRepository messageRepository;
+    private final ChatSequenceRepository chatSequenceRepository;
+    private final ObjectWriter writer;
+    private final MeterRegistry meterRegistry;
+    private final int perChat;
+    private final int maxChats;
+
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+    // bumped by every write, so a load can tell whether its chat changed while it read the database
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+    private final AtomicLong generation = new AtomicLong();
+
+    public RecentMessagesCache(MessageRepository messageRepository, ChatSequenceRepository chatSequenceRepository,
+                               ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                               @Value("${messenger.recent-messages.per-chat:50}") int perChat,
+                               @Value("${messenger.recent-messages.max-chats:1000}") int maxChats) {
+        this.messageRepository = messageRepository;
+        this.chatSequenceRepository = chatSequenceRepository;
+        this.writer = objectMapper.writerFor(MessageDto.class);
+        this.meterRegistry = meterRegistry;
+        this.perChat = perChat;
+        this.maxChats = maxChats;
+        Gauge.builder("messenger.recent_messages.chats", windows, Map::size)
+            .description("Chats whose latest messages are held in memory")
+            .register(meterRegistry);
+        Gauge.builder("messenger.recent_messages.memory", this, RecentMessagesCache::estimatedBytes)
+            .description("Estimated heap taken by the held messages")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    // The JSON of the latest messages of the chat, oldest first. Empty when more are asked for than a window holds,
+    // or, rarely, when a write to the chat came in right after loading it.
+    public Optional<List<String>> latest(Long chatId, int limit) {
+        if (limit > perChat) return Optional.empty();
+        Window window = windows.get(chatId);
+        List<String> messages = window == null ? null : window.latest(limit);
+        meterRegistry.counter("messenger.recent_messages.requests", "result", messages != null ? "hit" : "miss").increment();
+        return Optional.ofNullable(messages != null ? messages : load(chatId).latest(limit));
+    }
+
+    public void messageSaved(Message message) {
+        MessageDto saved = MessageDto.from(message);
+        afterCommit(message.getChat().getId(), window -> window.put(saved.getSeq(), toJson(saved)));
+    }
+
+    public void messageUpdated(Message message) {
+        messageSaved(message);
+    }
+
+    public void messageDeleted(Message message) {
+        Long seq = message.getSeq();
+        afterCommit(message.getChat().getId(), window -> window.remove(seq));
+    }
+
+    public void evictChat(Long chatId) {
+        evictChats(List.of(chatId));
+    }
+
+    public void evictChats(Collection<Long> chatIds) {
+        List<Long> ids = List.copyOf(chatIds);
+        AfterTransaction.afterCompletion(() -> ids.forEach(chatId -> windows.compute(chatId, (id, window) -> {
+            stamps.incrementAndGet(stamp(chatId));
+            return null;
+        })));
+    }
+
+    // for writes that bypass the services, like the dataset generator
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        windows.clear();
+    }
+
+    long estimatedBytes() {
+        return windows.values().stream().mapToLong(Window::bytes).sum();
+    }
+
+    private Window load(Long chatId) {
+        long generation = this.generation.get();
+        long stamp = stamps.get(stamp(chatId));
+        // read first: a message that commits in between is then among the loaded ones and not taken for missing
+        long lastSeq = chatSequenceRepository.findLastSeq(chatId);
+        List<Long> ids = messageRepository.findIdsByChatIdAndSeqBefore(chatId, Long.MAX_VALUE, PageRequest.of(0, perChat));
+        List<MessageDto> messages = new ArrayList<>(messageRepository.findDtosByIdIn(ids));
+        messages.sort(Comparator.comparing(MessageDto::getSeq));
+        Window loaded = new Window(perChat, ids.size() < perChat ? 1 : messages.isEmpty() ? lastSeq + 1 : messages.get(0).getSeq());
+        for (MessageDto message : messages) loaded.put(message.getSeq(), toJson(message));
+        loaded.skipTo(lastSeq + 1);
+        Window kept = windows.compute(chatId, (id, current) -> current != null ? current
+            : this.generation.get() == generation && stamps.get(stamp(chatId)) == stamp ? loaded : null);
+        if (kept == loaded) evictLeastRecentlyUsed();
+        return loaded;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        while (windows.size() > maxChats) {
+            windows.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                .ifPresent(entry -> {
+                    if (windows.remove(entry.getKey(), entry.getValue())) {
+                        meterRegistry.counter("messenger.recent_messages.evictions").increment();
+                    }
+                });
+        }
+    }
+
+    private String toJson(MessageDto message) {
+        try {
+            return writer.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Message " + message.getId() + " could not be serialized", e);
+        }
+    }
+
+    private void afterCommit(Long chatId, Consumer<Window> change) {
+        Runnable apply = () -> windows.compute(chatId, (id, window) -> {
+            stamps.incrementAndGet(stamp(chatId));
+            if (window != null) change.accept(window);
+            return window;
+        });
+        AfterTransaction.afterCommit(apply);
+    }
+
+    private static int stamp(Long chatId) {
+        return Long.hashCode(chatId) & (STAMPS - 1);
+    }
+
+    /**
+     * The messages of one chat from {@code coveredFrom} on, by sequence number. Numbers of deleted messages are
+     * simply absent; numbers that arrived ahead of an earlier one are remembered until the gap closes.
+     */
+    static class Window {
+
+        private final int capacity;
+        private final NavigableMap<Long, String> messages = new TreeMap<>();
+        private final TreeSet<Long> early = new TreeSet<>();
+        private long coveredFrom;
+        private long nextSeq;
+        private long bytes;
+        private volatile long lastUsed = System.nanoTime();
+
+        Window(int capacity, long coveredFrom) {
+            this.capacity = capacity;
+            this.coveredFrom = coveredFrom;
+            this.nextSeq = coveredFrom;
+        }
+
+        synchronized void put(long seq, String json) {
+            if (seq < coveredFrom) return;
+            String previous = messages.put(seq, json);
+            bytes += size(json) - (previous == null ? 0 : size(previous));
+            if (seq == nextSeq) {
+                nextSeq++;
+                while (early.remove(nextSeq)) nextSeq++;
+            } else if (seq > nextSeq) {
+                early.add(seq);
+            }
+            while (messages.size() > capacity) {
+                Map.Entry<Long, String> oldest = messages.pollFirstEntry();
+                bytes -= size(oldest.getValue());
+                coveredFrom = oldest.getKey() + 1;
+            }
+            lastUsed = System.nanoTime();
+        }
+
+        synchronized void remove(long seq) {
+            String removed = messages.remove(seq);
+            if (removed != null) bytes -= size(removed);
+            lastUsed = System.nanoTime();
+        }
+
+        // the numbers up to the chat's last one at load time belong to messages deleted before it
+        synchronized void skipTo(long seq) {
+            nextSeq = Math.max(nextSeq, seq);
+            early.headSet(nextSeq).clear();
+        }
+
+        // null when the window can't tell what the latest messages are
+        synchronized List<String> latest(int limit) {
+            lastUsed = System.nanoTime();
+            if (!early.isEmpty()) return null;
+            List<String> latest = new ArrayList<>(limit);
+            for (String json : messages.descendingMap().values()) {
+                if (latest.size() == limit) break;
+                latest.add(json);
+            }
+            if (latest.size() < limit && coveredFrom > 1) return null;
+            Collections.reverse(latest);
+            return latest;
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        private static long size(String json) {
+            return ENTRY_OVERHEAD_BYTES + 2L * json.length();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.makowski.messenger.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Version counters behind the ETags of polled responses, kept in memory so a conditional GET is answered
+ * without reading the database.
+ * <ul>
+ *     <li>a chat version changes with the messages and the members of the chat,</li>
+ *     <li>a user version changes with the chat list and the contact list of the user,</li>
+ *     <li>the profiles version changes when any user is renamed or deleted, as names appear in everyone's lists.</li>
+ * </ul>
+ * Ids share a fixed number of counters, so memory doesn't grow with the data: a write to one chat may change
+ * the ETag of another chat on the same counter, which costs that chat a full response but never serves stale data.
+ * Counters are bumped after the writing transaction commits and read before the response is built, so a response
+ * is never older than its ETag. The epoch keeps ETags of another instance or of an earlier run from matching.
+ */
+@Component
+public class ResourceVersions {
+
+    private static final int COUNTERS = 1 << 16;
+
+    private final AtomicLongArray chats = new AtomicLongArray(COUNTERS);
+    private final AtomicLongArray users = new AtomicLongArray(COUNTERS);
+    private final AtomicLong profiles = new AtomicLong();
+    private volatile String epoch = newEpoch();
+
+    public String chatTag(Long chatId) {
+        return tag("c" + chatId + "." + chats.get(counter(chatId)));
+    }
+
+    public String chatListTag(Long userId) {
+        return tag("l" + userId + "." + users.get(counter(userId)) + "." + profiles.get());
+    }
+
+    public String contactsTag(Long userId) {
+        return tag("u" + userId + "." + users.get(counter(userId)) + "." + profiles.get());
+    }
+
+    public void chatChanged(Long chatId) {
+        chatsChanged(List.of(chatId));
+    }
+
+    public void chatsChanged(Collection<Long> chatIds) {
+        List<Long> ids = List.copyOf(chatIds);
+        AfterTransaction.afterCompletion(() -> ids.forEach(id -> chats.incrementAndGet(counter(id))));
+    }
+
+    public void userChanged(Long userId) {
+        usersChanged(List.of(userId));
+    }
+
+    public void usersChanged(Collection<Long> userIds) {
+        List<Long> ids = List.copyOf(userIds);
+        AfterTransaction.afterCompletion(() -> ids.forEach(id -> users.incrementAndGet(counter(id))));
+    }
+
+    public void profilesChanged() {
+        AfterTransaction.afterCompletion(profiles::incrementAndGet);
+    }
+
+    // for writes that bypass the services, like the dataset generator
+    public void invalidateAll() {
+        epoch = newEpoch();
+    }
+
+    private String tag(String version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    private static int counter(Long id) {
+        return Long.hashCode(id) & (COUNTERS - 1);
+    }
+
+    private static String newEpoch() {
+        return Long.toString(UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE, 36);
+    }
+}
@@ -0,0 +1,33 @@
+package com.makowski.messenger.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Service;
+
+import com.makowski.messenger.entity.Chat;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.AllArgsConstructor;
+
+@Service
+@AllArgsConstructor
+public class SecondLevelCacheService {
+
+    public static final String CHAT_MEMBERS_REGION = Chat.class.getName() + ".members";
+
+    private EntityManagerFactory entityManagerFactory;
+
+    // chat_members rows written through User.chats (the other owning side of the join table)
+    // don't invalidate Chat.members, so callers evict those collections explicitly
+    public void evictChatMembers(Collection<Long> chatIds) {
+        List<Long> ids = List.copyOf(chatIds);
+        AfterTransaction.afterCompletion(() -> evict(ids));
+    }
+
+    private void evict(List<Long> chatIds) {
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        chatIds.forEach(chatId -> cache.evictCollectionData(CHAT_MEMBERS_REGION, chatId));
+    }
+}
@@ -0,0 +1,118 @@
+package com.makowski.messenger.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.makowski.messenger.dto.ChangeDto;
+import com.makowski.messenger.dto.MessageJson;
+import com.makowski.messenger.dto.SyncDto;
+import com.makowski.messenger.entity.ChangeLogEntry;
+import com.makowski.messenger.exception.InvalidRequestException;
+import com.makowski.messenger.repository.ChangeLogRepository;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Delta sync over the change log written by {@link ChangeLog}. A token is the position of the last entry a client
+ * has seen: the commit position of its transaction and its id, written "position.id", or just "position" for all
+ * entries up to it. A request reads the entries after the token through the (user_id, commit_seq, id) index, so its
+ * cost depends on the number of changes since the token rather than on the size of the chats. Positions follow
+ * the commit order, so an entry that commits late still comes after the tokens handed out before it.
+ */
+@Service
+@AllArgsConstructor
+public class SyncService {
+
+    static final int PAGE_SIZE = 500;
+
+    private ChangeLogRepository changeLogRepository;
+    private CommitSequence commitSequence;
+    private ChatService chatService;
+    private UserService userService;
+
+    // Without a token there is nothing to compare with: the client gets a token to start from, and loads its chats
+    // after taking it. Changes in between show up in both, which applying them again handles.
+    public SyncDto sync(String token) {
+        if (token == null) return new SyncDto(currentToken(), false, false, List.of());
+        Position since = Position.parse(token);
+        Long oldest = changeLogRepository.findMinCommitSeq();
+        if (oldest != null && since.commitSeq() < oldest - 1) return new SyncDto(currentToken(), false, true, List.of());
+
+        Long userId = userService.getLoggedUser().getId();
+        List<ChangeLogEntry> entries = changeLogRepository.findChanges(userId, since.commitSeq(), since.id(), PageRequest.of(0, PAGE_SIZE + 1));
+        boolean more = entries.size() > PAGE_SIZE;
+        if (more) entries = entries.subList(0, PAGE_SIZE);
+        String next = entries.isEmpty() ? token : Position.of(entries.get(entries.size() - 1)).toString();
+        return new SyncDto(next, more, false, changes(entries));
+    }
+
+    // Only the last entry of every message and of the members of every chat counts, and a deleted chat replaces
+    // the other entries of the chat. Messages are sent as they are now, not as they were when logged.
+    private List<ChangeDto> changes(List<ChangeLogEntry> entries) {
+        Map<String, ChangeLogEntry> latest = new LinkedHashMap<>();
+        for (ChangeLogEntry entry : entries) {
+            if (entry.getType() == ChangeLogEntry.Type.CHAT_DELETED) {
+                latest.values().removeIf(earlier -> earlier.getChatId().equals(entry.getChatId()));
+                latest.put("c" + entry.getChatId(), entry);
+            } else if (entry.getType() == ChangeLogEntry.Type.MEMBERS_CHANGED) {
+                latest.remove("n" + entry.getChatId());
+                latest.put("n" + entry.getChatId(), entry);
+            } else {
+                latest.remove("m" + entry.getMessageId());
+                latest.put("m" + entry.getMessageId(), entry);
+            }
+        }
+        List<Long> messageIds = latest.values().stream()
+            .filter(entry -> entry.getType() == ChangeLogEntry.Type.MESSAGE)
+            .map(ChangeLogEntry::getMessageId)
+            .toList();
+        Map<Long, String> messages = messageIds.isEmpty() ? Map.of() : chatService.getMessagesJson(messageIds);
+        List<ChangeDto> changes = new ArrayList<>(latest.size());
+        for (ChangeLogEntry entry : latest.values()) {
+            MessageJson message = null;
+            if (entry.getType() == ChangeLogEntry.Type.MESSAGE) {
+                String json = messages.get(entry.getMessageId());
+                // deleted since, its tombstone comes later in the log
+                if (json == null) continue;
+                message = new MessageJson(json);
+            }
+            changes.add(new ChangeDto(entry.getType(), entry.getChatId(), entry.getMessageId(), message));
+        }
+        return changes;
+    }
+
+    private String currentToken() {
+        return new Position(commitSequence.lastPosition(), Long.MAX_VALUE).toString();
+    }
+
+    // A token of the old format, an entry id, still works: the entries written before positions existed have
+    // their id as position.
+    private record Position(long commitSeq, long id) {
+
+        static Position of(ChangeLogEntry entry) {
+            return new Position(entry.getCommitSeq(), entry.getId());
+        }
+
+        static Position parse(String token) {
+            try {
+                int dot = token.indexOf('.');
+                Position position = dot < 0 ? new Position(Long.parseLong(token), Long.MAX_VALUE)
+                    : new Position(Long.parseLong(token.substring(0, dot)), Long.parseLong(token.substring(dot + 1)));
+                if (position.commitSeq() < 0 || position.id() < 0) throw new InvalidRequestException();
+                return position;
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return id == Long.MAX_VALUE ? Long.toString(commitSeq) : commitSeq + "." + id;
+        }
+    }
+}
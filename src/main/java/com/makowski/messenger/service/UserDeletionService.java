@@ -0,0 +1,136 @@
+package com.makowski.messenger.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.makowski.messenger.broker.EventFanout;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.entity.UserDeletionJob;
+import com.makowski.messenger.exception.EntityNotFoundException;
+import com.makowski.messenger.outbox.Outbox;
+import com.makowski.messenger.repository.ChatRepository;
+import com.makowski.messenger.repository.ChatSequenceRepository;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.repository.UserDeletionJobRepository;
+import com.makowski.messenger.repository.UserRepository;
+
+import lombok.AllArgsConstructor;
+
+@Service
+@AllArgsConstructor
+public class UserDeletionService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private UserDeletionJobRepository userDeletionJobRepository;
+    private UserRepository userRepository;
+    private MessageRepository messageRepository;
+    private ChatRepository chatRepository;
+    private ChatSequenceRepository chatSequenceRepository;
+    private ChatService chatService;
+    private ChangeLog changeLog;
+    private Outbox outbox;
+    private SecondLevelCacheService secondLevelCacheService;
+    private RecentMessagesCache recentMessagesCache;
+    private EventFanout eventFanout;
+
+    public List<UserDeletionJob> getPendingJobs() {
+        return userDeletionJobRepository.findAllByOrderByIdAsc();
+    }
+
+    // Every chunk re-reads what is left to delete and stores the progress in the same transaction,
+    // so a job interrupted by a restart continues from its last committed chunk. A phase ends with
+    // the first chunk that finds nothing left to delete.
+    @Transactional
+    public boolean processNextChunk(Long jobId) {
+        UserDeletionJob job = userDeletionJobRepository.findById(jobId)
+            .orElseThrow(() -> new EntityNotFoundException(jobId, UserDeletionJob.class));
+        int processed = switch (job.getPhase()) {
+            case MESSAGES -> deleteMessages(job.getUserId());
+            case MEMBERSHIPS -> leaveChats(job.getUserId());
+            case CONTACTS -> removeFromContactLists(job);
+            case ACCOUNT -> deleteAccount(job.getUserId());
+        };
+        if (job.getPhase() == UserDeletionJob.Phase.ACCOUNT) {
+            userDeletionJobRepository.delete(job);
+            return true;
+        }
+        job.setProcessed(job.getProcessed() + processed);
+        job.setUpdatedAt(LocalDateTime.now());
+        if (processed == 0) {
+            job.setPhase(UserDeletionJob.Phase.values()[job.getPhase().ordinal() + 1]);
+        }
+        userDeletionJobRepository.save(job);
+        return false;
+    }
+
+    private int deleteMessages(Long userId) {
+        List<Long> messageIds = messageRepository.findIdsBySenderId(userId, PageRequest.of(0, CHUNK_SIZE));
+        if (messageIds.isEmpty()) return 0;
+        List<Long> chatIds = messageRepository.findChatIdsByIdIn(messageIds);
+        outbox.messagesDeleted(messageIds);
+        changeLog.messagesDeleted(messageIds);
+        messageRepository.deleteByIdIn(messageIds);
+        recentMessagesCache.evictChats(chatIds);
+        eventFanout.chatsChanged(chatIds);
+        chatIds.forEach(chatService::deleteChatIfEmpty);
+        return messageIds.size();
+    }
+
+    // Chats that would be left with a single member are removed together with their messages. Such a chat
+    // may hold any number of messages, so it gets a chunk of its own: the chunk ends before it when other
+    // chats were left already, and right after it otherwise.
+    private int leaveChats(Long userId) {
+        List<Long> chatIds = new ArrayList<>();
+        for (Long chatId : chatRepository.findIdsByMemberId(userId, PageRequest.of(0, CHUNK_SIZE))) {
+            // messages of the user still being inserted into the chat go in before the user leaves it
+            chatSequenceRepository.lock(chatId);
+            if (chatRepository.countMembers(chatId) <= 2) {
+                if (chatIds.isEmpty()) {
+                    chatService.deleteChat(chatId);
+                    chatIds.add(chatId);
+                }
+                break;
+            }
+            chatRepository.deleteMember(chatId, userId);
+            chatSequenceRepository.deleteReadPosition(chatId, userId);
+            changeLog.membersChanged(chatId);
+            chatIds.add(chatId);
+        }
+        secondLevelCacheService.evictChatMembers(chatIds);
+        eventFanout.chatsChanged(chatIds);
+        eventFanout.profilesChanged();
+        return chatIds.size();
+    }
+
+    // A chunk goes through the next CHUNK_SIZE users, whether the user is on their list or not, as the lists can't
+    // be searched. A contact added meanwhile can't be the user, who is already marked as deleted.
+    private int removeFromContactLists(UserDeletionJob job) {
+        List<User> users = userRepository.findByIdGreaterThanOrderByIdAsc(job.getLastUserId(), PageRequest.of(0, CHUNK_SIZE));
+        List<User> changed = new ArrayList<>();
+        for (User user : users) {
+            if (user.getContactList() == null || !user.getContactList().contains(job.getUserId())) continue;
+            Set<Long> contactList = new HashSet<>(user.getContactList());
+            contactList.remove(job.getUserId());
+            user.setContactList(contactList);
+            changed.add(user);
+        }
+        if (!users.isEmpty()) job.setLastUserId(users.get(users.size() - 1).getId());
+        userRepository.saveAll(changed);
+        eventFanout.usersChanged(changed.stream().map(User::getId).toList());
+        return users.size();
+    }
+
+    private int deleteAccount(Long userId) {
+        userRepository.deleteById(userId);
+        eventFanout.profilesChanged();
+        return 1;
+    }
+}
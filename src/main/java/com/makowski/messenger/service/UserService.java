@@ -9,29 +9,42 @@ import java.util.Set;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.makowski.messenger.broker.EventFanout;
 import com.makowski.messenger.dto.ChatDto;
 import com.makowski.messenger.dto.PasswordDto;
 import com.makowski.messenger.dto.UserDto;
 import com.makowski.messenger.entity.Chat;
 import com.makowski.messenger.entity.User;
+import com.makowski.messenger.entity.UserDeletionJob;
 import com.makowski.messenger.exception.EntityNotFoundException;
 import com.makowski.messenger.exception.InvalidRequestException;
 import com.makowski.messenger.exception.NoSuchUserException;
 import com.makowski.messenger.exception.PasswordNotEqualsException;
 import com.makowski.messenger.exception.AccessDeniedException;
 import com.makowski.messenger.exception.EmptyListException;
+import com.makowski.messenger.monitoring.RequestTimings;
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
+import com.makowski.messenger.repository.UserDeletionJobRepository;
 import com.makowski.messenger.repository.UserRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 
 @Service
 @AllArgsConstructor
 public class UserService {
+
+    private static final String USERS_CHATS_TIMER = "messenger.user.chats";
+    private static final String FIND_USER_TIMER = "messenger.user.search";
  
     private UserRepository userRepository;
     private BCryptPasswordEncoder bCryptPasswordEncoder;
-    
+    private UserDeletionJobRepository userDeletionJobRepository;
+    private MeterRegistry meterRegistry;
+    private ResourceVersions resourceVersions;
+    private EventFanout eventFanout;
 
     public UserDto createUser(User user) {
         if (userRepository.existsByUsernameIgnoreCase(user.getUsername()))
@@ -47,11 +60,12 @@ public class UserService {
     }
 
     public boolean existsById(Long id) {
-        return userRepository.existsById(id);
+        return userRepository.existsByIdAndDeletedFalse(id);
     }
 
     public User findByUsername(String username) {
-        Optional<User> user = userRepository.findByUsername(username);
+        Optional<User> user = RequestTimings.time(Phase.USER_LOOKUP,
+                () -> userRepository.findByUsername(username).filter(found -> !found.isDeleted()));
         if (user.isPresent()) return user.get();
             else throw new EntityNotFoundException(username, User.class);
     }
@@ -65,6 +79,7 @@ public class UserService {
         updatedUser.setFirstName(userDto.getFirstName());
         updatedUser.setSurname(userDto.getSurname());
         saveUser(updatedUser);
+        eventFanout.profilesChanged();
         return getUserDto(updatedUser.getId());
     }
 
@@ -78,8 +93,14 @@ public class UserService {
         saveUser(user);
     }
 
+    // the account is only marked as deleted here, DeletedUsersRemover removes its data in the background
+    @Transactional
     public void deleteUser() {
-        userRepository.deleteById(getLoggedUser().getId());
+        User user = getLoggedUser();
+        user.setDeleted(true);
+        saveUser(user);
+        userDeletionJobRepository.save(new UserDeletionJob(user.getId()));
+        eventFanout.profilesChanged();
     }
 
     public User getUser(Long id) {
@@ -92,7 +113,19 @@ public class UserService {
         return new UserDto(id, user.getUsername(), user.getFirstName(), user.getSurname());
     }
 
-    public List<ChatDto> getUsersChats() {             
+    public String getMyChatsTag() {
+        return resourceVersions.chatListTag(getLoggedUser().getId());
+    }
+
+    public String getMyContactsTag() {
+        return resourceVersions.contactsTag(getLoggedUser().getId());
+    }
+
+    public List<ChatDto> getUsersChats() {
+        return meterRegistry.timer(USERS_CHATS_TIMER).record(this::getLoggedUsersChats);
+    }
+
+    private List<ChatDto> getLoggedUsersChats() {
         List<Chat> chats = getLoggedUser().getChats();
         if (chats.isEmpty()) {
             throw new EmptyListException("Chat");
@@ -110,8 +143,13 @@ public class UserService {
 
     public Set<UserDto> findUser(String phrase) {
         if (phrase.isBlank()) throw new InvalidRequestException("Search phrase cannot be empty");
+        return meterRegistry.timer(FIND_USER_TIMER).record(() -> searchUsers(phrase));
+    }
+
+    private Set<UserDto> searchUsers(String phrase) {
         Set<UserDto> results = new HashSet<>();    
         for (User user : userRepository.findAll()) {
+            if (user.isDeleted()) continue;
             String name = user.getUsername() + " " + user.getFirstName() + " " + user.getSurname();
             if (name.toUpperCase().contains(phrase.toUpperCase())) {
                 results.add(getUserDto(user.getId()));
@@ -122,24 +160,26 @@ public class UserService {
     }
 
     public Set<UserDto> addToContactList(Long contactId) {
-        if (!userRepository.existsById(contactId))
+        if (!userRepository.existsByIdAndDeletedFalse(contactId))
             throw new EntityNotFoundException(contactId, User.class);
         User user = getLoggedUser();
         if (user.getId().equals(contactId))
             throw new InvalidRequestException("Owner of the list cannot be on the list");
         user.getContactList().add(contactId);
         saveUser(user);
+        eventFanout.userChanged(user.getId());
         return getMyContactList();
     }
 
     public Set<UserDto> deleteFromContactList(Long contactId) {
-        if (!userRepository.existsById(contactId))
+        if (!userRepository.existsByIdAndDeletedFalse(contactId))
             throw new EntityNotFoundException(contactId, User.class);
         User user = getLoggedUser();
         if (!user.getContactList().contains(contactId))
             throw new InvalidRequestException("There is no such user on contact list");
         user.getContactList().remove(contactId);
         saveUser(user);
+        eventFanout.userChanged(user.getId());
         return getMyContactList();
     }
 
@@ -0,0 +1,7 @@
+-- the position of the transaction that wrote a batch, in commit order; existing batches count as delivered
+alter table broker_event add column commit_seq bigint;
+update broker_event set commit_seq = 0;
+alter table broker_event alter column commit_seq set not null;
+
+-- every node polls in commit order
+create index idx_broker_event_commit_seq on broker_event (commit_seq, id);
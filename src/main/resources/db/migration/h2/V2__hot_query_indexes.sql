@@ -0,0 +1,8 @@
+-- OldMessagesRemover: chats holding non-permanent messages older than the expiry date
+create index idx_message_permanent_date_time on message (permanent, date_time);
+
+-- message lookups by chat and the per-chat expiry pass
+create index idx_message_chat_permanent_date_time on message (chat_id, permanent, date_time);
+
+-- chats of a user (User.chats); the primary key only covers lookups by chat_id
+create index idx_chat_members_user_id on chat_members (user_id);
@@ -0,0 +1,15 @@
+alter table users add column deleted boolean not null default false;
+
+create table user_deletion_job (
+    id bigint generated by default as identity,
+    user_id bigint not null,
+    phase varchar(32) not null,
+    processed bigint not null,
+    created_at timestamp(6) not null,
+    updated_at timestamp(6) not null,
+    primary key (id),
+    constraint uk_user_deletion_job_user_id unique (user_id)
+);
+
+-- messages of a user are deleted in chunks by DeletedUsersRemover
+create index idx_message_sender_id on message (sender_id);
@@ -0,0 +1,7 @@
+-- the position of the transaction that wrote an event, in commit order; events not yet published go first
+alter table outbox_event add column commit_seq bigint;
+update outbox_event set commit_seq = 0;
+alter table outbox_event modify commit_seq bigint not null;
+
+-- the relay reads the outbox in commit order
+create index idx_outbox_event_commit_seq on outbox_event (commit_seq, id);
@@ -0,0 +1,35 @@
+create table chat (
+    id bigint not null auto_increment,
+    primary key (id)
+) engine=InnoDB;
+
+create table users (
+    id bigint not null auto_increment,
+    first_name varchar(255) not null,
+    password varchar(255) not null,
+    surname varchar(255) not null,
+    username varchar(255) not null,
+    contact_list varbinary(255),
+    primary key (id),
+    constraint uk_users_username unique (username)
+) engine=InnoDB;
+
+create table chat_members (
+    chat_id bigint not null,
+    user_id bigint not null,
+    primary key (chat_id, user_id),
+    constraint fk_chat_members_chat foreign key (chat_id) references chat (id),
+    constraint fk_chat_members_user foreign key (user_id) references users (id)
+) engine=InnoDB;
+
+create table message (
+    message_id bigint not null auto_increment,
+    sender_id bigint not null,
+    receivers varbinary(255) not null,
+    permanent bit,
+    date_time datetime(6),
+    content varchar(255) not null,
+    chat_id bigint,
+    primary key (message_id),
+    constraint fk_message_chat foreign key (chat_id) references chat (id)
+) engine=InnoDB;
@@ -0,0 +1,15 @@
+alter table users add column deleted bit not null default 0;
+
+create table user_deletion_job (
+    id bigint not null auto_increment,
+    user_id bigint not null,
+    phase varchar(32) not null,
+    processed bigint not null,
+    created_at datetime(6) not null,
+    updated_at datetime(6) not null,
+    primary key (id),
+    constraint uk_user_deletion_job_user_id unique (user_id)
+) engine=InnoDB;
+
+-- messages of a user are deleted in chunks by DeletedUsersRemover
+create index idx_message_sender_id on message (sender_id);
@@ -0,0 +1,36 @@
+alter table message add column seq bigint;
+
+-- existing messages are numbered in id order
+update message m
+join (select message_id, row_number() over (partition by chat_id order by message_id) as rn from message) r
+on m.message_id = r.message_id
+set m.seq = r.rn;
+
+-- the last sequence number taken in a chat; its row lock orders concurrent senders of that chat only
+create table chat_sequence (
+    chat_id bigint not null,
+    last_seq bigint not null,
+    primary key (chat_id),
+    constraint fk_chat_sequence_chat foreign key (chat_id) references chat (id) on delete cascade
+) engine=InnoDB;
+
+insert into chat_sequence (chat_id, last_seq)
+select c.id, coalesce(max(m.seq), 0) from chat c left join message m on m.chat_id = c.id group by c.id;
+
+-- the last sequence number a member has read; existing chats start out read
+create table chat_read (
+    chat_id bigint not null,
+    user_id bigint not null,
+    last_read_seq bigint not null,
+    primary key (chat_id, user_id),
+    constraint fk_chat_read_chat foreign key (chat_id) references chat (id) on delete cascade
+) engine=InnoDB;
+
+insert into chat_read (chat_id, user_id, last_read_seq)
+select cm.chat_id, cm.user_id, s.last_seq from chat_members cm join chat_sequence s on s.chat_id = cm.chat_id;
+
+-- unread counts of a user (GET /chat/unread); the primary key only covers lookups by chat_id
+create index idx_chat_read_user_id on chat_read (user_id);
+
+-- history paging and resync by sequence number; also makes a sequence number taken twice fail the insert
+create unique index uk_message_chat_id_seq on message (chat_id, seq);
@@ -0,0 +1,10 @@
+-- message and chat events, written in the transaction of the change and removed by OutboxRelay once published
+create table outbox_event (
+    id bigint not null auto_increment,
+    type varchar(32) not null,
+    chat_id bigint not null,
+    message_id bigint,
+    payload varchar(4000),
+    created_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
@@ -0,0 +1,11 @@
+-- event batches between nodes for messenger.broker=database, read by every node and removed after a minute
+create table broker_event (
+    id bigint not null auto_increment,
+    origin varchar(64) not null,
+    payload varchar(4000) not null,
+    created_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
+
+-- the pruning of old batches
+create index idx_broker_event_created_at on broker_event (created_at);
@@ -0,0 +1,14 @@
+-- the position of the transaction that wrote an entry, in commit order; existing entries keep their id as position
+alter table change_log add column commit_seq bigint;
+update change_log set commit_seq = id;
+alter table change_log modify commit_seq bigint not null;
+
+-- delta sync of a user by position; replaces the index by id
+drop index idx_change_log_user_id_id on change_log;
+create index idx_change_log_user_id_commit_seq on change_log (user_id, commit_seq, id);
+
+-- the oldest remaining position, checked on every sync
+create index idx_change_log_commit_seq on change_log (commit_seq);
+
+-- the last position taken; new positions start after the existing entries
+insert into id_block (name, next_id) select 'commit', coalesce(max(id), 0) + 1 from change_log;
@@ -0,0 +1,2 @@
+-- how far the CONTACTS phase of a deletion job went through the users, in id order
+alter table user_deletion_job add column last_user_id bigint not null default 0;
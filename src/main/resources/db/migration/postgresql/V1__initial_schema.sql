@@ -0,0 +1,35 @@
+create table chat (
+    id bigint generated by default as identity,
+    primary key (id)
+);
+
+create table users (
+    id bigint generated by default as identity,
+    first_name varchar(255) not null,
+    password varchar(255) not null,
+    surname varchar(255) not null,
+    username varchar(255) not null,
+    contact_list bigint array,
+    primary key (id),
+    constraint uk_users_username unique (username)
+);
+
+create table chat_members (
+    chat_id bigint not null,
+    user_id bigint not null,
+    primary key (chat_id, user_id),
+    constraint fk_chat_members_chat foreign key (chat_id) references chat (id),
+    constraint fk_chat_members_user foreign key (user_id) references users (id)
+);
+
+create table message (
+    message_id bigint generated by default as identity,
+    sender_id bigint not null,
+    receivers bigint array not null,
+    permanent boolean,
+    date_time timestamp(6),
+    content varchar(255) not null,
+    chat_id bigint,
+    primary key (message_id),
+    constraint fk_message_chat foreign key (chat_id) references chat (id)
+);
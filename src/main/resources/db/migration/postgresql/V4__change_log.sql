@@ -0,0 +1,13 @@
+-- one row per change and chat member, read by GET /sync; rows outlive the messages and chats they describe
+create table change_log (
+    id bigint generated by default as identity,
+    user_id bigint not null,
+    chat_id bigint not null,
+    message_id bigint,
+    type varchar(32) not null,
+    created_at timestamp(6) not null,
+    primary key (id)
+);
+
+create index idx_change_log_user_id_id on change_log (user_id, id);
+create index idx_change_log_created_at on change_log (created_at);
@@ -0,0 +1,8 @@
+-- the next free id per sequence; nodes reserve ids in blocks, so a message has its id before it is inserted
+create table id_block (
+    name varchar(64) not null,
+    next_id bigint not null,
+    primary key (name)
+);
+
+insert into id_block (name, next_id) select 'message', coalesce(max(message_id), 0) + 1 from message;
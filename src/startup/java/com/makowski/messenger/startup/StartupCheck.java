@@ -0,0 +1,54 @@
+package com.makowski.messenger.startup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.makowski.messenger.MessengerApplication;
+
+/**
+ * Measures the startup time of the application with the fast-startup profile in a fresh JVM and writes it to
+ * {@code startup.report}. It only reports by default; with {@code startup.max-ms} above 0 it exits with 1 when
+ * startup takes longer. Set the limit to a few times the usual startup time of the machine running the check.
+ */
+public final class StartupCheck {
+
+    private StartupCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long maxMillis = Long.getLong("startup.max-ms", 0);
+        AtomicReference<Duration> startupTime = new AtomicReference<>();
+        ApplicationListener<ApplicationReadyEvent> listener = event -> startupTime.set(event.getTimeTaken());
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MessengerApplication.class)
+                .profiles("fast-startup")
+                .properties("server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_ON_EXIT=FALSE",
+                            "spring.h2.console.enabled=false",
+                            "logging.level.root=WARN")
+                .listeners(listener)
+                .run(args)) {
+            // closed right away, only the time until it is ready counts
+        }
+
+        long millis = startupTime.get().toMillis();
+        StringBuilder text = new StringBuilder(String.format("Startup with the fast-startup profile took %d ms%n", millis));
+        int status = 0;
+        if (maxMillis > 0 && millis > maxMillis) {
+            text.append(String.format("Startup is above %d ms%n", maxMillis));
+            status = 1;
+        }
+        System.out.print(text);
+        Path file = Path.of(System.getProperty("startup.report", "startup-report.txt"));
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+        System.exit(status);
+    }
+}
@@ -0,0 +1,27 @@
+package com.makowski.messenger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the application with the fast-startup profile. Its startup time is measured by the startup-check profile,
+ * outside of the test suite.
+ */
+class FastStartupProfileTest {
+
+    @Test
+    void start_KeepsScheduledJobsEager_WithFastStartupProfile() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MessengerApplication.class)
+                .profiles("fast-startup")
+                .properties("server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_ON_EXIT=FALSE",
+                            "spring.h2.console.enabled=false")
+                .run()) {
+
+            assertTrue(context.getBeanFactory().containsSingleton("oldMessagesRemover"), "Scheduled jobs must not be lazy");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.makowski.messenger.broker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrokerSchedulerTest {
+
+    @Test
+    void start_RunsTaskAgain_WhenItFailed() throws InterruptedException {
+        BrokerScheduler scheduler = new BrokerScheduler();
+        CountDownLatch runs = new CountDownLatch(3);
+        scheduler.scheduleWithFixedDelay("failing", () -> {
+            runs.countDown();
+            throw new IllegalStateException("broker down");
+        }, 10);
+
+        scheduler.start();
+        try {
+            assertTrue(runs.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.stop();
+        }
+        assertFalse(scheduler.isRunning());
+    }
+
+    @Test
+    void start_RunsTasksOfTheBroker_WhileAnotherOneBlocks() throws InterruptedException {
+        BrokerScheduler scheduler = new BrokerScheduler();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch flushed = new CountDownLatch(2);
+        scheduler.scheduleWithFixedDelay("poll", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 10);
+        scheduler.scheduleWithFixedDelay("flush", flushed::countDown, 10);
+
+        scheduler.start();
+        try {
+            assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            scheduler.stop();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.makowski.messenger.broker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.entity.BrokerEvent;
+import com.makowski.messenger.repository.BrokerEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseEventBrokerTest {
+
+    @Mock
+    BrokerEventRepository brokerEventRepository;
+    @Mock
+    BrokerScheduler brokerScheduler;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    List<EventBatch> received = new ArrayList<>();
+    DatabaseEventBroker broker;
+
+    @BeforeEach
+    void setUp() {
+        when(brokerEventRepository.findMaxCommitSeq()).thenReturn(5L);
+        broker = new DatabaseEventBroker(brokerEventRepository, objectMapper, brokerScheduler, 200, 60000);
+        broker.subscribe(received::add);
+    }
+
+    @Test
+    void poll_StartsAfterNewestPosition_WhenNodeStarts() {
+        broker.poll();
+
+        verify(brokerEventRepository).findAfter(eq(5L), eq(Long.MAX_VALUE), any());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void poll_DeliversRowWithLowerId_WhenItsTransactionCommittedLater() throws Exception {
+        EventBatch first = batch(1L);
+        EventBatch late = batch(2L);
+        when(brokerEventRepository.findAfter(eq(5L), eq(Long.MAX_VALUE), any())).thenReturn(List.of(event(11L, 6L, first)));
+        when(brokerEventRepository.findAfter(eq(6L), eq(11L), any())).thenReturn(List.of(event(10L, 7L, late)));
+
+        broker.poll();
+        broker.poll();
+
+        assertEquals(List.of(first, late), received);
+    }
+
+    private BrokerEvent event(Long id, long commitSeq, EventBatch batch) throws Exception {
+        BrokerEvent event = new BrokerEvent("b", objectMapper.writeValueAsString(batch), commitSeq);
+        event.setId(id);
+        return event;
+    }
+
+    private EventBatch batch(Long chatId) {
+        return new EventBatch("b", Set.of(chatId), Set.of(), Set.of(), false, false);
+    }
+}
@@ -0,0 +1,171 @@
+package com.makowski.messenger.broker;
+
+import com.makowski.messenger.cluster.LocalNode;
+import com.makowski.messenger.service.MessageJsonCache;
+import com.makowski.messenger.service.RecentMessagesCache;
+import com.makowski.messenger.service.ResourceVersions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventFanoutTest {
+
+    @Mock
+    ResourceVersions resourceVersions;
+    @Mock
+    MessageJsonCache messageJsonCache;
+    @Mock
+    RecentMessagesCache recentMessagesCache;
+
+    RecordingBroker broker = new RecordingBroker();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    EventFanout eventFanout;
+
+    @BeforeEach
+    void setUp() {
+        eventFanout = new EventFanout(broker, resourceVersions, messageJsonCache, recentMessagesCache, meterRegistry, new LocalNode("a"),
+            new BrokerScheduler(), 100);
+    }
+
+    @Test
+    void flush_PublishesEveryIdOnce_WhenChangedSeveralTimes() {
+        eventFanout.messageChanged(1L, 10L);
+        eventFanout.messageChanged(1L, 10L);
+        eventFanout.chatChanged(1L);
+        eventFanout.usersChanged(List.of(5L, 6L));
+
+        eventFanout.flush();
+
+        assertEquals(List.of(new EventBatch("a", Set.of(1L), Set.of(5L, 6L), Set.of(10L), false, false)), broker.published);
+        assertEquals(4, meterRegistry.counter("messenger.broker.published").count());
+    }
+
+    @Test
+    void changes_BumpLocalVersions() {
+        eventFanout.messageChanged(1L, 10L);
+        eventFanout.chatsChanged(List.of(2L));
+        eventFanout.userChanged(5L);
+        eventFanout.profilesChanged();
+
+        verify(resourceVersions).chatChanged(1L);
+        verify(resourceVersions).chatsChanged(List.of(2L));
+        verify(resourceVersions).usersChanged(List.of(5L));
+        verify(resourceVersions).profilesChanged();
+    }
+
+    @Test
+    void flush_PublishesProfilesFlag_WhenProfilesChanged() {
+        eventFanout.profilesChanged();
+
+        eventFanout.flush();
+
+        assertEquals(List.of(new EventBatch("a", Set.of(), Set.of(), Set.of(), true, false)), broker.published);
+    }
+
+    @Test
+    void flush_PublishesAllFlagInsteadOfIds_WhenMoreThanMaxPendingIdsWaited() {
+        broker.failing = true;
+        LongStream.rangeClosed(1, EventFanout.MAX_PENDING + 1).forEach(chatId -> eventFanout.chatChanged(chatId));
+        eventFanout.flush();
+        eventFanout.chatChanged(0L);
+
+        broker.failing = false;
+        eventFanout.flush();
+
+        assertEquals(List.of(new EventBatch("a", Set.of(), Set.of(), Set.of(), false, true)), broker.published);
+    }
+
+    @Test
+    void flush_PublishesNothing_WhenNothingChanged() {
+        eventFanout.flush();
+
+        assertTrue(broker.published.isEmpty());
+    }
+
+    @Test
+    void flush_SplitsIntoBatches_WhenMoreIdsThanMaxBatchSize() {
+        LongStream.rangeClosed(1, EventFanout.MAX_BATCH_SIZE + 1).forEach(chatId -> eventFanout.chatChanged(chatId));
+
+        eventFanout.flush();
+
+        assertEquals(2, broker.published.size());
+        assertEquals(EventFanout.MAX_BATCH_SIZE, broker.published.get(0).size());
+        assertEquals(Set.of(EventFanout.MAX_BATCH_SIZE + 1L), broker.published.get(1).chatIds());
+    }
+
+    @Test
+    void flush_KeepsBatchForNextFlush_WhenBrokerFails() {
+        eventFanout.chatChanged(1L);
+        broker.failing = true;
+
+        eventFanout.flush();
+        broker.failing = false;
+        eventFanout.flush();
+
+        assertEquals(List.of(new EventBatch("a", Set.of(1L), Set.of(), Set.of(), false, false)), broker.published);
+        assertEquals(1, meterRegistry.counter("messenger.broker.failures", "broker", "recording").count());
+    }
+
+    @Test
+    void receive_InvalidatesLocalState_WhenBatchComesFromAnotherNode() {
+        broker.listener.accept(new EventBatch("b", Set.of(1L), Set.of(5L), Set.of(10L), false, false));
+
+        verify(resourceVersions).chatsChanged(Set.of(1L));
+        verify(resourceVersions).usersChanged(Set.of(5L));
+        verify(messageJsonCache).evict(10L);
+        verify(recentMessagesCache).evictChats(Set.of(1L));
+        verify(resourceVersions, never()).profilesChanged();
+        verify(resourceVersions, never()).invalidateAll();
+    }
+
+    @Test
+    void receive_DropsEverything_WhenBatchHasAllFlag() {
+        broker.listener.accept(new EventBatch("b", Set.of(), Set.of(), Set.of(), true, true));
+
+        verify(resourceVersions).invalidateAll();
+        verify(resourceVersions).profilesChanged();
+        verify(messageJsonCache).clear();
+        verify(recentMessagesCache).invalidateAll();
+    }
+
+    @Test
+    void receive_IgnoresBatch_WhenItComesFromThisNode() {
+        broker.listener.accept(new EventBatch("a", Set.of(1L), Set.of(5L), Set.of(10L), true, false));
+
+        verifyNoInteractions(resourceVersions, messageJsonCache, recentMessagesCache);
+    }
+
+    static class RecordingBroker implements EventBroker {
+
+        final List<EventBatch> published = new ArrayList<>();
+        Consumer<EventBatch> listener;
+        boolean failing;
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public void publish(EventBatch batch) {
+            if (failing) throw new IllegalStateException("broker down");
+            published.add(batch);
+        }
+
+        @Override
+        public void subscribe(Consumer<EventBatch> listener) {
+            this.listener = listener;
+        }
+    }
+}
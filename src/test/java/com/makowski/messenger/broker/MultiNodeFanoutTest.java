@@ -0,0 +1,96 @@
+package com.makowski.messenger.broker;
+
+import com.makowski.messenger.MessengerApplication;
+import com.makowski.messenger.dto.UserDto;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.service.ChatService;
+import com.makowski.messenger.service.MessageService;
+import com.makowski.messenger.service.ResourceVersions;
+import com.makowski.messenger.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two instances in one JVM on a shared embedded database and writes through one while reading through the other.
+ */
+class MultiNodeFanoutTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @AfterEach
+    void logOut() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"in-process", "database"})
+    void changesOnOneNode_InvalidateCachesOfOtherNode(String broker) throws Exception {
+        String database = "fanout-" + broker;
+        try (ConfigurableApplicationContext nodeA = start(broker, "a", database);
+             ConfigurableApplicationContext nodeB = start(broker, "b", database)) {
+            String prefix = "fanout" + UUID.randomUUID().toString().substring(0, 8);
+            UserService userService = nodeA.getBean(UserService.class);
+            userService.createUser(new User(prefix + "s", "password", "Fanout", "Sender"));
+            Long receiverId = userService.createUser(new User(prefix + "r", "password", "Fanout", "Receiver")).getUserId();
+            ResourceVersions versionsB = nodeB.getBean(ResourceVersions.class);
+            ChatService chatServiceB = nodeB.getBean(ChatService.class);
+            String chatListTag = versionsB.chatListTag(receiverId);
+
+            logIn(prefix + "s");
+            MessageService messageServiceA = nodeA.getBean(MessageService.class);
+            Long messageId = messageServiceA.saveMessage(createMessage(receiverId)).getId();
+
+            await(() -> !chatListTag.equals(versionsB.chatListTag(receiverId)));
+            assertTrue(chatServiceB.getMessagesJson(List.of(messageId)).get(messageId).contains("first"));
+
+            messageServiceA.updateMessage("second", messageId);
+
+            await(() -> chatServiceB.getMessagesJson(List.of(messageId)).get(messageId).contains("second"));
+
+            String renamedTag = versionsB.chatListTag(receiverId);
+            userService.updateUser(new UserDto(null, null, "Renamed", "Sender"));
+
+            await(() -> !renamedTag.equals(versionsB.chatListTag(receiverId)));
+        }
+    }
+
+    private ConfigurableApplicationContext start(String broker, String nodeId, String database) {
+        // arguments rather than default properties, which the profile's datasource url would override
+        return new SpringApplicationBuilder(MessengerApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database,
+                "--messenger.broker=" + broker,
+                "--messenger.node-id=" + nodeId,
+                "--messenger.broker.poll-interval-ms=50");
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Not reached within " + TIMEOUT_MILLIS + " ms");
+            Thread.sleep(50);
+        }
+    }
+
+    private Message createMessage(Long receiverId) {
+        Message message = new Message();
+        message.setReceiverId(new HashSet<>(List.of(receiverId)));
+        message.setContent("first");
+        return message;
+    }
+
+    private void logIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
@@ -0,0 +1,91 @@
+package com.makowski.messenger.cluster;
+
+import com.makowski.messenger.repository.ChatRepository;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatLocatorTest {
+
+    @Mock
+    ChatRepository chatRepository;
+    @Mock
+    MessageRepository messageRepository;
+    @Mock
+    UserRepository userRepository;
+    @Mock
+    RequestMappingHandlerAdapter handlerAdapter;
+
+    ChatLocator chatLocator;
+
+    @BeforeEach
+    void setUp() {
+        chatLocator = new ChatLocator(chatRepository, messageRepository, userRepository, handlerAdapter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void isAboutChat_MatchesChatPathsAndMessageWrites() {
+        assertTrue(chatLocator.isAboutChat(new MockHttpServletRequest("GET", "/chat/1/history")));
+        assertTrue(chatLocator.isAboutChat(new MockHttpServletRequest("POST", "/message")));
+        assertTrue(chatLocator.isAboutChat(new MockHttpServletRequest("PUT", "/message/1")));
+        assertTrue(chatLocator.isAboutChat(new MockHttpServletRequest("PUT", "/message/flag/1")));
+        assertTrue(chatLocator.isAboutChat(new MockHttpServletRequest("DELETE", "/message/1")));
+        assertFalse(chatLocator.isAboutChat(new MockHttpServletRequest("GET", "/chat/all")));
+        assertFalse(chatLocator.isAboutChat(new MockHttpServletRequest("DELETE", "/message/flag/1")));
+    }
+
+    @Test
+    void chatOf_ReturnsChatOfMessage_WhenMessageIsUpdated() {
+        when(messageRepository.findChatIdById(7L)).thenReturn(Optional.of(3L));
+
+        assertEquals(3L, chatLocator.chatOf(new MockHttpServletRequest("PUT", "/message/7")));
+    }
+
+    @Test
+    void chatOf_ReturnsChatOfSenderAndReceivers_WhenMessageIsSent() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        when(handlerAdapter.getMessageConverters()).thenReturn(List.of(new MappingJackson2HttpMessageConverter()));
+        when(userRepository.findIdByUsername("alice")).thenReturn(Optional.of(1L));
+        when(chatRepository.findIdsByMembers(1L, Set.of(1L, 2L), 2)).thenReturn(List.of(5L));
+
+        assertEquals(5L, chatLocator.chatOf(newMessage("{\"receiverId\":[2],\"content\":\"hello\"}")));
+    }
+
+    @Test
+    void chatOf_ReturnsNull_WhenBodyIsNotAMessage() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        when(handlerAdapter.getMessageConverters()).thenReturn(List.of(new MappingJackson2HttpMessageConverter()));
+
+        assertNull(chatLocator.chatOf(newMessage("{\"receiverId\":")));
+        verifyNoInteractions(chatRepository);
+    }
+
+    private MockHttpServletRequest newMessage(String json) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/message");
+        request.setContentType("application/json");
+        request.setContent(json.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
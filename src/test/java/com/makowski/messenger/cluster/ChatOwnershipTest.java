@@ -0,0 +1,120 @@
+package com.makowski.messenger.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatOwnershipTest {
+
+    private static final int CHATS = 10_000;
+
+    TestMembership membership = new TestMembership();
+
+    @Test
+    void owner_SpreadsChatsEvenly_WhenSeveralNodesJoined() {
+        membership.set("a", "b", "c");
+        ChatOwnership ownership = new ChatOwnership(new LocalNode("a"), membership);
+
+        Map<String, Integer> chatsPerNode = owners(ownership);
+
+        assertEquals(Set.of("a", "b", "c"), chatsPerNode.keySet());
+        chatsPerNode.values().forEach(chats -> assertTrue(chats > CHATS / 4 && chats < CHATS * 5 / 12, "chats: " + chatsPerNode));
+    }
+
+    @Test
+    void owner_SpreadsChatsEvenly_WhenNodeIdsHaveSameStringHashCode() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        membership.set("Aa", "BB");
+        ChatOwnership ownership = new ChatOwnership(new LocalNode("Aa"), membership);
+
+        Map<String, Integer> chatsPerNode = owners(ownership);
+
+        assertEquals(Set.of("Aa", "BB"), chatsPerNode.keySet());
+        chatsPerNode.values().forEach(chats -> assertTrue(chats > CHATS / 3 && chats < CHATS * 2 / 3, "chats: " + chatsPerNode));
+    }
+
+    @Test
+    void owner_MovesChatsOnlyToNewNode_WhenNodeJoins() {
+        membership.set("a", "b", "c");
+        ChatOwnership ownership = new ChatOwnership(new LocalNode("a"), membership);
+        List<String> before = ownerList(ownership);
+
+        membership.set("a", "b", "c", "d");
+        List<String> after = ownerList(ownership);
+
+        int moved = 0;
+        for (int i = 0; i < CHATS; i++) {
+            if (before.get(i).equals(after.get(i))) continue;
+            assertEquals("d", after.get(i));
+            moved++;
+        }
+        assertTrue(moved > CHATS / 6 && moved < CHATS / 3, "moved: " + moved);
+    }
+
+    @Test
+    void owner_MovesOnlyChatsOfLeavingNode_WhenNodeLeaves() {
+        membership.set("a", "b", "c");
+        ChatOwnership ownership = new ChatOwnership(new LocalNode("a"), membership);
+        List<String> before = ownerList(ownership);
+
+        membership.set("a", "c");
+        List<String> after = ownerList(ownership);
+
+        for (int i = 0; i < CHATS; i++) {
+            if (!before.get(i).equals("b")) assertEquals(before.get(i), after.get(i));
+        }
+    }
+
+    @Test
+    void remoteOwner_ReturnsNull_WhenLocalNodeIsNotOnRingYet() {
+        membership.set("b", "c");
+        ChatOwnership ownership = new ChatOwnership(new LocalNode("a"), membership);
+
+        assertTrue(LongStream.rangeClosed(1, 100).allMatch(chatId -> ownership.isLocal(chatId)));
+    }
+
+    @Test
+    void remoteOwner_ReturnsOwner_WhenChatBelongsToOtherNode() {
+        membership.set("a", "b");
+        ChatOwnership ownership = new ChatOwnership(new LocalNode("a"), membership);
+
+        for (long chatId = 1; chatId <= 100; chatId++) {
+            ClusterNode remote = ownership.remoteOwner(chatId);
+            assertEquals(ownership.owner(chatId).id().equals("a") ? null : ownership.owner(chatId), remote);
+        }
+    }
+
+    private Map<String, Integer> owners(ChatOwnership ownership) {
+        Map<String, Integer> chatsPerNode = new HashMap<>();
+        ownerList(ownership).forEach(owner -> chatsPerNode.merge(owner, 1, Integer::sum));
+        return chatsPerNode;
+    }
+
+    private List<String> ownerList(ChatOwnership ownership) {
+        return LongStream.rangeClosed(1, CHATS).mapToObj(chatId -> ownership.owner(chatId).id()).toList();
+    }
+
+    static class TestMembership implements ClusterMembership {
+
+        private List<ClusterNode> nodes = List.of();
+        private final List<Runnable> listeners = new ArrayList<>();
+
+        void set(String... ids) {
+            nodes = Arrays.stream(ids).map(id -> new ClusterNode(id, "http://" + id)).toList();
+            listeners.forEach(Runnable::run);
+        }
+
+        @Override
+        public List<ClusterNode> nodes() {
+            return nodes;
+        }
+
+        @Override
+        public void addListener(Runnable listener) {
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.makowski.messenger.cluster;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Forwards to an owner that answers too late, or at once for chat 2, against a local HTTP server.
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatRoutingFilterTest {
+
+    @Mock
+    ChatOwnership chatOwnership;
+    @Mock
+    ChatLocator chatLocator;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    HttpServer owner;
+    Headers received;
+    ChatRoutingFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        owner = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        owner.createContext("/", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        owner.createContext("/chat/2", exchange -> {
+            received = exchange.getRequestHeaders();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        owner.start();
+        filter = new ChatRoutingFilter(new LocalNode("a"), chatOwnership, chatLocator, meterRegistry, 200, "secret");
+        lenient().when(chatLocator.isAboutChat(any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        owner.stop(0);
+    }
+
+    @Test
+    void get_IsServedHere_WhenOwnerDoesNotAnswerInTime() throws Exception {
+        ownedBy("http://localhost:" + owner.getAddress().getPort());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/chat/1"), response, chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals("a", response.getHeader(ChatRoutingFilter.SERVED_BY));
+        assertEquals(1, meterRegistry.counter("messenger.cluster.forward.failures").count());
+    }
+
+    @Test
+    void put_GetsGatewayTimeout_WhenOwnerDoesNotAnswerInTime() throws Exception {
+        ownedBy("http://localhost:" + owner.getAddress().getPort());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("PUT", "/chat/1/read"), response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(504, response.getStatus());
+    }
+
+    @Test
+    void post_IsServedHereWithItsBody_WhenOwnerIsUnreachable() throws Exception {
+        int port = owner.getAddress().getPort();
+        owner.stop(0);
+        ownedBy("http://localhost:" + port);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/chat/1");
+        request.setContent("{\"content\":\"kept\"}".getBytes(StandardCharsets.UTF_8));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertEquals("{\"content\":\"kept\"}", new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void get_IsForwardedWithoutClientsMark_WhenMarkIsNotSigned() throws Exception {
+        when(chatOwnership.hasRemoteNodes()).thenReturn(true);
+        when(chatLocator.chatOf(any())).thenReturn(2L);
+        when(chatOwnership.remoteOwner(2L)).thenReturn(new ClusterNode("b", "http://localhost:" + owner.getAddress().getPort()));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/chat/2");
+        request.addHeader(ChatRoutingFilter.FORWARDED_BY, "b");
+        request.addHeader(ChatRoutingFilter.FORWARD_SIGNATURE, "forged");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(List.of("a"), received.get(ChatRoutingFilter.FORWARDED_BY));
+        assertEquals(List.of(filter.signature("a", "GET", "/chat/2")), received.get(ChatRoutingFilter.FORWARD_SIGNATURE));
+    }
+
+    @Test
+    void get_IsServedHere_WhenForwardedByOtherNode() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/chat/1");
+        request.setQueryString("after=5");
+        request.addHeader(ChatRoutingFilter.FORWARDED_BY, "b");
+        request.addHeader(ChatRoutingFilter.FORWARD_SIGNATURE, new ChatRoutingFilter(new LocalNode("b"), chatOwnership,
+                chatLocator, meterRegistry, 200, "secret").signature("b", "GET", "/chat/1?after=5"));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(chatOwnership);
+    }
+
+    private void ownedBy(String url) {
+        when(chatOwnership.hasRemoteNodes()).thenReturn(true);
+        when(chatLocator.chatOf(any())).thenReturn(1L);
+        when(chatOwnership.remoteOwner(1L)).thenReturn(new ClusterNode("b", url));
+    }
+}
@@ -0,0 +1,152 @@
+package com.makowski.messenger.cluster;
+
+import com.makowski.messenger.MessengerApplication;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.security.SecurityConstants;
+import com.makowski.messenger.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two instances in one JVM on a shared embedded database and asks each of them for the same chat.
+ */
+class ChatRoutingTest {
+
+    private static final Pattern CHAT_ID = Pattern.compile("\"chatId\":(\\d+)");
+    private static final Pattern MESSAGE_ID = Pattern.compile("\"id\":(\\d+)");
+
+    HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void chatRequests_AreServedByOwner_WhicheverNodeReceivesThem() throws Exception {
+        try (ConfigurableApplicationContext nodeA = start("a");
+             ConfigurableApplicationContext nodeB = start("b")) {
+            String token = logIn(nodeA);
+            long chatId = sendMessage(nodeA, token);
+            String owner = nodeA.getBean(ChatOwnership.class).owner(chatId).id();
+            assertEquals(owner, nodeB.getBean(ChatOwnership.class).owner(chatId).id());
+
+            for (ConfigurableApplicationContext node : List.of(nodeA, nodeB)) {
+                HttpResponse<String> response = get(node, "/chat/" + chatId, token);
+
+                assertEquals(200, response.statusCode());
+                assertEquals(owner, response.headers().firstValue(ChatRoutingFilter.SERVED_BY).orElseThrow());
+                assertTrue(response.body().contains("routed"));
+            }
+        }
+    }
+
+    @Test
+    void messageWrites_AreServedByOwner_WhenSentToOtherNode() throws Exception {
+        try (ConfigurableApplicationContext nodeA = start("a");
+             ConfigurableApplicationContext nodeB = start("b")) {
+            String token = logIn(nodeA);
+            ChatOwnership ownershipB = nodeB.getBean(ChatOwnership.class);
+            long receiverId;
+            do {
+                receiverId = createReceiver(nodeA);
+                assertEquals(201, post(nodeA, token, receiverId, "first").statusCode());
+            } while (!ownershipB.isLocal(lastChatId(nodeA, token)));
+
+            HttpResponse<String> sent = post(nodeA, token, receiverId, "second");
+            Matcher messageId = MESSAGE_ID.matcher(sent.body());
+            assertTrue(messageId.find());
+            HttpResponse<String> updated = client.send(HttpRequest.newBuilder(uri(nodeA, "/message/" + messageId.group(1)))
+                    .PUT(HttpRequest.BodyPublishers.ofString("edited"))
+                    .header("Content-Type", "text/plain").header(SecurityConstants.AUTHORIZATION, token).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(201, sent.statusCode());
+            assertEquals("b", sent.headers().firstValue(ChatRoutingFilter.SERVED_BY).orElseThrow());
+            assertEquals(200, updated.statusCode());
+            assertEquals("b", updated.headers().firstValue(ChatRoutingFilter.SERVED_BY).orElseThrow());
+        }
+    }
+
+    @Test
+    void chatRequests_AreServedByRemainingNode_WhenOwnerLeaves() throws Exception {
+        try (ConfigurableApplicationContext nodeA = start("a")) {
+            String token = logIn(nodeA);
+            long chatId;
+            try (ConfigurableApplicationContext nodeB = start("b")) {
+                chatId = ownedBy(nodeB, sendMessage(nodeA, token), token, nodeA);
+            }
+
+            HttpResponse<String> response = get(nodeA, "/chat/" + chatId, token);
+
+            assertEquals(200, response.statusCode());
+            assertEquals("a", response.headers().firstValue(ChatRoutingFilter.SERVED_BY).orElseThrow());
+        }
+    }
+
+    // sends messages to new chats until one of them belongs to the given node
+    private long ownedBy(ConfigurableApplicationContext owner, long chatId, String token, ConfigurableApplicationContext sender) throws Exception {
+        ChatOwnership ownership = owner.getBean(ChatOwnership.class);
+        while (!ownership.isLocal(chatId)) chatId = sendMessage(sender, token);
+        return chatId;
+    }
+
+    private ConfigurableApplicationContext start(String nodeId) {
+        // arguments rather than default properties, which the profile's datasource url would override
+        return new SpringApplicationBuilder(MessengerApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:routing",
+                "--messenger.cluster.membership=in-process",
+                "--messenger.node-id=" + nodeId);
+    }
+
+    private String logIn(ConfigurableApplicationContext node) throws Exception {
+        String username = "routing" + UUID.randomUUID().toString().substring(0, 8);
+        node.getBean(UserService.class).createUser(new User(username, "password", "Routing", "Test"));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(node, "/authenticate"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+        return response.headers().firstValue(SecurityConstants.AUTHORIZATION).orElseThrow();
+    }
+
+    // a message to a new user, so every call opens a new chat
+    private long sendMessage(ConfigurableApplicationContext node, String token) throws Exception {
+        assertEquals(201, post(node, token, createReceiver(node), "routed").statusCode());
+        return lastChatId(node, token);
+    }
+
+    private long createReceiver(ConfigurableApplicationContext node) {
+        return node.getBean(UserService.class)
+                .createUser(new User("routing" + UUID.randomUUID().toString().substring(0, 8), "password", "Routing", "Receiver")).getUserId();
+    }
+
+    private HttpResponse<String> post(ConfigurableApplicationContext node, String token, long receiverId, String content) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(node, "/message"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"receiverId\":[" + receiverId + "],\"content\":\"" + content + "\"}"))
+                .header("Content-Type", "application/json").header(SecurityConstants.AUTHORIZATION, token).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private long lastChatId(ConfigurableApplicationContext node, String token) throws Exception {
+        Matcher chats = CHAT_ID.matcher(get(node, "/chat/all", token).body());
+        long chatId = 0;
+        while (chats.find()) chatId = Math.max(chatId, Long.parseLong(chats.group(1)));
+        return chatId;
+    }
+
+    private HttpResponse<String> get(ConfigurableApplicationContext node, String path, String token) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(node, path)).header(SecurityConstants.AUTHORIZATION, token).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(ConfigurableApplicationContext node, String path) {
+        return URI.create("http://localhost:" + ((WebServerApplicationContext) node).getWebServer().getPort() + path);
+    }
+}
@@ -0,0 +1,67 @@
+package com.makowski.messenger.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionLimitingDataSourceTest {
+
+    @Mock
+    DataSource dataSource;
+    @Mock
+    Connection connection;
+
+    @Test
+    void getConnection_ReleasesPermitOnce_WhenConnectionIsClosedTwice() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(dataSource, 2);
+
+        Connection first = limited.getConnection();
+        assertEquals(1, limited.availablePermits());
+        first.close();
+        first.close();
+
+        assertEquals(2, limited.availablePermits());
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void getConnection_Waits_WhenAllPermitsAreTaken() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(dataSource, 1);
+        Connection taken = limited.getConnection();
+
+        CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limited.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+        taken.close();
+        assertNotNull(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void getConnection_ReleasesPermit_WhenPoolFails() throws SQLException {
+        when(dataSource.getConnection()).thenThrow(new SQLException("pool exhausted"));
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(dataSource, 1);
+
+        assertThrows(SQLException.class, limited::getConnection);
+        assertEquals(1, limited.availablePermits());
+    }
+}
@@ -0,0 +1,97 @@
+package com.makowski.messenger.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.makowski.messenger.dto.ChatMessagesDto;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.dto.MessageJson;
+import com.makowski.messenger.dto.UserDto;
+import com.makowski.messenger.entity.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtobufDtoHttpMessageConverterTest {
+
+    ProtobufDtoHttpMessageConverter converter = new ProtobufDtoHttpMessageConverter();
+
+    @Test
+    void write_EncodesMessageThatCanBeReadBack() throws IOException {
+        MessageDto message = new MessageDto(1L, 1L, 2L, Set.of(3L, 4L), true, LocalDateTime.of(2024, 1, 1, 12, 0), "content");
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        converter.write(message, MessageDto.class, ProtobufDtoHttpMessageConverter.PROTOBUF, output);
+        Message result = (Message) converter.read(Message.class, null, new MockHttpInputMessage(output.getBodyAsBytes()));
+
+        assertEquals(2L, result.getSenderId());
+        assertEquals(Set.of(3L, 4L), result.getReceiverId());
+        assertTrue(result.isPermanent());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0), result.getDateTime());
+        assertEquals("content", result.getContent());
+    }
+
+    @Test
+    void read_DecodesUserThroughItsConstructor() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(new UserDto(1L, "user", "First", "Last"), UserDto.class, ProtobufDtoHttpMessageConverter.PROTOBUF, output);
+
+        UserDto result = (UserDto) converter.read(UserDto.class, null, new MockHttpInputMessage(output.getBodyAsBytes()));
+
+        assertEquals("First", result.getFirstName());
+        assertEquals("Last", result.getSurname());
+    }
+
+    @Test
+    void write_WrapsSetsInListMessage() throws IOException {
+        Set<UserDto> users = Set.of(new UserDto(1L, "user", "First", "Last"));
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        converter.write(users, new ParameterizedTypeReference<Set<UserDto>>() {}.getType(), ProtobufDtoHttpMessageConverter.PROTOBUF, output);
+
+        JsonNode result = decode("UserList", output.getBodyAsBytes());
+        assertEquals("user", result.get("items").get(0).get("username").asText());
+    }
+
+    @Test
+    void write_ReencodesCachedMessageJson() throws IOException {
+        ChatMessagesDto chat = new ChatMessagesDto(5L, List.of(
+                new MessageJson("{\"id\":1,\"senderId\":2,\"receiverId\":[3],\"permanent\":false,\"dateTime\":\"01.01.2024 12:00:00\",\"content\":\"hi\"}")));
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        converter.write(chat, ChatMessagesDto.class, ProtobufDtoHttpMessageConverter.PROTOBUF, output);
+
+        JsonNode result = decode("ChatMessages", output.getBodyAsBytes());
+        assertEquals(5L, result.get("id").asLong());
+        assertEquals("hi", result.get("messages").get(0).get("content").asText());
+        assertEquals(3L, result.get("messages").get(0).get("receiverId").get(0).asLong());
+    }
+
+    @Test
+    void getSupportedMediaTypes_ListsProtobuf_WhenBodyIsCollection() {
+        assertEquals(List.of(ProtobufDtoHttpMessageConverter.PROTOBUF), converter.getSupportedMediaTypes(HashSet.class));
+        assertEquals(List.of(), converter.getSupportedMediaTypes(String.class));
+    }
+
+    @Test
+    void canWrite_ReturnsFalse_WhenTypeHasNoSchema() {
+        assertFalse(converter.canWrite(String.class, String.class, ProtobufDtoHttpMessageConverter.PROTOBUF));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<List<String>>() {}.getType(), List.class, ProtobufDtoHttpMessageConverter.PROTOBUF));
+    }
+
+    private JsonNode decode(String messageType, byte[] bytes) throws IOException {
+        NativeProtobufSchema schema = ProtobufSchemaLoader.std.loadNative(new ClassPathResource("proto/messenger.proto").getURL());
+        return new ProtobufMapper().readerFor(JsonNode.class).with(schema.forType(messageType)).readValue(bytes);
+    }
+}
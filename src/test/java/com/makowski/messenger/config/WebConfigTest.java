@@ -0,0 +1,33 @@
+package com.makowski.messenger.config;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebConfigTest {
+
+    @Test
+    void extendMessageConverters_ReplacesCborConverterWithOneFromGivenBuilder() {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder().featuresToEnable(SerializationFeature.INDENT_OUTPUT);
+        MappingJackson2CborHttpMessageConverter mvcDefault = new MappingJackson2CborHttpMessageConverter();
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(List.of(new StringHttpMessageConverter(), mvcDefault));
+
+        new WebConfig(builder).extendMessageConverters(converters);
+
+        assertEquals(3, converters.size());
+        MappingJackson2CborHttpMessageConverter cbor = assertInstanceOf(MappingJackson2CborHttpMessageConverter.class, converters.get(1));
+        assertNotSame(mvcDefault, cbor);
+        assertInstanceOf(CBORFactory.class, cbor.getObjectMapper().getFactory());
+        assertTrue(cbor.getObjectMapper().isEnabled(SerializationFeature.INDENT_OUTPUT));
+        assertInstanceOf(ProtobufDtoHttpMessageConverter.class, converters.get(2));
+    }
+}
@@ -0,0 +1,91 @@
+package com.makowski.messenger.controller;
+
+import com.makowski.messenger.dto.ChatMessagesDto;
+import com.makowski.messenger.service.ChatService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatControllerTest {
+
+    @InjectMocks
+    ChatController chatController;
+    @Mock
+    ChatService chatService;
+
+    MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(chatController).build();
+    }
+
+    @Test
+    void getMyChats_ReturnsNotModifiedWithoutBuildingList_WhenIfNoneMatchIsCurrent() throws Exception {
+        when(chatService.getMyChatsTag()).thenReturn("\"1-7\"");
+        when(chatService.getMyChats()).thenReturn(List.of());
+
+        String eTag = mockMvc.perform(get("/chat/all").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/chat/all").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+
+        verify(chatService, times(1)).getMyChats();
+    }
+
+    @Test
+    void getChat_ReturnsNotModified_WhenIfNoneMatchIsCurrent() throws Exception {
+        when(chatService.getMyChatTag(1L)).thenReturn("\"3\"");
+        when(chatService.getMyChatMessages(1L)).thenReturn(new ChatMessagesDto(1L, List.of()));
+
+        String eTag = mockMvc.perform(get("/chat/1").accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/chat/1").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        verify(chatService, times(1)).getMyChatMessages(1L);
+    }
+
+    @Test
+    void getChat_ReturnsChat_WhenVersionChangedSinceIfNoneMatch() throws Exception {
+        when(chatService.getMyChatTag(1L)).thenReturn("\"3\"", "\"4\"");
+        when(chatService.getMyChatMessages(1L)).thenReturn(new ChatMessagesDto(1L, List.of()));
+
+        String eTag = mockMvc.perform(get("/chat/1").accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String newETag = mockMvc.perform(get("/chat/1").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(eTag, newETag);
+    }
+
+    @Test
+    void getChat_ReturnsChat_WhenIfNoneMatchBelongsToAnotherRepresentation() throws Exception {
+        when(chatService.getMyChatTag(1L)).thenReturn("\"3\"");
+        when(chatService.getMyChatMessages(1L)).thenReturn(new ChatMessagesDto(1L, List.of()));
+
+        String eTag = mockMvc.perform(get("/chat/1").accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/chat/1").accept(MediaType.APPLICATION_JSON, MediaType.ALL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,70 @@
+package com.makowski.messenger.dataset;
+
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.repository.ChatRepository;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.repository.UserRepository;
+import com.makowski.messenger.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DatasetGeneratorTest {
+
+    @Autowired
+    DatasetGenerator datasetGenerator;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    ChatRepository chatRepository;
+    @Autowired
+    MessageRepository messageRepository;
+    @Autowired
+    UserService userService;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void generate_InsertsRequestedRows() {
+        long users = userRepository.count();
+        long chats = chatRepository.count();
+        long messages = messageRepository.count();
+
+        DatasetSummary summary = datasetGenerator.generate(settings(1L));
+
+        assertEquals(users + 30, userRepository.count());
+        assertEquals(chats + 20, chatRepository.count());
+        assertEquals(messages + 500, messageRepository.count());
+        assertEquals(500, summary.messages());
+    }
+
+    @Test
+    void generate_ProducesSameDataset_WhenSeedIsTheSame() {
+        assertEquals(datasetGenerator.generate(settings(7L)).checksum(), datasetGenerator.generate(settings(7L)).checksum());
+        assertNotEquals(datasetGenerator.generate(settings(7L)).checksum(), datasetGenerator.generate(settings(8L)).checksum());
+    }
+
+    @Test
+    void generate_CreatesRowsReadableByTheApplication() {
+        DatasetSettings settings = settings(3L);
+        datasetGenerator.generate(settings);
+
+        User user = userRepository.findByUsername(settings.usernamePrefix() + "0").orElseThrow();
+        assertNotNull(user.getContactList());
+        Boolean chatsHaveMembers = transactionTemplate.execute(status -> userRepository.findById(user.getId()).orElseThrow()
+                .getChats().stream().allMatch(chat -> chat.getMembers().size() >= 2));
+        assertEquals(Boolean.TRUE, chatsHaveMembers);
+        assertNotNull(userService.createUser(new User("afterGenerator" + UUID.randomUUID(), "password", "After", "Generator")).getUserId());
+    }
+
+    private DatasetSettings settings(long seed) {
+        return new DatasetSettings(seed, "dataset" + UUID.randomUUID().toString().substring(0, 8) + "_", 30, 5, 20, 6,
+                500, 10, 0.1, 64);
+    }
+}
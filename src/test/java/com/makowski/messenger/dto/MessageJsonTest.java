@@ -0,0 +1,30 @@
+package com.makowski.messenger.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageJsonTest {
+
+    static final String JSON = "{\"id\":1,\"receiverId\":[2,3],\"permanent\":true,\"content\":\"hi\"}";
+
+    @Test
+    void serialize_WritesJsonAsItIs_WhenFormatIsJson() throws Exception {
+        ChatMessagesDto chat = new ChatMessagesDto(1L, List.of(new MessageJson(JSON)));
+
+        assertEquals("{\"id\":1,\"messages\":[" + JSON + "]}", new ObjectMapper().writeValueAsString(chat));
+    }
+
+    @Test
+    void serialize_ReencodesTheJsonTokens_WhenFormatIsBinary() throws Exception {
+        CBORMapper cbor = new CBORMapper();
+
+        byte[] cached = cbor.writeValueAsBytes(new MessageJson(JSON));
+
+        assertEquals(new ObjectMapper().readTree(JSON), cbor.readTree(cached));
+    }
+}
@@ -0,0 +1,101 @@
+package com.makowski.messenger.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.ingestion.IngestionJournal.DeadLetter;
+import com.makowski.messenger.ingestion.IngestionJournal.Entry;
+import com.makowski.messenger.ingestion.IngestionJournal.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionJournalTest {
+
+    ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recovered_ReturnsUncommittedRecords_WhenJournalIsReopened() throws IOException {
+        IngestionJournal journal = new IngestionJournal(directory, objectMapper, 1 << 20);
+        Entry first = journal.append(record(1L));
+        journal.append(record(2L));
+        journal.committed(first);
+        journal.close();
+
+        List<Entry> recovered = new IngestionJournal(directory, objectMapper, 1 << 20).recovered();
+
+        // nothing is forgotten before its segment is done
+        assertEquals(List.of(record(1L), record(2L)), recovered.stream().map(Entry::record).toList());
+    }
+
+    @Test
+    void recovered_SkipsLineCutShortByCrash() throws IOException {
+        IngestionJournal journal = new IngestionJournal(directory, objectMapper, 1 << 20);
+        journal.append(record(1L));
+        try (Stream<Path> files = Files.list(directory)) {
+            Files.writeString(files.findFirst().orElseThrow(), "{\"id\":2,\"chatId\"", StandardOpenOption.APPEND);
+        }
+
+        List<Entry> recovered = new IngestionJournal(directory, objectMapper, 1 << 20).recovered();
+
+        assertEquals(List.of(record(1L)), recovered.stream().map(Entry::record).toList());
+    }
+
+    @Test
+    void committed_DeletesSegment_WhenAllItsRecordsAreCommittedAndNewerOneIsWritten() throws IOException {
+        IngestionJournal journal = new IngestionJournal(directory, objectMapper, 1);
+        Entry first = journal.append(record(1L));
+        Entry second = journal.append(record(2L));
+        assertNotEquals(first.segment(), second.segment());
+
+        journal.committed(first);
+        journal.committed(second);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void append_ForcesEveryRecordToDiskBeforeReturning() throws IOException {
+        IngestionJournal journal = new IngestionJournal(directory, objectMapper, 1 << 20);
+
+        journal.append(record(1L));
+        journal.append(record(2L));
+
+        assertEquals(2, journal.syncs());
+    }
+
+    @Test
+    void deadLetter_KeepsRecordWithReasonOutOfRecovery() throws IOException {
+        IngestionJournal journal = new IngestionJournal(directory, objectMapper, 1 << 20);
+        Entry entry = journal.append(record(1L));
+
+        journal.deadLetter(entry, "chat deleted");
+        journal.close();
+
+        assertTrue(new IngestionJournal(directory, objectMapper, 1 << 20).recovered().isEmpty());
+        DeadLetter deadLetter = objectMapper.readValue(Files.readString(directory.resolve("dead-letter.log")), DeadLetter.class);
+        assertEquals(record(1L), deadLetter.record());
+        assertEquals("chat deleted", deadLetter.reason());
+    }
+
+    static Record record(Long id) {
+        return new Record(id, 1L, 1L, Set.of(2L), false, LocalDateTime.of(2024, 1, 1, 12, 0), "Message " + id);
+    }
+}
@@ -0,0 +1,138 @@
+package com.makowski.messenger.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.exception.IngestionOverloadedException;
+import com.makowski.messenger.ingestion.IngestionJournal.Record;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.service.MessageService;
+import com.makowski.messenger.testutils.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageIngestionTest {
+
+    MessageService messageService = mock(MessageService.class);
+    MessageRepository messageRepository = mock(MessageRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    MessageIngestion ingestion;
+    long nextId = 1;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void stop() throws Exception {
+        if (ingestion != null) ingestion.stop();
+    }
+
+    @Test
+    void accept_RefusesMessage_WhenQueueIsFull() throws Exception {
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch databaseBack = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            inserting.countDown();
+            databaseBack.await();
+            return List.of();
+        }).when(messageService).insertAccepted(anyList());
+        start(1, 1);
+
+        ingestion.accept(TestDataFactory.createTestMessage());
+        assertTrue(inserting.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IngestionOverloadedException.class, () -> ingestion.accept(TestDataFactory.createTestMessage()));
+        assertEquals(1, meterRegistry.counter("messenger.ingestion.rejected").count());
+        databaseBack.countDown();
+        // room frees up as soon as the insert commits
+        assertNotNull(ingestion.accept(TestDataFactory.createTestMessage()));
+    }
+
+    @Test
+    void flush_InsertsOtherMessagesAndDeadLettersRefusedOne_WhenBatchFails() throws Exception {
+        CountDownLatch inserted = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            if (messages.stream().anyMatch(message -> message.getId() == 2L)) {
+                throw new DataIntegrityViolationException("chat deleted");
+            }
+            messages.forEach(message -> inserted.countDown());
+            return List.of();
+        }).when(messageService).insertAccepted(anyList());
+        start(10, 3);
+        // all three end up in one batch, as the oldest waits for the others
+        for (int i = 0; i < 3; i++) ingestion.accept(TestDataFactory.createTestMessage());
+
+        assertTrue(inserted.await(5, TimeUnit.SECONDS));
+        verify(messageService, timeout(5000).times(4)).insertAccepted(anyList());
+        verify(messageService, timeout(5000)).reportRefused(argThat(message -> message.getId() == 2L));
+        assertEquals(1, meterRegistry.counter("messenger.ingestion.dead_lettered").count());
+        assertTrue(Files.readString(directory.resolve("dead-letter.log")).contains("\"id\":2,"));
+    }
+
+    @Test
+    void flush_DeadLettersAndReportsMessage_WhenSenderLeftChatMeanwhile() throws Exception {
+        when(messageService.insertAccepted(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        start(10, 1);
+
+        Message accepted = ingestion.accept(TestDataFactory.createTestMessage());
+
+        verify(messageService, timeout(5000)).reportRefused(argThat(message -> message.getId().equals(accepted.getId())));
+        assertEquals(1, meterRegistry.counter("messenger.ingestion.dead_lettered").count());
+    }
+
+    @Test
+    void start_DeadLettersJournaledMessages_WhenDatabaseFailsEveryRecoveryAttempt() throws Exception {
+        try (IngestionJournal journal = new IngestionJournal(directory, new ObjectMapper().findAndRegisterModules(), 1 << 20)) {
+            journal.append(Record.of(message(7L)));
+        }
+        when(messageService.insertAccepted(anyList())).thenThrow(new CannotCreateTransactionException("database down"));
+
+        start(10, 1, 2);
+
+        verify(messageService, times(2)).insertAccepted(anyList());
+        assertEquals(1, meterRegistry.counter("messenger.ingestion.dead_lettered").count());
+        assertTrue(Files.readString(directory.resolve("dead-letter.log")).contains("database down"));
+        try (IngestionJournal journal = new IngestionJournal(directory, new ObjectMapper().findAndRegisterModules(), 1 << 20)) {
+            assertTrue(journal.recovered().isEmpty());
+        }
+    }
+
+    private void start(int queueCapacity, int batchSize) throws IOException {
+        start(queueCapacity, batchSize, 10);
+    }
+
+    private void start(int queueCapacity, int batchSize, int recoveryAttempts) throws IOException {
+        when(messageService.acceptMessage(any())).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setId(nextId++);
+            message.setChat(TestDataFactory.createTestChat());
+            return message;
+        });
+        ingestion = new MessageIngestion(messageService, messageRepository, new ObjectMapper().findAndRegisterModules(),
+                meterRegistry, directory, 1 << 20, queueCapacity, batchSize, 1000, 500, recoveryAttempts);
+        ingestion.start();
+    }
+
+    private Message message(long id) {
+        Message message = TestDataFactory.createTestMessage();
+        message.setId(id);
+        message.setChat(TestDataFactory.createTestChat());
+        message.setSenderId(1L);
+        return message;
+    }
+}
@@ -0,0 +1,127 @@
+package com.makowski.messenger.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.MessengerApplication;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.ingestion.IngestionJournal.Record;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.security.SecurityConstants;
+import com.makowski.messenger.service.MessageIdAllocator;
+import com.makowski.messenger.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs instances with messenger.ingestion.mode=write-behind on an embedded database.
+ */
+class WriteBehindIngestionTest {
+
+    HttpClient client = HttpClient.newHttpClient();
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path journals;
+
+    @Test
+    void postMessage_AnswersWithIdBeforeMessageIsSaved_AndSavesMessagesInOrder() throws Exception {
+        try (ConfigurableApplicationContext node = start("first")) {
+            String token = logIn(node);
+            Long receiverId = createUser(node);
+
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 10; i++) ids.add(sendMessage(node, token, receiverId));
+
+            List<Message> saved = awaitSaved(node, ids);
+            assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(), saved.stream().map(Message::getSeq).toList());
+        }
+    }
+
+    @Test
+    void journaledMessages_AreSaved_WhenInstanceStarts() throws Exception {
+        try (ConfigurableApplicationContext first = start("first")) {
+            String token = logIn(first);
+            Long receiverId = createUser(first);
+            long sentId = sendMessage(first, token, receiverId);
+            Message sent = awaitSaved(first, List.of(sentId)).get(0);
+            // a message acknowledged by an instance that stopped before saving it
+            long lostId = first.getBean(MessageIdAllocator.class).next();
+            try (IngestionJournal journal = new IngestionJournal(journals.resolve("second"), new ObjectMapper().findAndRegisterModules(), 1 << 20)) {
+                journal.append(new Record(lostId, sent.getChat().getId(), sent.getSenderId(), Set.of(receiverId), false,
+                        LocalDateTime.now(), "recovered"));
+            }
+
+            try (ConfigurableApplicationContext second = start("second")) {
+                Message recovered = second.getBean(MessageRepository.class).findById(lostId).orElseThrow();
+                assertEquals("recovered", recovered.getContent());
+                assertEquals(2L, recovered.getSeq());
+            }
+        }
+    }
+
+    private List<Message> awaitSaved(ConfigurableApplicationContext node, List<Long> ids) throws InterruptedException {
+        MessageRepository messageRepository = node.getBean(MessageRepository.class);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<Message> saved = new ArrayList<>();
+            messageRepository.findAllById(ids).forEach(saved::add);
+            if (saved.size() == ids.size()) {
+                saved.sort(Comparator.comparing(Message::getId));
+                return saved;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "messages not saved in time");
+            Thread.sleep(20);
+        }
+    }
+
+    private ConfigurableApplicationContext start(String journal) {
+        // arguments rather than default properties, which the profile's datasource url would override
+        return new SpringApplicationBuilder(MessengerApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:writebehind",
+                "--messenger.ingestion.mode=write-behind",
+                "--messenger.ingestion.journal-dir=" + journals.resolve(journal));
+    }
+
+    private String logIn(ConfigurableApplicationContext node) throws Exception {
+        String username = "ingest" + UUID.randomUUID().toString().substring(0, 8);
+        node.getBean(UserService.class).createUser(new User(username, "password", "Ingestion", "Test"));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(node, "/authenticate"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+        return response.headers().firstValue(SecurityConstants.AUTHORIZATION).orElseThrow();
+    }
+
+    private Long createUser(ConfigurableApplicationContext node) {
+        return node.getBean(UserService.class)
+                .createUser(new User("ingest" + UUID.randomUUID().toString().substring(0, 8), "password", "Ingestion", "Receiver")).getUserId();
+    }
+
+    private long sendMessage(ConfigurableApplicationContext node, String token, Long receiverId) throws Exception {
+        HttpResponse<String> sent = client.send(HttpRequest.newBuilder(uri(node, "/message"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"receiverId\":[" + receiverId + "],\"content\":\"queued\"}"))
+                .header("Content-Type", "application/json").header(SecurityConstants.AUTHORIZATION, token).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(202, sent.statusCode());
+        assertTrue(objectMapper.readTree(sent.body()).get("seq").isNull());
+        return objectMapper.readTree(sent.body()).get("id").asLong();
+    }
+
+    private URI uri(ConfigurableApplicationContext node, String path) {
+        return URI.create("http://localhost:" + ((WebServerApplicationContext) node).getWebServer().getPort() + path);
+    }
+}
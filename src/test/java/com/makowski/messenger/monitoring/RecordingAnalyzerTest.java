@@ -0,0 +1,48 @@
+package com.makowski.messenger.monitoring;
+
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.service.UserService;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RecordingAnalyzerTest {
+
+    @Autowired
+    UserService userService;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void summarize_ReturnsServiceAndRepositoryPhases_WhenEventsAreRecorded() throws Exception {
+        Path file = directory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ServiceCallEvent.class);
+            recording.enable(RepositoryCallEvent.class);
+            recording.enable(RemoverBatchEvent.class);
+            recording.start();
+            Long userId = userService.createUser(new User("jfr" + UUID.randomUUID(), "password", "Flight", "Recorder")).getUserId();
+            userService.getUser(userId);
+            RemoverBatchEvent.start("old messages", 1L).finish(3);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, RecordingAnalyzer.Phase> phases = RecordingAnalyzer.summarize(file);
+
+        assertEquals(1, phases.get("ServiceCall UserService.createUser").count());
+        assertEquals(1, phases.get("ServiceCall UserService.getUser").rows());
+        assertTrue(phases.containsKey("RepositoryCall UserRepository.save"));
+        assertEquals(3, phases.get("RemoverBatch old messages").rows());
+    }
+}
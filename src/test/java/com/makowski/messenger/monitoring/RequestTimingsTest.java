@@ -0,0 +1,42 @@
+package com.makowski.messenger.monitoring;
+
+import com.makowski.messenger.monitoring.RequestTimings.Phase;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTimingsTest {
+
+    @Test
+    void stop_ReturnsExclusivePhaseTimes_WhenPhasesAreNested() {
+        RequestTimings.start();
+        RequestTimings.time(Phase.USER_LOOKUP, () -> {
+            sleep(20);
+            return RequestTimings.time(Phase.SQL, () -> sleep(30));
+        });
+        RequestTimings timings = RequestTimings.stop();
+
+        assertTrue(timings.nanos(Phase.SQL) >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(timings.nanos(Phase.USER_LOOKUP) >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(timings.nanos(Phase.USER_LOOKUP) < TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, timings.count(Phase.SQL));
+        assertEquals(timings.totalNanos(), timings.nanos(Phase.USER_LOOKUP) + timings.nanos(Phase.SQL) + timings.otherNanos());
+    }
+
+    @Test
+    void time_RunsAction_WhenNoRequestIsTimed() {
+        assertEquals("result", RequestTimings.time(Phase.JSON, () -> "result"));
+        assertNull(RequestTimings.stop());
+    }
+
+    private static Object sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
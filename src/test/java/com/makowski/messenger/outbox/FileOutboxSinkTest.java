@@ -0,0 +1,76 @@
+package com.makowski.messenger.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.makowski.messenger.entity.OutboxEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static com.makowski.messenger.outbox.OutboxRelayTest.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileOutboxSinkTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void publish_AppendsOneJsonLinePerEvent() throws IOException {
+        Path file = directory.resolve("outbox.ndjson");
+        OutboxEvent deleted = event(2L);
+        deleted.setType(OutboxEvent.Type.MESSAGE_DELETED);
+        deleted.setPayload(null);
+
+        new FileOutboxSink(file, objectMapper).publish(List.of(event(1L), deleted));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        assertEquals("MESSAGE_CREATED", first.get("type").asText());
+        assertEquals(1, first.get("payload").get("id").asLong());
+        assertFalse(objectMapper.readTree(lines.get(1)).has("payload"));
+    }
+
+    @Test
+    void publish_SkipsEventsInFile_WhenSinkIsRecreated() throws IOException {
+        Path file = directory.resolve("outbox.ndjson");
+        new FileOutboxSink(file, objectMapper).publish(List.of(event(1L), event(2L)));
+
+        new FileOutboxSink(file, objectMapper).publish(List.of(event(2L), event(3L)));
+
+        assertEquals(3, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void publish_WritesEventWithLowerId_WhenSinkIsRecreated() throws IOException {
+        Path file = directory.resolve("outbox.ndjson");
+        new FileOutboxSink(file, objectMapper).publish(List.of(event(1L), event(3L)));
+
+        new FileOutboxSink(file, objectMapper).publish(List.of(event(3L), event(2L)));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals(2, objectMapper.readTree(lines.get(2)).get("id").asLong());
+    }
+
+    @Test
+    void publish_StartsNewLine_WhenLastLineWasCutOff() throws IOException {
+        Path file = directory.resolve("outbox.ndjson");
+        new FileOutboxSink(file, objectMapper).publish(List.of(event(1L)));
+        Files.writeString(file, "{\"id\":2,\"ty", StandardOpenOption.APPEND);
+
+        new FileOutboxSink(file, objectMapper).publish(List.of(event(2L)));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals(2, objectMapper.readTree(lines.get(2)).get("id").asLong());
+    }
+}
@@ -0,0 +1,87 @@
+package com.makowski.messenger.outbox;
+
+import com.makowski.messenger.entity.OutboxEvent;
+import com.makowski.messenger.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    OutboxEventRepository outboxEventRepository;
+    @Mock
+    OutboxSink failingSink;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    InMemoryOutboxSink memorySink = new InMemoryOutboxSink(100);
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(failingSink.name()).thenReturn("failing");
+    }
+
+    @Test
+    void relay_PublishesAndDeletesBatch_WhenAllSinksSucceed() {
+        List<OutboxEvent> batch = List.of(event(1L), event(2L));
+        when(outboxEventRepository.findBatch(any(Pageable.class))).thenReturn(batch);
+        when(outboxEventRepository.findFirstByOrderByCommitSeqAscIdAsc()).thenReturn(Optional.empty());
+
+        new OutboxRelay(outboxEventRepository, List.of(memorySink), meterRegistry).relay();
+
+        assertEquals(batch, memorySink.getEvents());
+        verify(outboxEventRepository).deleteByIdIn(List.of(1L, 2L));
+        assertEquals(2, meterRegistry.counter("messenger.outbox.published").count());
+        assertEquals(0, meterRegistry.get("messenger.outbox.lag").gauge().value());
+    }
+
+    @Test
+    void relay_KeepsBatch_WhenSinkFails() throws Exception {
+        OutboxEvent oldest = event(1L);
+        oldest.setCreatedAt(LocalDateTime.now().minusMinutes(1));
+        when(outboxEventRepository.findBatch(any(Pageable.class))).thenReturn(List.of(oldest));
+        when(outboxEventRepository.findFirstByOrderByCommitSeqAscIdAsc()).thenReturn(Optional.of(oldest));
+        doThrow(new IOException("disk full")).when(failingSink).publish(any());
+
+        new OutboxRelay(outboxEventRepository, List.of(memorySink, failingSink), meterRegistry).relay();
+
+        verify(outboxEventRepository, never()).deleteByIdIn(any());
+        assertEquals(1, meterRegistry.counter("messenger.outbox.failures", "sink", "failing").count());
+        assertTrue(meterRegistry.get("messenger.outbox.lag").gauge().value() >= 60_000);
+    }
+
+    @Test
+    void publish_SkipsEventsAlreadyPublished_WhenBatchIsOfferedAgain() {
+        memorySink.publish(List.of(event(1L), event(2L)));
+        memorySink.publish(List.of(event(1L), event(2L), event(3L)));
+
+        assertEquals(List.of(1L, 2L, 3L), memorySink.getEvents().stream().map(OutboxEvent::getId).toList());
+    }
+
+    @Test
+    void publish_TakesEventWithLowerId_WhenItsTransactionCommittedLater() {
+        memorySink.publish(List.of(event(1L), event(3L)));
+        memorySink.publish(List.of(event(3L), event(2L)));
+
+        assertEquals(List.of(1L, 3L, 2L), memorySink.getEvents().stream().map(OutboxEvent::getId).toList());
+    }
+
+    static OutboxEvent event(Long id) {
+        OutboxEvent event = new OutboxEvent(OutboxEvent.Type.MESSAGE_CREATED, 5L, id, "{\"id\":" + id + "}");
+        event.setId(id);
+        return event;
+    }
+}
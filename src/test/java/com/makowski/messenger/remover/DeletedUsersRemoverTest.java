@@ -0,0 +1,51 @@
+package com.makowski.messenger.remover;
+
+import com.makowski.messenger.entity.UserDeletionJob;
+import com.makowski.messenger.service.UserDeletionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeletedUsersRemoverTest {
+
+    @InjectMocks
+    DeletedUsersRemover deletedUsersRemover;
+    @Mock
+    UserDeletionService userDeletionService;
+
+    @Test
+    void deleteUsersData_StopsAfterChunksPerRun_WhenJobIsNotFinished() {
+        when(userDeletionService.getPendingJobs()).thenReturn(List.of(job(1L), job(2L)));
+        when(userDeletionService.processNextChunk(1L)).thenReturn(false);
+
+        deletedUsersRemover.deleteUsersData();
+
+        verify(userDeletionService, times(DeletedUsersRemover.CHUNKS_PER_RUN)).processNextChunk(1L);
+        verify(userDeletionService, never()).processNextChunk(2L);
+    }
+
+    @Test
+    void deleteUsersData_MovesToNextJob_WhenJobIsFinished() {
+        when(userDeletionService.getPendingJobs()).thenReturn(List.of(job(1L), job(2L)));
+        when(userDeletionService.processNextChunk(1L)).thenReturn(false, true);
+        when(userDeletionService.processNextChunk(2L)).thenReturn(true);
+
+        deletedUsersRemover.deleteUsersData();
+
+        verify(userDeletionService, times(2)).processNextChunk(1L);
+        verify(userDeletionService).processNextChunk(2L);
+    }
+
+    private UserDeletionJob job(Long id) {
+        UserDeletionJob job = new UserDeletionJob(id * 10);
+        job.setId(id);
+        return job;
+    }
+}
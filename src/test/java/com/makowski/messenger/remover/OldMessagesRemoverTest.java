@@ -0,0 +1,100 @@
+package com.makowski.messenger.remover;
+
+import com.makowski.messenger.broker.EventFanout;
+import com.makowski.messenger.outbox.Outbox;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.service.ChangeLog;
+import com.makowski.messenger.service.ChatService;
+import com.makowski.messenger.service.RecentMessagesCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OldMessagesRemoverTest {
+
+    @InjectMocks
+    OldMessagesRemover oldMessagesRemover;
+    @Mock
+    MessageRepository messageRepository;
+    @Mock
+    ChatService chatService;
+    @Mock
+    EventFanout eventFanout;
+    @Mock
+    RecentMessagesCache recentMessagesCache;
+    @Mock
+    ChangeLog changeLog;
+    @Mock
+    Outbox outbox;
+    @Spy
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    @Spy
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+    @Test
+    void deleteOldMessages_DeletesExpiredMessagesOfAllChatsPageByPage_WhenThereAreExpiredMessages() {
+        when(messageRepository.findExpiredIds(any(), any())).thenReturn(List.of(1L, 2L));
+        when(messageRepository.findChatIdsByIdIn(List.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+
+        oldMessagesRemover.deleteOldMessages();
+
+        verify(messageRepository).deleteByIdIn(List.of(1L, 2L));
+        verify(recentMessagesCache).evictChats(List.of(1L, 2L));
+        verify(chatService).deleteChatIfEmpty(1L);
+        verify(chatService).deleteChatIfEmpty(2L);
+    }
+
+    @Test
+    void deleteOldMessages_AlwaysReadsFirstPage_WhenMessagesAreDeletedBetweenPages() {
+        Pageable firstPage = PageRequest.of(0, 100);
+        LocalDateTime expireDate = LocalDateTime.now();
+        List<Long> fullPage = LongStream.rangeClosed(1, 100).boxed().toList();
+
+        when(messageRepository.findExpiredIds(expireDate, firstPage))
+                .thenReturn(fullPage)
+                .thenReturn(List.of(101L));
+        when(messageRepository.findChatIdsByIdIn(anyList())).thenReturn(List.of(1L));
+
+        oldMessagesRemover.deleteOldMessages(expireDate);
+
+        verify(messageRepository, times(2)).findExpiredIds(expireDate, firstPage);
+        verify(messageRepository).deleteByIdIn(fullPage);
+        verify(messageRepository).deleteByIdIn(List.of(101L));
+        // once for both pages
+        verify(chatService).deleteChatIfEmpty(1L);
+    }
+
+    @Test
+    void deleteOldMessages_WritesTombstonesAndDeletesPageInOneTransaction() {
+        when(messageRepository.findExpiredIds(any(), any())).thenReturn(List.of(1L));
+        when(messageRepository.findChatIdsByIdIn(List.of(1L))).thenReturn(List.of(1L));
+
+        oldMessagesRemover.deleteOldMessages();
+
+        InOrder inOrder = inOrder(transactionManager, outbox, changeLog, messageRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(outbox).messagesDeleted(List.of(1L));
+        inOrder.verify(changeLog).messagesDeleted(List.of(1L));
+        inOrder.verify(messageRepository).deleteByIdIn(List.of(1L));
+        inOrder.verify(transactionManager).commit(any());
+    }
+}
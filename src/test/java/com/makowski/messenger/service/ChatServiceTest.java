@@ -1,21 +1,38 @@
 package com.makowski.messenger.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.makowski.messenger.broker.EventFanout;
+import com.makowski.messenger.dto.ChatMessagesDto;
+import com.makowski.messenger.dto.MessageDto;
 import com.makowski.messenger.entity.Chat;
-import com.makowski.messenger.entity.Message;
 import com.makowski.messenger.entity.User;
 import com.makowski.messenger.exception.AccessDeniedException;
 import com.makowski.messenger.exception.EntityNotFoundException;
+import com.makowski.messenger.exception.InvalidRequestException;
+import com.makowski.messenger.outbox.Outbox;
 import com.makowski.messenger.repository.ChatRepository;
+import com.makowski.messenger.repository.ChatSequenceRepository;
+import com.makowski.messenger.repository.MessageRepository;
 import com.makowski.messenger.testutils.TestDataFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,7 +43,25 @@ class ChatServiceTest {
     @Mock
     ChatRepository chatRepository;
     @Mock
+    ChatSequenceRepository chatSequenceRepository;
+    @Mock
+    MessageRepository messageRepository;
+    @Mock
     UserService userService;
+    @Mock
+    MessageJsonCache messageJsonCache;
+    @Mock
+    ResourceVersions resourceVersions;
+    @Mock
+    EventFanout eventFanout;
+    @Mock
+    RecentMessagesCache recentMessagesCache;
+    @Mock
+    ChangeLog changeLog;
+    @Mock
+    Outbox outbox;
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
 
 
     @Test
@@ -65,7 +100,8 @@ class ChatServiceTest {
         when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
 
         chatService.deleteChatIfExist(1L);
-        verify(chatRepository).deleteById(1L);
+        verify(chatRepository).deleteChatById(1L);
+        verify(eventFanout).usersChanged(List.of(1L));
     }
 
     @Test
@@ -73,7 +109,7 @@ class ChatServiceTest {
         when(chatRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(EntityNotFoundException.class, () -> chatService.deleteChatIfExist(1L));
-        verify(chatRepository, never()).deleteById(any(Long.class));
+        verify(chatRepository, never()).deleteChatById(any(Long.class));
     }
 
     @Test
@@ -87,31 +123,42 @@ class ChatServiceTest {
         when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
 
         assertThrows(AccessDeniedException.class, () -> chatService.deleteChatIfExist(1L));
-        verify(chatRepository, never()).deleteById(any(Long.class));
+        verify(chatRepository, never()).deleteChatById(any(Long.class));
     }
 
     @Test
     void deleteChatIfEmpty_DeletesChat_WhenChatIsEmpty() {
-        Chat chat = TestDataFactory.createTestChat();
-
-        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.existsByChatId(1L)).thenReturn(false);
 
         chatService.deleteChatIfEmpty(1L);
 
-        verify(chatRepository).deleteById(1L);
+        verify(chatRepository).deleteChatById(1L);
     }
 
     @Test
     void deleteChatIfEmpty_DoesNotDeleteChat_WhenChatIsNotEmpty() {
-        Message message = new Message();
-        Chat chat = TestDataFactory.createTestChat();
-        chat.getMessages().add(message);
-
-        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.existsByChatId(1L)).thenReturn(true);
 
         chatService.deleteChatIfEmpty(1L);
 
-        verify(chatRepository, never()).deleteById(any(Long.class));
+        verify(chatRepository, never()).deleteChatById(any(Long.class));
+    }
+
+    @Test
+    void deleteChat_DeletesMessagesInChunksAndThenChat() {
+        List<Long> fullChunk = new ArrayList<>();
+        for (long id = 0; id < 1000; id++) fullChunk.add(id);
+
+        when(messageRepository.findIdsByChatId(eq(1L), any(Pageable.class)))
+                .thenReturn(fullChunk)
+                .thenReturn(List.of(1000L));
+
+        chatService.deleteChat(1L);
+
+        verify(messageRepository).deleteByIdIn(fullChunk);
+        verify(messageRepository).deleteByIdIn(List.of(1000L));
+        verify(chatRepository).deleteChatById(1L);
+        verify(eventFanout).chatChanged(1L);
     }
 
     @Test
@@ -140,4 +187,159 @@ class ChatServiceTest {
 
         assertFalse(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void writeMessages_WritesOneJsonLinePerMessage() throws IOException {
+        when(messageRepository.streamByChatId(1L)).thenReturn(Stream.of(
+                new MessageDto(1L, 1L, 1L, Set.of(2L), false, LocalDateTime.of(2024, 1, 1, 12, 0), "first"),
+                new MessageDto(2L, 2L, 2L, Set.of(1L), true, LocalDateTime.of(2024, 1, 1, 12, 1), "second")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = chatService.writeMessages(1L, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"content\":\"first\""));
+        assertTrue(lines[1].contains("\"permanent\":true"));
+    }
+
+    @Test
+    void getMyChatMessages_SerializesOnlyMessagesMissingFromCache() throws IOException {
+        User user = TestDataFactory.createTestUser();
+        Chat chat = TestDataFactory.createTestChat();
+        chat.getMembers().add(user);
+        MessageDto missing = new MessageDto(2L, 2L, 1L, Set.of(2L), false, LocalDateTime.of(2024, 1, 1, 12, 1), "second");
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.findSeqsByChatIdAndSeqAfter(eq(1L), eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(messageRepository.findIdsByChatIdAndSeqBetween(1L, 1L, 2L)).thenReturn(List.of(1L, 2L));
+        when(messageJsonCache.getAll(List.of(1L, 2L))).thenReturn(new HashMap<>(Map.of(1L, "{\"id\":1}")));
+        when(messageRepository.findDtosByIdIn(List.of(2L))).thenReturn(List.of(missing));
+        when(messageJsonCache.put(missing)).thenReturn("{\"id\":2}");
+
+        ChatMessagesDto result = chatService.getMyChatMessages(1L);
+
+        assertEquals("{\"id\":1,\"messages\":[{\"id\":1},{\"id\":2}]}", objectMapper.writeValueAsString(result));
+    }
+
+    @Test
+    void getMyChatMessages_DoesNotQueryMessages_WhenAllAreCached() {
+        User user = TestDataFactory.createTestUser();
+        Chat chat = TestDataFactory.createTestChat();
+        chat.getMembers().add(user);
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.findSeqsByChatIdAndSeqAfter(eq(1L), eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(messageRepository.findIdsByChatIdAndSeqBetween(1L, 1L, 1L)).thenReturn(List.of(1L));
+        when(messageJsonCache.getAll(List.of(1L))).thenReturn(new HashMap<>(Map.of(1L, "{\"id\":1}")));
+
+        assertEquals(1, chatService.getMyChatMessages(1L).getMessages().size());
+        verify(messageRepository, never()).findDtosByIdIn(any());
+    }
+
+    @Test
+    void getMyChatMessages_ReadsChatInPages_WhenPageIsFull() {
+        User user = TestDataFactory.createTestUser();
+        Chat chat = TestDataFactory.createTestChat();
+        chat.getMembers().add(user);
+        List<Long> firstPage = LongStream.rangeClosed(1, 500).boxed().toList();
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.findSeqsByChatIdAndSeqAfter(eq(1L), eq(0L), any(Pageable.class))).thenReturn(firstPage);
+        when(messageRepository.findSeqsByChatIdAndSeqAfter(eq(1L), eq(500L), any(Pageable.class))).thenReturn(List.of(502L));
+        when(messageRepository.findIdsByChatIdAndSeqBetween(1L, 1L, 500L)).thenReturn(firstPage);
+        when(messageRepository.findIdsByChatIdAndSeqBetween(1L, 502L, 502L)).thenReturn(List.of(502L));
+        when(messageJsonCache.getAll(any())).thenAnswer(invocation -> {
+            Map<Long, String> cached = new HashMap<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) cached.put(id, "{\"id\":" + id + "}");
+            return cached;
+        });
+
+        assertEquals(501, chatService.getMyChatMessages(1L).getMessages().size());
+    }
+
+    @Test
+    void getMessagesJson_ReadsMissingMessagesInBoundedBatches() {
+        List<Long> ids = LongStream.rangeClosed(1, 1200).boxed().toList();
+
+        when(messageJsonCache.getAll(ids)).thenReturn(new HashMap<>());
+
+        chatService.getMessagesJson(ids);
+
+        verify(messageRepository).findDtosByIdIn(ids.subList(0, 500));
+        verify(messageRepository).findDtosByIdIn(ids.subList(500, 1000));
+        verify(messageRepository).findDtosByIdIn(ids.subList(1000, 1200));
+    }
+
+    @Test
+    void getMyChatHistory_ReturnsMessagesAfterSequenceNumber_WhenAfterGiven() throws IOException {
+        User user = TestDataFactory.createTestUser();
+        Chat chat = TestDataFactory.createTestChat();
+        chat.getMembers().add(user);
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.findIdsByChatIdAndSeqAfter(eq(1L), eq(5L), any(Pageable.class))).thenReturn(List.of(6L, 7L));
+        when(messageJsonCache.getAll(List.of(6L, 7L))).thenReturn(new HashMap<>(Map.of(6L, "{\"id\":6}", 7L, "{\"id\":7}")));
+
+        ChatMessagesDto result = chatService.getMyChatHistory(1L, 5L, null, 50);
+
+        assertEquals("{\"id\":1,\"messages\":[{\"id\":6},{\"id\":7}]}", objectMapper.writeValueAsString(result));
+    }
+
+    @Test
+    void getMyChatHistory_ReturnsOldestFirst_WhenPagingBack() throws IOException {
+        User user = TestDataFactory.createTestUser();
+        Chat chat = TestDataFactory.createTestChat();
+        chat.getMembers().add(user);
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.findIdsByChatIdAndSeqBefore(eq(1L), eq(Long.MAX_VALUE), any(Pageable.class))).thenReturn(List.of(7L, 6L));
+        when(messageJsonCache.getAll(List.of(6L, 7L))).thenReturn(new HashMap<>(Map.of(6L, "{\"id\":6}", 7L, "{\"id\":7}")));
+
+        ChatMessagesDto result = chatService.getMyChatHistory(1L, null, null, 2);
+
+        assertEquals("{\"id\":1,\"messages\":[{\"id\":6},{\"id\":7}]}", objectMapper.writeValueAsString(result));
+    }
+
+    @Test
+    void getMyChatHistory_ServesLatestPageFromMemory_WhenChatIsHeld() throws IOException {
+        User user = TestDataFactory.createTestUser();
+        Chat chat = TestDataFactory.createTestChat();
+        chat.getMembers().add(user);
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(recentMessagesCache.latest(1L, 2)).thenReturn(Optional.of(List.of("{\"id\":6}", "{\"id\":7}")));
+
+        ChatMessagesDto result = chatService.getMyChatHistory(1L, null, null, 2);
+
+        assertEquals("{\"id\":1,\"messages\":[{\"id\":6},{\"id\":7}]}", objectMapper.writeValueAsString(result));
+        verifyNoInteractions(messageRepository, messageJsonCache);
+    }
+
+    @Test
+    void getMyChatHistory_ThrowsException_WhenAfterAndBeforeGiven() {
+        assertThrows(InvalidRequestException.class, () -> chatService.getMyChatHistory(1L, 1L, 5L, 50));
+        assertThrows(InvalidRequestException.class, () -> chatService.getMyChatHistory(1L, null, null, ChatService.MAX_HISTORY_PAGE + 1));
+    }
+
+    @Test
+    void markMyChatRead_ThrowsException_WhenSequenceNumberIsBeyondLastMessage() {
+        User user = TestDataFactory.createTestUser();
+        Chat chat = TestDataFactory.createTestChat();
+        chat.getMembers().add(user);
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(chatRepository.findById(1L)).thenReturn(Optional.of(chat));
+        when(chatSequenceRepository.findLastSeq(1L)).thenReturn(3L);
+
+        assertThrows(InvalidRequestException.class, () -> chatService.markMyChatRead(1L, 4L));
+        verify(chatSequenceRepository, never()).markRead(any(), any(), anyLong());
+    }
+}
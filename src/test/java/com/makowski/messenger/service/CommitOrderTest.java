@@ -0,0 +1,142 @@
+package com.makowski.messenger.service;
+
+import com.makowski.messenger.dto.ChangeDto;
+import com.makowski.messenger.dto.SyncDto;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.OutboxEvent;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.outbox.InMemoryOutboxSink;
+import com.makowski.messenger.outbox.Outbox;
+import com.makowski.messenger.outbox.OutboxRelay;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Commits change log entries and outbox events out of id order against the embedded database.
+ */
+@SpringBootTest
+class CommitOrderTest {
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    MessageService messageService;
+    @Autowired
+    SyncService syncService;
+    @Autowired
+    ChangeLog changeLog;
+    @Autowired
+    Outbox outbox;
+    @Autowired
+    OutboxRelay outboxRelay;
+    @Autowired
+    InMemoryOutboxSink memorySink;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    CommitSequence commitSequence;
+
+    @Test
+    void sync_ReturnsEntry_WhenItsTransactionCommitsAfterALaterOne() throws Exception {
+        String prefix = "order" + UUID.randomUUID().toString().substring(0, 8);
+        userService.createUser(new User(prefix + 0, "password", "Order", "Test"));
+        Long receiverId = userService.createUser(new User(prefix + 1, "password", "Order", "Test")).getUserId();
+        logIn(prefix + 0);
+        Message first = messageService.saveMessage(createMessage(receiverId));
+        Message second = messageService.saveMessage(createMessage(receiverId));
+        Long chatId = first.getChat().getId();
+        commitSequence.position();
+        String token = syncService.sync(null).getToken();
+
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> slow = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            changeLog.messageChanged(chatId, first.getId());
+            written.countDown();
+            try {
+                assertTrue(release.await(30, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertTrue(written.await(30, TimeUnit.SECONDS));
+        changeLog.messageChanged(chatId, second.getId());
+        commitSequence.position();
+
+        SyncDto beforeSlowCommit = syncService.sync(token);
+        assertEquals(List.of(second.getId()), messageIds(beforeSlowCommit));
+        release.countDown();
+        slow.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        commitSequence.position();
+
+        SyncDto afterSlowCommit = syncService.sync(beforeSlowCommit.getToken());
+        assertEquals(List.of(first.getId()), messageIds(afterSlowCommit));
+    }
+
+    @Test
+    void relay_PublishesEvent_WhenItsTransactionCommitsAfterALaterOne() throws Exception {
+        String prefix = "relay" + UUID.randomUUID().toString().substring(0, 8);
+        userService.createUser(new User(prefix + 0, "password", "Relay", "Test"));
+        Long receiverId = userService.createUser(new User(prefix + 1, "password", "Relay", "Test")).getUserId();
+        logIn(prefix + 0);
+        Message first = messageService.saveMessage(createMessage(receiverId));
+        Message second = messageService.saveMessage(createMessage(receiverId));
+        commitSequence.position();
+        outboxRelay.relay();
+
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> slow = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            outbox.chatDeleted(first.getChat().getId());
+            written.countDown();
+            try {
+                assertTrue(release.await(30, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertTrue(written.await(30, TimeUnit.SECONDS));
+        outbox.messageUpdated(second);
+        commitSequence.position();
+        outboxRelay.relay();
+        release.countDown();
+        slow.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        commitSequence.position();
+        outboxRelay.relay();
+
+        List<OutboxEvent> events = memorySink.getEvents();
+        OutboxEvent updated = events.get(events.size() - 2);
+        OutboxEvent deleted = events.get(events.size() - 1);
+        assertEquals(OutboxEvent.Type.MESSAGE_UPDATED, updated.getType());
+        assertEquals(OutboxEvent.Type.CHAT_DELETED, deleted.getType());
+        assertTrue(deleted.getId() < updated.getId());
+    }
+
+    private List<Long> messageIds(SyncDto sync) {
+        return sync.getChanges().stream().map(ChangeDto::getMessageId).toList();
+    }
+
+    private Message createMessage(Long receiverId) {
+        Message message = new Message();
+        message.setReceiverId(new HashSet<>(List.of(receiverId)));
+        message.setContent("order");
+        return message;
+    }
+
+    private void logIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
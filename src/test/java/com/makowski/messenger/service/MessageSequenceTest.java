@@ -0,0 +1,78 @@
+package com.makowski.messenger.service;
+
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sends messages to one chat from several threads at once against the embedded database.
+ */
+@SpringBootTest
+class MessageSequenceTest {
+
+    private static final int SENDERS = 4;
+    private static final int MESSAGES_PER_SENDER = 10;
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    MessageService messageService;
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Test
+    void saveMessage_AssignsGaplessSequenceNumbers_WhenSendersRunConcurrently() throws Exception {
+        String prefix = "seq" + UUID.randomUUID().toString().substring(0, 8);
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            userIds.add(userService.createUser(new User(prefix + i, "password", "Sequence", "Test" + i)).getUserId());
+        }
+        logIn(prefix + 0);
+        Long chatId = messageService.saveMessage(createMessage(userIds)).getChat().getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(SENDERS);
+        List<Future<?>> senders = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            String username = prefix + i;
+            senders.add(executor.submit(() -> {
+                logIn(username);
+                for (int m = 0; m < MESSAGES_PER_SENDER; m++) messageService.saveMessage(createMessage(userIds));
+                return null;
+            }));
+        }
+        for (Future<?> sender : senders) sender.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        List<Long> seqs = messageRepository.findSeqsByChatIdAndSeqAfter(chatId, 0, Pageable.unpaged());
+        long expected = 1 + SENDERS * MESSAGES_PER_SENDER;
+        assertEquals(LongStream.rangeClosed(1, expected).boxed().toList(), seqs);
+        logIn(prefix + 0);
+        assertTrue(chatService.getMyUnread().stream()
+                .anyMatch(unread -> unread.getChatId().equals(chatId) && unread.getLastSeq() == expected));
+    }
+
+    private Message createMessage(List<Long> receivers) {
+        Message message = new Message();
+        message.setReceiverId(new HashSet<>(receivers));
+        message.setContent("sequence");
+        return message;
+    }
+
+    private void logIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
@@ -1,5 +1,6 @@
 package com.makowski.messenger.service;
 
+import com.makowski.messenger.broker.EventFanout;
 import com.makowski.messenger.entity.Chat;
 import com.makowski.messenger.entity.Message;
 import com.makowski.messenger.entity.User;
@@ -7,13 +8,19 @@ import com.makowski.messenger.exception.AccessDeniedException;
 import com.makowski.messenger.exception.EntityNotFoundException;
 import com.makowski.messenger.exception.InvalidRequestException;
 import com.makowski.messenger.exception.NoReceiversException;
+import com.makowski.messenger.outbox.Outbox;
 import com.makowski.messenger.repository.MessageRepository;
 import com.makowski.messenger.testutils.TestDataFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
 
@@ -28,9 +35,25 @@ class MessageServiceTest {
     @Mock
     MessageRepository messageRepository;
     @Mock
+    MessageIdAllocator messageIdAllocator;
+    @Spy
+    TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    @Mock
     UserService userService;
     @Mock
     ChatService chatService;
+    @Mock
+    MessageJsonCache messageJsonCache;
+    @Mock
+    ChangeLog changeLog;
+    @Mock
+    Outbox outbox;
+    @Mock
+    RecentMessagesCache recentMessagesCache;
+    @Mock
+    EventFanout eventFanout;
+    @Spy
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @Test
     void saveMessage_ReturnsMessageAndAddsNewChat_WhenMessageIsSuccessfullyCreatedAndNewChatIsNeeded() {
@@ -47,8 +70,116 @@ class MessageServiceTest {
 
         assertEquals(message.getContent(), result.getContent());
         assertEquals(2, result.getChat().getMembers().size());
+        assertEquals(1, meterRegistry.counter("messenger.chat.created").count());
         verify(messageRepository).save(message);
         verify(chatService).saveChat(any());
+        verify(changeLog).membersChanged(result.getChat().getId());
+        verify(eventFanout).usersChanged(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(1L, 2L))));
+        verify(eventFanout).chatChanged(result.getChat().getId());
+    }
+
+    @Test
+    void saveMessage_AssignsSequenceNumberAndMarksItReadForSender() {
+        User user = TestDataFactory.createTestUser();
+        User receiver = TestDataFactory.createAnotherTestUser();
+        Message message = TestDataFactory.createTestMessage();
+
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(userService.existsById(2L)).thenReturn(true);
+        when(userService.getUser(2L)).thenReturn(receiver);
+        when(chatService.nextSeq(any())).thenReturn(7L);
+        when(messageRepository.save(message)).thenReturn(message);
+
+        Message result = messageService.saveMessage(message);
+
+        assertEquals(7L, result.getSeq());
+        verify(chatService).markRead(result.getChat().getId(), 1L, 7L);
+    }
+
+    @Test
+    void saveMessage_UsesAllocatedId() {
+        User user = TestDataFactory.createTestUser();
+        User receiver = TestDataFactory.createAnotherTestUser();
+        Message message = TestDataFactory.createTestMessage();
+
+        when(messageIdAllocator.next()).thenReturn(42L);
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(userService.existsById(2L)).thenReturn(true);
+        when(userService.getUser(2L)).thenReturn(receiver);
+        when(messageRepository.save(message)).thenReturn(message);
+
+        Message result = messageService.saveMessage(message);
+
+        assertEquals(42L, result.getId());
+    }
+
+    @Test
+    void acceptMessage_ReturnsMessageWithIdAndChatWithoutSavingIt() {
+        User user = TestDataFactory.createTestUser();
+        User receiver = TestDataFactory.createAnotherTestUser();
+        Message message = TestDataFactory.createTestMessage();
+
+        when(messageIdAllocator.next()).thenReturn(42L);
+        when(userService.getLoggedUser()).thenReturn(user);
+        when(userService.existsById(2L)).thenReturn(true);
+        when(userService.getUser(2L)).thenReturn(receiver);
+
+        Message result = messageService.acceptMessage(message);
+
+        assertEquals(42L, result.getId());
+        assertNotNull(result.getChat());
+        assertNull(result.getSeq());
+        verify(chatService).saveChat(any());
+        verifyNoInteractions(messageRepository);
+        verify(chatService, never()).nextSeq(any());
+    }
+
+    @Test
+    void insertAccepted_NumbersMessagesPerChatInAcceptanceOrder() {
+        Chat first = TestDataFactory.createTestChat();
+        Chat second = TestDataFactory.createTestChat();
+        second.setId(2L);
+        Message a = acceptedMessage(10L, first, 1L);
+        Message b = acceptedMessage(11L, second, 1L);
+        Message c = acceptedMessage(12L, first, 2L);
+        Message d = acceptedMessage(13L, first, 1L);
+
+        when(chatService.lockMembers(eq(1L), any())).thenReturn(Set.of(1L, 2L));
+        when(chatService.lockMembers(eq(2L), any())).thenReturn(Set.of(1L, 3L));
+        when(chatService.nextSeqs(1L, 3)).thenReturn(8L);
+        when(chatService.nextSeqs(2L, 1)).thenReturn(3L);
+
+        assertEquals(List.of(), messageService.insertAccepted(List.of(a, b, c, d)));
+
+        assertEquals(List.of(6L, 3L, 7L, 8L), List.of(a.getSeq(), b.getSeq(), c.getSeq(), d.getSeq()));
+        verify(messageRepository).saveAll(List.of(a, b, c, d));
+        verify(chatService).markRead(1L, 1L, 8L);
+        verify(chatService).markRead(1L, 2L, 7L);
+        verify(chatService).markRead(2L, 1L, 3L);
+        verify(outbox, times(4)).messageCreated(any());
+        verify(eventFanout).chatsChanged(Set.of(1L, 2L));
+    }
+
+    @Test
+    void insertAccepted_RefusesMessages_WhenChatIsDeletedOrSenderLeftIt() {
+        Chat first = TestDataFactory.createTestChat();
+        Chat second = TestDataFactory.createTestChat();
+        second.setId(2L);
+        Message kept = acceptedMessage(10L, first, 1L);
+        Message senderLeft = acceptedMessage(11L, first, 2L);
+        Message chatDeleted = acceptedMessage(12L, second, 1L);
+
+        when(chatService.lockMembers(eq(1L), any())).thenReturn(Set.of(1L));
+        when(chatService.lockMembers(eq(2L), any())).thenReturn(Set.of());
+        when(chatService.nextSeqs(1L, 1)).thenReturn(4L);
+
+        List<Message> refused = messageService.insertAccepted(List.of(kept, senderLeft, chatDeleted));
+
+        assertEquals(List.of(senderLeft, chatDeleted), refused);
+        verify(messageRepository).saveAll(List.of(kept));
+        verify(chatService, never()).nextSeqs(eq(2L), anyInt());
+        verify(changeLog, never()).messageChanged(any(), eq(11L));
+        verify(eventFanout).chatsChanged(Set.of(1L));
     }
 
     @Test
@@ -86,6 +217,7 @@ class MessageServiceTest {
     void updateMessage_ReturnsMessage_WhenSuccessfullyUpdated() {
         User user = TestDataFactory.createTestUser();
         Message message = TestDataFactory.createTestMessage();
+        message.setChat(TestDataFactory.createTestChat());
 
         when(userService.getLoggedUser()).thenReturn(user);
         when(messageRepository.findById(1L)).thenReturn(Optional.of(message));
@@ -95,6 +227,9 @@ class MessageServiceTest {
 
         assertEquals("update test", result.getContent());
         verify(messageRepository).save(message);
+        verify(messageJsonCache).evict(1L);
+        verify(changeLog).messageChanged(message.getChat().getId(), 1L);
+        verify(eventFanout).messageChanged(message.getChat().getId(), 1L);
     }
 
     @Test
@@ -139,6 +274,7 @@ class MessageServiceTest {
         User user = TestDataFactory.createTestUser();
 
         Message message = TestDataFactory.createTestMessage();
+        message.setChat(TestDataFactory.createTestChat());
 
         when(userService.getLoggedUser()).thenReturn(user);
         when(messageRepository.findById(1L)).thenReturn(Optional.of(message));
@@ -147,6 +283,8 @@ class MessageServiceTest {
         Message result = messageService.changeFlag(1L);
 
         assertTrue(result.isPermanent());
+        verify(messageJsonCache).evict(1L);
+        verify(eventFanout).messageChanged(message.getChat().getId(), 1L);
     }
 
     @Test
@@ -181,6 +319,7 @@ class MessageServiceTest {
         messageService.deleteMessage(1L);
 
         verify(messageRepository).deleteById(1L);
+        verify(eventFanout).messageChanged(chat.getId(), 1L);
     }
 
     @Test
@@ -260,4 +399,12 @@ class MessageServiceTest {
     void checkLength_ThrowsException_WhenMessageIsTooLong() {
         assertThrows(InvalidRequestException.class, () -> messageService.checkLength(201));
     }
-}
\ No newline at end of file
+
+    private Message acceptedMessage(Long id, Chat chat, Long senderId) {
+        Message message = TestDataFactory.createTestMessage();
+        message.setId(id);
+        message.setChat(chat);
+        message.setSenderId(senderId);
+        return message;
+    }
+}
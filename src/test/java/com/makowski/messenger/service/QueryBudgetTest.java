@@ -0,0 +1,100 @@
+package com.makowski.messenger.service;
+
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.monitoring.QueryCounter;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+import static com.makowski.messenger.testutils.QueryCountAssertions.assertMaxQueries;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs service hot paths against the embedded database and fails when they execute more SQL statements than budgeted.
+ * Every call runs in its own transaction, like a request with open-session-in-view, and starts with a cold second-level cache.
+ */
+@SpringBootTest
+class QueryBudgetTest {
+
+    private static final int CONTACTS = 4;
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    MessageService messageService;
+    @Autowired
+    QueryCounter queryCounter;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    String owner;
+    List<Long> contactIds = new ArrayList<>();
+
+    @BeforeEach
+    void createUsersWithChatsAndContacts() {
+        String prefix = "budget" + UUID.randomUUID().toString().substring(0, 8);
+        owner = prefix + "owner";
+        userService.createUser(new User(owner, "password", "Query", "Budget"));
+        for (int i = 0; i < CONTACTS; i++) {
+            contactIds.add(userService.createUser(new User(prefix + "contact" + i, "password", "Contact", "Budget" + i)).getUserId());
+        }
+        logIn(owner);
+        for (Long contactId : contactIds) {
+            transactionTemplate.executeWithoutResult(status -> userService.addToContactList(contactId));
+            transactionTemplate.executeWithoutResult(status -> messageService.saveMessage(createMessage(Set.of(contactId))));
+        }
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void getUsersChats_StaysWithinQueryBudget() {
+        var chats = assertMaxQueries(queryCounter, 2 + CONTACTS, () -> transactionTemplate.execute(status -> userService.getUsersChats()));
+
+        assertEquals(CONTACTS, chats.size());
+    }
+
+    @Test
+    void getMyContactList_StaysWithinQueryBudget() {
+        var contacts = assertMaxQueries(queryCounter, 1 + CONTACTS, () -> transactionTemplate.execute(status -> userService.getMyContactList()));
+
+        assertEquals(CONTACTS, contacts.size());
+    }
+
+    @Test
+    void findUser_StaysWithinQueryBudget() {
+        var users = assertMaxQueries(queryCounter, 1, () -> transactionTemplate.execute(status -> userService.findUser(owner)));
+
+        assertEquals(1, users.size());
+    }
+
+    // the sequence number, change log, outbox and read position take a fixed number of statements, whatever the
+    // chat size; commit positions are given outside the transaction
+    @Test
+    void saveMessage_StaysWithinQueryBudget_WhenChatAlreadyExists() {
+        Message message = assertMaxQueries(queryCounter, 6 + CONTACTS,
+                () -> transactionTemplate.execute(status -> messageService.saveMessage(createMessage(Set.of(contactIds.get(0))))));
+
+        assertNotNull(message.getId());
+    }
+
+    private Message createMessage(Set<Long> receivers) {
+        Message message = new Message();
+        message.setReceiverId(receivers);
+        message.setContent("query budget");
+        return message;
+    }
+
+    private void logIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
@@ -0,0 +1,170 @@
+package com.makowski.messenger.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.makowski.messenger.dto.MessageDto;
+import com.makowski.messenger.entity.Message;
+import com.makowski.messenger.repository.ChatSequenceRepository;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.testutils.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecentMessagesCacheTest {
+
+    private static final int PER_CHAT = 5;
+    private static final int MAX_CHATS = 2;
+
+    @Mock
+    MessageRepository messageRepository;
+    @Mock
+    ChatSequenceRepository chatSequenceRepository;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    RecentMessagesCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RecentMessagesCache(messageRepository, chatSequenceRepository, new ObjectMapper().registerModule(new JavaTimeModule()),
+                meterRegistry, PER_CHAT, MAX_CHATS);
+    }
+
+    @Test
+    void latest_ServesSecondReadFromMemory_WhenChatWasLoaded() {
+        inDatabase(1L, 3, 1, 2, 3);
+
+        assertEquals(List.of(2L, 3L), seqs(cache.latest(1L, 2)));
+        assertEquals(List.of(1L, 2L, 3L), seqs(cache.latest(1L, 3)));
+
+        verify(messageRepository, times(1)).findDtosByIdIn(any());
+        assertEquals(1, meterRegistry.counter("messenger.recent_messages.requests", "result", "miss").count());
+        assertEquals(1, meterRegistry.counter("messenger.recent_messages.requests", "result", "hit").count());
+        assertTrue(cache.estimatedBytes() > 0);
+    }
+
+    @Test
+    void latest_ReturnsEmpty_WhenMoreAskedForThanWindowHolds() {
+        assertTrue(cache.latest(1L, PER_CHAT + 1).isEmpty());
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void latest_IncludesWrites_WhenMessagesSavedUpdatedAndDeletedAfterLoad() {
+        inDatabase(1L, 3, 1, 2, 3);
+        cache.latest(1L, 1);
+
+        cache.messageSaved(message(1L, 4, "fourth"));
+        cache.messageUpdated(message(1L, 2, "edited"));
+        cache.messageDeleted(message(1L, 3, "third"));
+
+        List<String> latest = cache.latest(1L, 3).orElseThrow();
+        assertEquals(List.of(1L, 2L, 4L), seqs(Optional.of(latest)));
+        assertTrue(latest.get(1).contains("edited"));
+        verify(messageRepository, times(1)).findDtosByIdIn(any());
+    }
+
+    @Test
+    void latest_ReadsDatabase_WhenEarlierSequenceNumberHasNotArrivedYet() {
+        inDatabase(1L, 3, 1, 2, 3);
+        cache.latest(1L, 1);
+
+        cache.messageSaved(message(1L, 5, "fifth"));
+        cache.latest(1L, 1);
+        cache.messageSaved(message(1L, 4, "fourth"));
+
+        assertEquals(List.of(4L, 5L), seqs(cache.latest(1L, 2)));
+        verify(messageRepository, times(2)).findDtosByIdIn(any());
+    }
+
+    @Test
+    void latest_AcceptsNextMessage_WhenLatestMessagesWereDeletedBeforeLoad() {
+        inDatabase(1L, 5, 1, 2, 3);
+        cache.latest(1L, 1);
+
+        cache.messageSaved(message(1L, 6, "sixth"));
+
+        assertEquals(List.of(3L, 6L), seqs(cache.latest(1L, 2)));
+        verify(messageRepository, times(1)).findDtosByIdIn(any());
+    }
+
+    @Test
+    void latest_ReadsDatabase_WhenOlderMessagesThanWindowHoldsAreNeeded() {
+        inDatabase(1L, 7, 3, 4, 5, 6, 7);
+        cache.latest(1L, 1);
+        cache.messageDeleted(message(1L, 7, "seventh"));
+
+        assertEquals(List.of(3L, 4L, 5L, 6L), seqs(cache.latest(1L, 4)));
+        assertTrue(cache.latest(1L, 5).isPresent());
+        verify(messageRepository, times(2)).findDtosByIdIn(any());
+    }
+
+    @Test
+    void latest_EvictsLeastRecentlyUsedChat_WhenMoreChatsThanMaxChats() {
+        inDatabase(1L, 1, 1);
+        inDatabase(2L, 1, 1);
+        inDatabase(3L, 1, 1);
+
+        cache.latest(1L, 1);
+        cache.latest(2L, 1);
+        cache.latest(1L, 1);
+        cache.latest(3L, 1);
+        cache.latest(1L, 1);
+
+        assertEquals(1, meterRegistry.counter("messenger.recent_messages.evictions").count());
+        assertEquals(3, meterRegistry.counter("messenger.recent_messages.requests", "result", "miss").count());
+        assertEquals(2, meterRegistry.counter("messenger.recent_messages.requests", "result", "hit").count());
+    }
+
+    @Test
+    void evictChat_DropsWindow_WhenChatChangedOutsideMessageService() {
+        inDatabase(1L, 3, 1, 2, 3);
+        cache.latest(1L, 1);
+
+        cache.evictChat(1L);
+        cache.latest(1L, 1);
+
+        verify(messageRepository, times(2)).findDtosByIdIn(any());
+    }
+
+    // messages with the given sequence numbers, ids equal to them, and the chat's last number
+    private void inDatabase(Long chatId, long lastSeq, long... seqs) {
+        List<Long> ids = LongStream.of(seqs).boxed().sorted(Comparator.reverseOrder()).toList();
+        lenient().when(chatSequenceRepository.findLastSeq(chatId)).thenReturn(lastSeq);
+        lenient().when(messageRepository.findIdsByChatIdAndSeqBefore(eq(chatId), eq(Long.MAX_VALUE), any(Pageable.class)))
+                .thenAnswer(invocation -> ids.subList(0, Math.min(ids.size(), invocation.<Pageable>getArgument(2).getPageSize())));
+        lenient().when(messageRepository.findDtosByIdIn(argThat(requested -> requested != null && ids.containsAll(requested))))
+                .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream()
+                        .map(seq -> MessageDto.from(message(chatId, seq, "message " + seq))).toList());
+    }
+
+    private Message message(Long chatId, long seq, String content) {
+        Message message = TestDataFactory.createTestMessage();
+        message.setId(seq);
+        message.setSeq(seq);
+        message.setContent(content);
+        message.setDateTime(LocalDateTime.of(2024, 1, 1, 12, 0));
+        message.setChat(TestDataFactory.createTestChat());
+        message.getChat().setId(chatId);
+        return message;
+    }
+
+    private List<Long> seqs(Optional<List<String>> messages) {
+        return messages.orElseThrow().stream()
+                .map(json -> Long.valueOf(json.replaceAll(".*\"seq\":(\\d+).*", "$1")))
+                .toList();
+    }
+}
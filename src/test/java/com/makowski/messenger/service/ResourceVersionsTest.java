@@ -0,0 +1,80 @@
+package com.makowski.messenger.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceVersionsTest {
+
+    ResourceVersions resourceVersions = new ResourceVersions();
+
+    @Test
+    void chatTag_Changes_WhenChatChanged() {
+        String tag = resourceVersions.chatTag(1L);
+
+        resourceVersions.chatChanged(1L);
+
+        assertNotEquals(tag, resourceVersions.chatTag(1L));
+    }
+
+    @Test
+    void chatTag_StaysTheSame_WhenOtherChatOrUserChanged() {
+        String tag = resourceVersions.chatTag(1L);
+
+        resourceVersions.chatChanged(2L);
+        resourceVersions.userChanged(1L);
+
+        assertEquals(tag, resourceVersions.chatTag(1L));
+    }
+
+    @Test
+    void userTags_Change_WhenProfilesChanged() {
+        String chatList = resourceVersions.chatListTag(1L);
+        String contacts = resourceVersions.contactsTag(1L);
+
+        resourceVersions.profilesChanged();
+
+        assertNotEquals(chatList, resourceVersions.chatListTag(1L));
+        assertNotEquals(contacts, resourceVersions.contactsTag(1L));
+    }
+
+    @Test
+    void tags_AreStrongAndDifferPerResource() {
+        String tag = resourceVersions.chatListTag(1L);
+
+        assertTrue(tag.startsWith("\"") && tag.endsWith("\""));
+        assertNotEquals(tag, resourceVersions.contactsTag(1L));
+        assertNotEquals(tag, resourceVersions.chatListTag(2L));
+    }
+
+    @Test
+    void chatsChanged_BumpsVersionAfterTransactionCompletes_WhenTransactionIsActive() {
+        String tag = resourceVersions.chatTag(1L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            resourceVersions.chatsChanged(List.of(1L));
+            assertEquals(tag, resourceVersions.chatTag(1L));
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNotEquals(tag, resourceVersions.chatTag(1L));
+    }
+
+    @Test
+    void invalidateAll_ChangesEveryTag() {
+        String chat = resourceVersions.chatTag(1L);
+        String contacts = resourceVersions.contactsTag(1L);
+
+        resourceVersions.invalidateAll();
+
+        assertNotEquals(chat, resourceVersions.chatTag(1L));
+        assertNotEquals(contacts, resourceVersions.contactsTag(1L));
+    }
+}
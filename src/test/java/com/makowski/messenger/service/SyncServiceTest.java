@@ -0,0 +1,182 @@
+package com.makowski.messenger.service;
+
+import com.makowski.messenger.dto.ChangeDto;
+import com.makowski.messenger.dto.SyncDto;
+import com.makowski.messenger.entity.ChangeLogEntry;
+import com.makowski.messenger.exception.InvalidRequestException;
+import com.makowski.messenger.repository.ChangeLogRepository;
+import com.makowski.messenger.testutils.TestDataFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncServiceTest {
+
+    @InjectMocks
+    SyncService syncService;
+    @Mock
+    ChangeLogRepository changeLogRepository;
+    @Mock
+    ChatService chatService;
+    @Mock
+    UserService userService;
+    @Mock
+    CommitSequence commitSequence;
+
+    @Test
+    void sync_ReturnsOnlyToken_WhenNoTokenGiven() {
+        when(commitSequence.lastPosition()).thenReturn(42L);
+
+        SyncDto result = syncService.sync(null);
+
+        assertEquals("42", result.getToken());
+        assertTrue(result.getChanges().isEmpty());
+        verify(changeLogRepository, never()).findChanges(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void sync_ReturnsLatestChangePerMessage_WhenMessageChangedSeveralTimes() {
+        when(changeLogRepository.findMinCommitSeq()).thenReturn(1L);
+        when(userService.getLoggedUser()).thenReturn(TestDataFactory.createTestUser());
+        when(changeLogRepository.findChanges(eq(1L), eq(10L), eq(Long.MAX_VALUE), any(Pageable.class))).thenReturn(List.of(
+                entry(11L, 5L, 100L, ChangeLogEntry.Type.MESSAGE),
+                entry(12L, 5L, 101L, ChangeLogEntry.Type.MESSAGE),
+                entry(13L, 5L, 100L, ChangeLogEntry.Type.MESSAGE),
+                entry(14L, 5L, 101L, ChangeLogEntry.Type.MESSAGE_DELETED)));
+        when(chatService.getMessagesJson(List.of(100L))).thenReturn(new HashMap<>(Map.of(100L, "{\"id\":100}")));
+
+        SyncDto result = syncService.sync("10");
+
+        assertEquals("14.14", result.getToken());
+        assertFalse(result.isMore());
+        List<ChangeDto> changes = result.getChanges();
+        assertEquals(2, changes.size());
+        assertEquals(100L, changes.get(0).getMessageId());
+        assertEquals("{\"id\":100}", changes.get(0).getMessage().toString());
+        assertEquals(ChangeLogEntry.Type.MESSAGE_DELETED, changes.get(1).getType());
+        assertNull(changes.get(1).getMessage());
+    }
+
+    @Test
+    void sync_ReplacesMessageChanges_WhenChatDeleted() {
+        when(changeLogRepository.findMinCommitSeq()).thenReturn(1L);
+        when(userService.getLoggedUser()).thenReturn(TestDataFactory.createTestUser());
+        when(changeLogRepository.findChanges(eq(1L), eq(10L), eq(Long.MAX_VALUE), any(Pageable.class))).thenReturn(List.of(
+                entry(11L, 5L, 100L, ChangeLogEntry.Type.MESSAGE),
+                entry(12L, 6L, 200L, ChangeLogEntry.Type.MESSAGE_DELETED),
+                entry(13L, 5L, null, ChangeLogEntry.Type.CHAT_DELETED)));
+
+        SyncDto result = syncService.sync("10");
+
+        assertEquals(2, result.getChanges().size());
+        assertEquals(200L, result.getChanges().get(0).getMessageId());
+        assertEquals(ChangeLogEntry.Type.CHAT_DELETED, result.getChanges().get(1).getType());
+        verify(chatService, never()).getMessagesJson(any());
+    }
+
+    @Test
+    void sync_SkipsMessage_WhenItNoLongerExists() {
+        when(changeLogRepository.findMinCommitSeq()).thenReturn(1L);
+        when(userService.getLoggedUser()).thenReturn(TestDataFactory.createTestUser());
+        when(changeLogRepository.findChanges(eq(1L), eq(10L), eq(Long.MAX_VALUE), any(Pageable.class)))
+                .thenReturn(List.of(entry(11L, 5L, 100L, ChangeLogEntry.Type.MESSAGE)));
+        when(chatService.getMessagesJson(List.of(100L))).thenReturn(new HashMap<>());
+
+        SyncDto result = syncService.sync("10");
+
+        assertEquals("11.11", result.getToken());
+        assertTrue(result.getChanges().isEmpty());
+    }
+
+    @Test
+    void sync_ReturnsOnePageAndMore_WhenMoreChangesAreWaiting() {
+        List<ChangeLogEntry> entries = LongStream.rangeClosed(1, SyncService.PAGE_SIZE + 1)
+                .mapToObj(id -> entry(id, 5L, id, ChangeLogEntry.Type.MESSAGE_DELETED))
+                .toList();
+        when(changeLogRepository.findMinCommitSeq()).thenReturn(1L);
+        when(userService.getLoggedUser()).thenReturn(TestDataFactory.createTestUser());
+        when(changeLogRepository.findChanges(eq(1L), eq(0L), eq(Long.MAX_VALUE), any(Pageable.class))).thenReturn(entries);
+
+        SyncDto result = syncService.sync("0");
+
+        assertTrue(result.isMore());
+        assertEquals(SyncService.PAGE_SIZE + "." + SyncService.PAGE_SIZE, result.getToken());
+        assertEquals(SyncService.PAGE_SIZE, result.getChanges().size());
+    }
+
+    @Test
+    void sync_RequiresResync_WhenChangesSinceTokenWerePruned() {
+        when(changeLogRepository.findMinCommitSeq()).thenReturn(100L);
+        when(commitSequence.lastPosition()).thenReturn(150L);
+
+        SyncDto result = syncService.sync("10");
+
+        assertTrue(result.isResyncRequired());
+        assertEquals("150", result.getToken());
+        verify(changeLogRepository, never()).findChanges(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void sync_ContinuesWithinPosition_WhenTokenHasEntryId() {
+        when(changeLogRepository.findMinCommitSeq()).thenReturn(1L);
+        when(userService.getLoggedUser()).thenReturn(TestDataFactory.createTestUser());
+        ChangeLogEntry late = entry(9L, 5L, 100L, ChangeLogEntry.Type.MESSAGE_DELETED);
+        late.setCommitSeq(20L);
+        when(changeLogRepository.findChanges(eq(1L), eq(20L), eq(7L), any(Pageable.class))).thenReturn(List.of(late));
+
+        SyncDto result = syncService.sync("20.7");
+
+        assertEquals("20.9", result.getToken());
+        assertEquals(1, result.getChanges().size());
+    }
+
+    @Test
+    void sync_ReturnsLatestMembershipChangePerChat_WhenMembersChangedSeveralTimes() {
+        when(changeLogRepository.findMinCommitSeq()).thenReturn(1L);
+        when(userService.getLoggedUser()).thenReturn(TestDataFactory.createTestUser());
+        when(changeLogRepository.findChanges(eq(1L), eq(10L), eq(Long.MAX_VALUE), any(Pageable.class))).thenReturn(List.of(
+                entry(11L, 5L, null, ChangeLogEntry.Type.MEMBERS_CHANGED),
+                entry(12L, 6L, 200L, ChangeLogEntry.Type.MESSAGE_DELETED),
+                entry(13L, 5L, null, ChangeLogEntry.Type.MEMBERS_CHANGED)));
+
+        SyncDto result = syncService.sync("10");
+
+        assertEquals(2, result.getChanges().size());
+        assertEquals(ChangeLogEntry.Type.MESSAGE_DELETED, result.getChanges().get(0).getType());
+        assertEquals(ChangeLogEntry.Type.MEMBERS_CHANGED, result.getChanges().get(1).getType());
+        assertEquals(5L, result.getChanges().get(1).getChatId());
+        verify(chatService, never()).getMessagesJson(any());
+    }
+
+    @Test
+    void sync_ThrowsException_WhenTokenIsInvalid() {
+        assertThrows(InvalidRequestException.class, () -> syncService.sync("abc"));
+        assertThrows(InvalidRequestException.class, () -> syncService.sync("-1"));
+        assertThrows(InvalidRequestException.class, () -> syncService.sync("5.-1"));
+        assertThrows(InvalidRequestException.class, () -> syncService.sync("5."));
+    }
+
+    private ChangeLogEntry entry(Long id, Long chatId, Long messageId, ChangeLogEntry.Type type) {
+        ChangeLogEntry entry = new ChangeLogEntry();
+        entry.setId(id);
+        entry.setCommitSeq(id);
+        entry.setUserId(1L);
+        entry.setChatId(chatId);
+        entry.setMessageId(messageId);
+        entry.setType(type);
+        entry.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0));
+        return entry;
+    }
+}
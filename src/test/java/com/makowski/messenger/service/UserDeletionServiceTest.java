@@ -0,0 +1,181 @@
+package com.makowski.messenger.service;
+
+import com.makowski.messenger.broker.EventFanout;
+import com.makowski.messenger.entity.User;
+import com.makowski.messenger.entity.UserDeletionJob;
+import com.makowski.messenger.outbox.Outbox;
+import com.makowski.messenger.repository.ChatRepository;
+import com.makowski.messenger.repository.ChatSequenceRepository;
+import com.makowski.messenger.repository.MessageRepository;
+import com.makowski.messenger.repository.UserDeletionJobRepository;
+import com.makowski.messenger.repository.UserRepository;
+import com.makowski.messenger.testutils.TestDataFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDeletionServiceTest {
+
+    @InjectMocks
+    UserDeletionService userDeletionService;
+    @Mock
+    UserDeletionJobRepository userDeletionJobRepository;
+    @Mock
+    UserRepository userRepository;
+    @Mock
+    MessageRepository messageRepository;
+    @Mock
+    ChatRepository chatRepository;
+    @Mock
+    ChatSequenceRepository chatSequenceRepository;
+    @Mock
+    ChatService chatService;
+    @Mock
+    SecondLevelCacheService secondLevelCacheService;
+    @Mock
+    EventFanout eventFanout;
+    @Mock
+    RecentMessagesCache recentMessagesCache;
+    @Mock
+    ChangeLog changeLog;
+    @Mock
+    Outbox outbox;
+
+    @Test
+    void processNextChunk_DeletesMessagesAndEmptyChats_WhenJobIsInMessagesPhase() {
+        UserDeletionJob job = createJob(UserDeletionJob.Phase.MESSAGES);
+
+        when(userDeletionJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(messageRepository.findIdsBySenderId(eq(1L), any(Pageable.class))).thenReturn(List.of(10L, 11L));
+        when(messageRepository.findChatIdsByIdIn(List.of(10L, 11L))).thenReturn(List.of(5L));
+
+        boolean done = userDeletionService.processNextChunk(1L);
+
+        assertFalse(done);
+        InOrder order = inOrder(changeLog, messageRepository);
+        order.verify(changeLog).messagesDeleted(List.of(10L, 11L));
+        order.verify(messageRepository).deleteByIdIn(List.of(10L, 11L));
+        verify(chatService).deleteChatIfEmpty(5L);
+        verify(eventFanout).chatsChanged(List.of(5L));
+        assertEquals(UserDeletionJob.Phase.MESSAGES, job.getPhase());
+        assertEquals(2, job.getProcessed());
+    }
+
+    @Test
+    void processNextChunk_MovesToNextPhase_WhenNothingIsLeftToDelete() {
+        UserDeletionJob job = createJob(UserDeletionJob.Phase.MESSAGES);
+
+        when(userDeletionJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(messageRepository.findIdsBySenderId(eq(1L), any(Pageable.class))).thenReturn(List.of());
+
+        boolean done = userDeletionService.processNextChunk(1L);
+
+        assertFalse(done);
+        assertEquals(UserDeletionJob.Phase.MEMBERSHIPS, job.getPhase());
+    }
+
+    @Test
+    void processNextChunk_LeavesGroupChatsAndStopsBeforeTwoMemberChat_WhenJobIsInMembershipsPhase() {
+        UserDeletionJob job = createJob(UserDeletionJob.Phase.MEMBERSHIPS);
+
+        when(userDeletionJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(chatRepository.findIdsByMemberId(eq(1L), any(Pageable.class))).thenReturn(List.of(6L, 5L));
+        when(chatRepository.countMembers(5L)).thenReturn(2L);
+        when(chatRepository.countMembers(6L)).thenReturn(3L);
+
+        userDeletionService.processNextChunk(1L);
+
+        verify(chatRepository).deleteMember(6L, 1L);
+        verify(changeLog).membersChanged(6L);
+        verify(chatService, never()).deleteChat(anyLong());
+        verify(secondLevelCacheService).evictChatMembers(List.of(6L));
+        verify(eventFanout).chatsChanged(List.of(6L));
+        verify(eventFanout).profilesChanged();
+        assertEquals(UserDeletionJob.Phase.MEMBERSHIPS, job.getPhase());
+        assertEquals(1, job.getProcessed());
+    }
+
+    @Test
+    void processNextChunk_DeletesTwoMemberChatInChunkOfItsOwn_WhenJobIsInMembershipsPhase() {
+        UserDeletionJob job = createJob(UserDeletionJob.Phase.MEMBERSHIPS);
+
+        when(userDeletionJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(chatRepository.findIdsByMemberId(eq(1L), any(Pageable.class))).thenReturn(List.of(5L, 6L));
+        when(chatRepository.countMembers(5L)).thenReturn(2L);
+
+        userDeletionService.processNextChunk(1L);
+
+        verify(chatService).deleteChat(5L);
+        verify(chatRepository, never()).deleteMember(anyLong(), anyLong());
+        verify(secondLevelCacheService).evictChatMembers(List.of(5L));
+        assertEquals(UserDeletionJob.Phase.MEMBERSHIPS, job.getPhase());
+    }
+
+    @Test
+    void processNextChunk_RemovesUserFromContactListsOfNextUsers_WhenJobIsInContactsPhase() {
+        UserDeletionJob job = createJob(UserDeletionJob.Phase.CONTACTS);
+        job.setLastUserId(4L);
+        User withContact = TestDataFactory.createTestUser();
+        withContact.setId(5L);
+        withContact.setContactList(new HashSet<>(Set.of(1L, 2L)));
+        User withoutContact = TestDataFactory.createTestUser();
+        withoutContact.setId(7L);
+        withoutContact.setContactList(new HashSet<>(Set.of(2L)));
+
+        when(userDeletionJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any(Pageable.class))).thenReturn(List.of(withContact, withoutContact));
+
+        boolean done = userDeletionService.processNextChunk(1L);
+
+        assertFalse(done);
+        assertEquals(Set.of(2L), withContact.getContactList());
+        verify(userRepository).saveAll(List.of(withContact));
+        verify(eventFanout).usersChanged(List.of(5L));
+        assertEquals(7L, job.getLastUserId());
+        assertEquals(UserDeletionJob.Phase.CONTACTS, job.getPhase());
+    }
+
+    @Test
+    void processNextChunk_MovesToAccountPhase_WhenAllContactListsAreDone() {
+        UserDeletionJob job = createJob(UserDeletionJob.Phase.CONTACTS);
+
+        when(userDeletionJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class))).thenReturn(List.of());
+
+        userDeletionService.processNextChunk(1L);
+
+        assertEquals(UserDeletionJob.Phase.ACCOUNT, job.getPhase());
+    }
+
+    @Test
+    void processNextChunk_DeletesUserAndFinishesJob_WhenJobIsInAccountPhase() {
+        UserDeletionJob job = createJob(UserDeletionJob.Phase.ACCOUNT);
+
+        when(userDeletionJobRepository.findById(1L)).thenReturn(Optional.of(job));
+
+        boolean done = userDeletionService.processNextChunk(1L);
+
+        assertTrue(done);
+        verify(userRepository).deleteById(1L);
+        verify(userDeletionJobRepository).delete(job);
+        verify(eventFanout).profilesChanged();
+    }
+
+    private UserDeletionJob createJob(UserDeletionJob.Phase phase) {
+        UserDeletionJob job = new UserDeletionJob(1L);
+        job.setId(1L);
+        job.setPhase(phase);
+        return job;
+    }
+}
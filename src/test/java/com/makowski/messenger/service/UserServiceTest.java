@@ -1,18 +1,23 @@
 package com.makowski.messenger.service;
 
+import com.makowski.messenger.broker.EventFanout;
 import com.makowski.messenger.dto.ChatDto;
 import com.makowski.messenger.dto.PasswordDto;
 import com.makowski.messenger.dto.UserDto;
 import com.makowski.messenger.entity.Chat;
 import com.makowski.messenger.entity.User;
 import com.makowski.messenger.exception.*;
+import com.makowski.messenger.repository.UserDeletionJobRepository;
 import com.makowski.messenger.repository.UserRepository;
 
 import com.makowski.messenger.testutils.TestDataFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -34,6 +39,14 @@ class UserServiceTest {
     UserRepository userRepository;
     @Mock
     BCryptPasswordEncoder bCryptPasswordEncoder;
+    @Mock
+    UserDeletionJobRepository userDeletionJobRepository;
+    @Mock
+    ResourceVersions resourceVersions;
+    @Mock
+    EventFanout eventFanout;
+    @Spy
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @Test
     void createUser_ReturnsUserDto_WhenUserIsCreated() {
@@ -98,6 +111,7 @@ class UserServiceTest {
 
         assertEquals(userDto.getFirstName(), result.getFirstName());
         assertEquals(userDto.getSurname(), result.getSurname());
+        verify(eventFanout).profilesChanged();
         verify(userRepository).save(user);
     }
 
@@ -153,6 +167,36 @@ class UserServiceTest {
         assertThrows(AccessDeniedException.class, () -> userService.changePassword(passwordDto));
     }
 
+    @Test
+    void deleteUser_MarksUserAsDeletedAndSchedulesDeletionJob() {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        Authentication authentication = new UsernamePasswordAuthenticationToken("username1", null);
+        context.setAuthentication(authentication);
+        SecurityContextHolder.setContext(context);
+
+        User user = TestDataFactory.createTestUser();
+
+        when(userRepository.findByUsername("username1")).thenReturn(Optional.of(user));
+
+        userService.deleteUser();
+
+        assertTrue(user.isDeleted());
+        verify(userRepository).save(user);
+        verify(userRepository, never()).deleteById(any());
+        verify(userDeletionJobRepository).save(argThat(job -> job.getUserId().equals(1L)));
+        verify(eventFanout).profilesChanged();
+    }
+
+    @Test
+    void findByUsername_ThrowsException_WhenUserIsDeleted() {
+        User user = TestDataFactory.createTestUser();
+        user.setDeleted(true);
+
+        when(userRepository.findByUsername("username1")).thenReturn(Optional.of(user));
+
+        assertThrows(EntityNotFoundException.class, () -> userService.findByUsername("username1"));
+    }
+
     @Test
     void getUserDto_ReturnsDto_WhenUserExists() {
         User user = TestDataFactory.createTestUser();
@@ -251,7 +295,7 @@ class UserServiceTest {
         User user = TestDataFactory.createTestUser();
         User contactUser = TestDataFactory.createAnotherTestUser();
 
-        when(userRepository.existsById(2L)).thenReturn(true);
+        when(userRepository.existsByIdAndDeletedFalse(2L)).thenReturn(true);
         when(userRepository.findByUsername(user.getUsername())).thenReturn(Optional.of(user));
         when(userRepository.save(user)).thenReturn(user);
         when(userRepository.findById(2L)).thenReturn(Optional.of(contactUser));
@@ -261,6 +305,7 @@ class UserServiceTest {
         assertEquals(1, result.size());
         assertEquals(contactUser.getUsername(), result.iterator().next().getUsername());
         verify(userRepository).save(user);
+        verify(eventFanout).userChanged(1L);
     }
 
     @Test
@@ -272,7 +317,7 @@ class UserServiceTest {
 
         User user = TestDataFactory.createTestUser();
 
-        when(userRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsByIdAndDeletedFalse(1L)).thenReturn(true);
         when(userRepository.findByUsername(user.getUsername())).thenReturn(Optional.of(user));
 
         assertThrows(InvalidRequestException.class, () -> userService.addToContactList(1L));
@@ -280,7 +325,7 @@ class UserServiceTest {
 
     @Test
     void addToContactList_ThrowsException_WhenUserDoesNotExist() {
-        when(userRepository.existsById(1L)).thenReturn(false);
+        when(userRepository.existsByIdAndDeletedFalse(1L)).thenReturn(false);
 
         assertThrows(EntityNotFoundException.class, () -> userService.addToContactList(1L));
     }
@@ -296,7 +341,7 @@ class UserServiceTest {
         User contactUser = TestDataFactory.createAnotherTestUser();
         user.setContactList(new HashSet<>(Set.of(2L, 3L)));
 
-        when(userRepository.existsById(3L)).thenReturn(true);
+        when(userRepository.existsByIdAndDeletedFalse(3L)).thenReturn(true);
         when(userRepository.findByUsername(user.getUsername())).thenReturn(Optional.of(user));
         when(userRepository.save(user)).thenReturn(user);
         when(userRepository.findById(2L)).thenReturn(Optional.of(contactUser));
@@ -305,11 +350,12 @@ class UserServiceTest {
 
         assertEquals(1, result.size());
         assertEquals(contactUser.getUsername(), result.iterator().next().getUsername());
+        verify(eventFanout).userChanged(1L);
     }
 
     @Test
     void deleteFromContactList_ThrowsException_WhenUserDoesNotExist() {
-        when(userRepository.existsById(1L)).thenReturn(false);
+        when(userRepository.existsByIdAndDeletedFalse(1L)).thenReturn(false);
 
         assertThrows(EntityNotFoundException.class, () -> userService.addToContactList(1L));
     }
@@ -324,7 +370,7 @@ class UserServiceTest {
         User user = TestDataFactory.createTestUser();
         user.setContactList(Set.of(2L, 3L));
 
-        when(userRepository.existsById(4L)).thenReturn(true);
+        when(userRepository.existsByIdAndDeletedFalse(4L)).thenReturn(true);
         when(userRepository.findByUsername(user.getUsername())).thenReturn(Optional.of(user));
 
         assertThrows(InvalidRequestException.class, () -> userService.deleteFromContactList(4L));
@@ -0,0 +1,24 @@
+package com.makowski.messenger.testutils;
+
+import com.makowski.messenger.monitoring.QueryCounter;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryCountAssertions {
+
+    public static <T> T assertMaxQueries(QueryCounter queryCounter, int maxQueries, Supplier<T> action) {
+        queryCounter.start();
+        T result;
+        QueryCounter.Result queries;
+        try {
+            result = action.get();
+        } finally {
+            queries = queryCounter.stop();
+        }
+        assertTrue(queries.count() <= maxQueries,
+                () -> "Expected at most " + maxQueries + " SQL statements but " + queries.count() + " were executed: " + queries.statements());
+        return result;
+    }
+}